@@ -29,7 +29,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -44,6 +43,7 @@ import java.net.ProtocolException;
 import java.net.SocketTimeoutException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
@@ -72,7 +72,6 @@ import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 
-import org.apache.commons.codec.binary.Hex;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
@@ -229,17 +228,29 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.gson.Gson;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 
+import es.javocsoft.android.lib.toolbox.crypto.Hasher;
 import es.javocsoft.android.lib.toolbox.crypto.SHA1Encoding;
+import es.javocsoft.android.lib.toolbox.crypto.TreeHasher;
 import es.javocsoft.android.lib.toolbox.crypto.exception.SHA1EncodingException;
 import es.javocsoft.android.lib.toolbox.encoding.Base64;
+import es.javocsoft.android.lib.toolbox.encoding.HexEncoder;
+import es.javocsoft.android.lib.toolbox.io.CachePruner;
+import es.javocsoft.android.lib.toolbox.io.ExposedByteArrayOutputStream;
+import es.javocsoft.android.lib.toolbox.io.FileTransfer;
+import es.javocsoft.android.lib.toolbox.io.FolderDeleter;
 import es.javocsoft.android.lib.toolbox.io.IOUtils;
+import es.javocsoft.android.lib.toolbox.io.MappedFileReader;
+import es.javocsoft.android.lib.toolbox.io.SafeFileWriter;
+import es.javocsoft.android.lib.toolbox.io.TransferProgressListener;
 import es.javocsoft.android.lib.toolbox.javascript.WebviewJavascriptInterface;
+import es.javocsoft.android.lib.toolbox.json.GsonProcessor;
+import es.javocsoft.android.lib.toolbox.json.JsonArrayReader;
+import es.javocsoft.android.lib.toolbox.net.FileDownloader;
 import es.javocsoft.android.lib.toolbox.net.ssl.DefaultSSLBypassHttpClient;
 import es.javocsoft.android.lib.toolbox.net.ssl.SSLUtils;
 
@@ -300,7 +311,7 @@ public final class ToolBox {
 	public static enum SCREEN_ORIENTATION {PORTRAIT, LANDSCAPE, SQUARE};
 	
 	/** Accepted HASH types. */
-	public static enum HASH_TYPE{md5,sha1};
+	public static enum HASH_TYPE{md5,sha1,sha256,sha512};
 	
 	/** The type of device by screen. */
 	public static enum DEVICE_BY_SCREEN {DP320_NORMAL, DP480_TWEENER, DP600_7INCH, DP720_10INCH};
@@ -338,6 +349,9 @@ public final class ToolBox {
 	
 	/**
 	 * Converts a GSON JSON LinkedMap of objects to list of objects.
+	 * <br><br>
+	 * The whole array is loaded in the list, to process large arrays item
+	 * by item see {@link JsonArrayReader} or {@link #gson_readJsonArray(InputStream, Class)}.
 	 *
 	 * @param jsonData	JSON string
 	 * @param type		See http://hmkcode.com/gson-json-java/
@@ -346,10 +360,23 @@ public final class ToolBox {
 	 */
 	public static <T> List<T> gson_linkedMapAsList(String jsonData, java.lang.reflect.Type type) {
 		// Now convert the JSON string back to your java object		
-	    List<T> jsonObjectList = new Gson().fromJson(jsonData, type);	    
+	    List<T> jsonObjectList = GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP).fromJson(jsonData, type);	    
 	    return jsonObjectList;
 	}
 	
+	/**
+	 * Reads the items of a JSON array one by one, with constant memory
+	 * whatever the size of the array. Close the returned reader when done.
+	 * 
+	 * @param in		The JSON array data, in UTF-8.
+	 * @param itemClass	The class of the items.
+	 * @param <T>
+	 * @return	An iterable reader of the items, see {@link JsonArrayReader}.
+	 */
+	public static <T> JsonArrayReader<T> gson_readJsonArray(InputStream in, Class<T> itemClass) {
+		return new JsonArrayReader<T>(in, itemClass);
+	}
+	
 	//--------------- URL Shortener ---------------------------------------------------------------------
 	
 	/**
@@ -1483,64 +1510,74 @@ public final class ToolBox {
     }
     
     /**
-	 * Given the application folder, it recursively deletes any file or folder
-	 * in it returning the number of deleted files.
+     * Given the application context, deletes the files in the application cache 
+     * folder older than the given number of days, returning the number of deleted 
+     * files. The external cache folder is not modified, see 
+     * {@link #application_clearCache(Context, int, boolean)}.
+     * <br><br>
+     * Cache folders are kept. To keep the cache under a size limit see
+     * {@link #application_pruneCache(Context, long, CachePruner.OnCachePrunedListener)}.
 	 *  
-	 * @param appFolder	The folder to clean. Check in documentation permissions to write
-	 * 					in these folders.
-	 * @param numDays	Delete the files older than numDays days from the application cache, 
-	 * 					0 means all files. 
+     * @param context	
+     * @param numDays	Delete the files older than numDays days from the application cache, 
+	 * 					0 means all files.
 	 * @return The number of deleted files
-	 */
-    private static int application_clearFolder(final File appFolder, final int numDays) {
-
-      int deletedFiles = 0;
-      if (appFolder!= null && appFolder.isDirectory()) {
-          try {
-              for (File child:appFolder.listFiles()) {
-                  //First delete subdirectories recursively
-                  if (child.isDirectory()) {
-                      deletedFiles += application_clearFolder(child, numDays);
-                  }
-                  //Then delete the files and subdirectories in this dir,
-                  //only empty directories can be deleted, so subdirs have been done first.
-                  if (child.lastModified() < new Date().getTime() - numDays * DateUtils.DAY_IN_MILLIS) {
-                	  if(LOG_ENABLE)
-                		  Log.i(TAG, String.format("Deleting app cache file %s", child.getAbsolutePath()));
-                      if (child.delete()) {
-                          deletedFiles++;
-                      }
-                  }
-              }
-          }
-          catch(Exception e) {        	  
-              Log.e(TAG, String.format("Failed to clean app cache folder, error %s", e.getMessage()));
-          }
-      }
-      
-      return deletedFiles;
-  	}
+     */
+    public static int application_clearCache(final Context context, final int numDays) {
+    	return application_clearCache(context, numDays, false);
+    }
     
     /**
-     * Given the application context, deletes recursively any file or folder
-	 * in the application cache folder returning the number of deleted files.
+     * Given the application context, deletes the files in the application cache 
+     * folder, and optionally in the external cache folder, older than the given 
+     * number of days, returning the number of deleted files.
+     * <br><br>
+     * Cache folders are kept. To keep the cache under a size limit see
+     * {@link #application_pruneCache(Context, long, CachePruner.OnCachePrunedListener)}.
 	 *  
      * @param context	
      * @param numDays	Delete the files older than numDays days from the application cache, 
 	 * 					0 means all files.
+     * @param external	Set to TRUE to also delete the files of the external cache folder.
 	 * @return The number of deleted files
      */
-    public static int application_clearCache(final Context context, final int numDays) {
+    public static int application_clearCache(final Context context, final int numDays, final boolean external) {
     	if(LOG_ENABLE)
     		Log.i(TAG, String.format("Starting application cache prune, deleting files older than %d days", numDays));
     	
-        int numDeletedFiles = application_clearFolder(context.getCacheDir(), numDays);
+    	CachePruner pruner = external ? 
+    			new CachePruner(context.getCacheDir(), context.getExternalCacheDir()) : 
+    			new CachePruner(context.getCacheDir());
+    	pruner.setMaxAge(numDays * DateUtils.DAY_IN_MILLIS);
+        int numDeletedFiles = pruner.prune().getFilesDeleted();
         
         if(LOG_ENABLE)
         	Log.i(TAG, String.format("Application cache pruning completed, %d files deleted", numDeletedFiles));
         
         return numDeletedFiles;
     }
+    
+    /**
+     * Keeps the application cache folders (internal and external) under the given 
+     * size, deleting in background the least recently modified files first. This 
+     * includes any cache stored there, like the image 
+     * {@link es.javocsoft.android.lib.toolbox.net.image.DiskLruCache} or 
+     * the http response cache (see {@link #web_enableHttpResponseCache(Context)}).
+     * 
+     * @param context
+     * @param maxBytes	The max size of the application cache, in bytes.
+     * @param listener	Optional. Informed from the background thread with the 
+     * 					deleted files, freed bytes and time taken.
+     * @return The pruner, it can be used to cancel the prune.
+     */
+    public static CachePruner application_pruneCache(final Context context, final long maxBytes, 
+    		final CachePruner.OnCachePrunedListener listener) {
+    	CachePruner pruner = new CachePruner(context.getCacheDir(), context.getExternalCacheDir());
+    	pruner.setMaxBytes(maxBytes);
+    	pruner.pruneInBackground(listener);
+    	
+    	return pruner;
+    }
 
     /**
      * Deletes all application data. After using this method application
@@ -1938,9 +1975,13 @@ public final class ToolBox {
 						break;
 					case md5:
 						appCerHash = c.getSignatureMD5Hash();
+						break;
+					default:
+						appCerHash = null;
 				}
 				
-				if(appCerHash.equals(expectedSignature)){
+				//Only md5 and sha1 signature hashes are available.
+				if(appCerHash!=null && appCerHash.equals(expectedSignature)){
 					res = true;
 					break;
 				}
@@ -5342,17 +5383,14 @@ public final class ToolBox {
 	public static byte[] storage_readAssetResource(Context context, String fileName){
 		
 		 try{
-			 InputStream asset = context.getAssets().open(fileName);
-			 
-			 ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-			 
-			 byte[] buffer = new byte[asset.available()];
-		     
-			 asset.read(buffer);		        
-		     byteArrayOutputStream.write(buffer);
-		     asset.close();
-		 
-		     return byteArrayOutputStream.toByteArray();
+			 try{
+				 //Uncompressed assets can be opened as a descriptor, that gives
+				 //us the exact length to read them in a single array.
+				 return IOUtils.readBytes(context.getAssets().openFd(fileName));
+			 }catch(FileNotFoundException e){
+				 //Compressed asset, we read it as a stream.
+				 return IOUtils.readBytes(context.getAssets().open(fileName));
+			 }
 		 }catch (Exception e){
 			 if(LOG_ENABLE)
 				 Log.e("TollBox_ERROR","storage_readRawResource() Error obtaining raw data: " + e.getMessage(),e);   
@@ -5360,6 +5398,27 @@ public final class ToolBox {
 		 }
 	}
 	
+	/**
+	 * Maps in memory a resource located in the "assets" folder. The content
+	 * is not copied into the Java heap, so it is suited for large data files.
+	 * <br><br>
+	 * Only assets stored without compression in the APK can be mapped. To
+	 * avoid the compression of your data files, use in your "build.gradle"
+	 * the "aaptOptions { noCompress 'ext' }" option.
+	 * 
+	 * @param context
+	 * @param fileName	The file name of the resource.
+	 * @return	A read-only buffer with the asset content.
+	 * @throws Exception
+	 */
+	public static ByteBuffer storage_mapAssetResource(Context context, String fileName) throws Exception{
+		try{
+			return MappedFileReader.map(context.getAssets().openFd(fileName));
+		}catch(Exception e){
+			throw new Exception("Error mapping asset '" + fileName + "' : "+ e.getMessage(),e);
+		}
+	}
+	
 	/**
 	 * Gets bytes from a resource located in the "raw" folder.
 	 * 
@@ -5476,9 +5535,7 @@ public final class ToolBox {
      */
     public static void storage_saveInputData(InputStream is, File outputFile, boolean closeInput) throws Exception{
         try{
-	    	OutputStream os = new FileOutputStream(outputFile);               
-	        storage_copyStream(is, os, 1024);
-	        os.close();
+	        FileTransfer.copy(is, outputFile, -1, null);
 	        if(closeInput){
 	        	is.close();
 	        }
@@ -5490,6 +5547,50 @@ public final class ToolBox {
         }
     }
 	 
+    /**
+     * Copies a file into another using NIO channels, so data is moved
+     * by the kernel without passing through Java buffers. If the destination
+     * file exists, it is overwritten.
+     *
+     * @param from		Source file.
+     * @param to		Destination file.
+     * @param listener	Optional progress listener. Can be null.
+     * @return			Total bytes copied.
+     * @throws Exception
+     */
+    public static long storage_copyFile(File from, File to, TransferProgressListener listener) throws Exception{
+        try{
+        	return FileTransfer.copy(from, to, listener);
+        }catch(Exception e){
+        	if(LOG_ENABLE)
+        		Log.e(TAG,"storage_copyFile(): "+e.getMessage(),e);
+
+        	throw new Exception(TAG+"[storage_copyFile()]: "+e.getMessage(),e);
+        }
+    }
+
+    /**
+     * Moves a file to another location. The file is renamed when possible,
+     * otherwise (for example, between internal and external storage) it is
+     * copied using NIO channels and the source file deleted.
+     *
+     * @param from		Source file.
+     * @param to		Destination file.
+     * @param overwrite	Set to TRUE to overwrite the destination file if exists.
+     * @param listener	Optional progress listener. Can be null.
+     * @throws Exception
+     */
+    public static void storage_moveFile(File from, File to, boolean overwrite, TransferProgressListener listener) throws Exception{
+        try{
+        	FileTransfer.move(from, to, overwrite, listener);
+        }catch(Exception e){
+        	if(LOG_ENABLE)
+        		Log.e(TAG,"storage_moveFile(): "+e.getMessage(),e);
+
+        	throw new Exception(TAG+"[storage_moveFile()]: "+e.getMessage(),e);
+        }
+    }
+	 
 	/**
 	 * Gets the application internal storage path.
 	 * 
@@ -5523,7 +5624,7 @@ public final class ToolBox {
 			StringBuilder builder = new StringBuilder("");
 			
 			while((read = bufferedReader.readLine()) != null){
-				builder.append(read + "\n");
+				builder.append(read).append('\n');
 			}
 			
 			res = builder.toString();			
@@ -5539,6 +5640,31 @@ public final class ToolBox {
 		return res;
 	}
 	
+	/**
+	 * Maps a text file in memory and returns its content. Unlike
+	 * {@link #storage_getTextFileContentAsString(String, String)}, the
+	 * content is not rebuilt line by line and line endings are kept
+	 * as they are in the file.
+	 * <br><br>
+	 * For "US-ASCII" and "ISO-8859-1" encodings no copy of the data is
+	 * done at all, the returned sequence reads directly from the mapped file.
+	 * 
+	 * @param file
+	 * @param encoding
+	 * @return
+	 * @throws Exception
+	 */
+	public static CharSequence storage_mapTextFileContent(String file, String encoding) throws Exception{
+		try{
+			return MappedFileReader.mapAsCharSequence(new File(file), encoding);
+		}catch(Exception e){
+        	if(LOG_ENABLE)
+        		Log.e(TAG,"storage_mapTextFileContent(): "+e.getMessage(),e);
+        	
+        	throw new Exception(TAG+"[storage_mapTextFileContent()]: "+e.getMessage(),e);     
+        }
+	}
+	
 	/**
 	 * This method copies the input to the specified output.
 	 * 
@@ -5550,7 +5676,7 @@ public final class ToolBox {
     	int readbytes=0;
     	
         if(buffer_size<=0){
-        	buffer_size=1024;
+        	buffer_size=FileTransfer.DEFAULT_BUFFER_SIZE;
         }
         
         try{
@@ -5571,34 +5697,62 @@ public final class ToolBox {
 
 	/**
 	 * Saves data to the application internal folder.
+	 * <br><br>
+	 * The file is replaced atomically, a crash never leaves it truncated. Writes
+	 * of the same file are serialized, different files are written concurrently.
+	 * See {@link SafeFileWriter}.
 	 *
 	 * @param context
 	 * @param fileName
 	 * @param data
 	 * @throws Exception
 	 */
-	public static synchronized void storage_storeDataInInternalStorage(Context context, String fileName, byte[] data) throws Exception{
+	public static void storage_storeDataInInternalStorage(Context context, String fileName, byte[] data) throws Exception{
 		 try {
-			 /* We have to use the openFileOutput()-method
-		      * the ActivityContext provides, to
-		      * protect your file from others and
-		      * This is done for security-reasons.
-		      * We choose MODE_WORLD_READABLE, because
-		      * we have nothing to hide in our file. Since
-		      * Android 7 is no longer supported. */
-		      FileOutputStream fOut = context.openFileOutput(fileName, Context.MODE_PRIVATE);
-			   
-		      // Write the string to the file
-		      fOut.write(data);
-	
-		      /* ensure that everything is really written out and close */
-		      fOut.flush();
-		      fOut.close();
+			 /* The file is private to the application (MODE_PRIVATE),
+			  * MODE_WORLD_READABLE is no longer supported since Android 7. */
+			 SafeFileWriter.write(context.getFileStreamPath(fileName), data);
 		      
 		 } catch (Exception e) {
 			  throw new Exception("Error saving data to '" + fileName + "' (internal storage) : "+ e.getMessage(),e);
 		 } 
 	 }
+	
+	/**
+	 * Saves several files to the application internal folder at once.
+	 * <br><br>
+	 * All the files are flushed to disk together before replacing any of them,
+	 * which is much faster than saving them one by one when there are many
+	 * small files. If the data of any file can not be written or flushed, none
+	 * of them is modified.
+	 * <br><br>
+	 * Each file is replaced atomically, but not the whole group: if a file can
+	 * not be replaced, the ones replaced before it keep the new data and the
+	 * rest keep the old one. The cause is then a
+	 * {@link es.javocsoft.android.lib.toolbox.io.exception.BatchCommitException}
+	 * that tells which files were replaced.
+	 *
+	 * @param context
+	 * @param files	The data to save, by file name. Use a sorted or linked map
+	 * 				to control the order in which they are replaced.
+	 * @throws Exception
+	 */
+	public static void storage_storeDataInInternalStorage(Context context, Map<String, byte[]> files) throws Exception{
+		SafeFileWriter.Batch batch = SafeFileWriter.newBatch();
+		String fileName = null;
+		try {
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				fileName = file.getKey();
+				batch.write(context.getFileStreamPath(fileName), file.getValue());
+			}
+			fileName = null;
+			batch.commit();
+			
+		} catch (Exception e) {
+			batch.rollback();
+			throw new Exception("Error saving data" + (fileName!=null?" to '" + fileName + "'":"") + " (internal storage) : "+ e.getMessage(),e);
+		}
+	}
 	 
 	/**
 	 * Reads data from the application internal storage data folder.
@@ -5614,18 +5768,33 @@ public final class ToolBox {
 		try {
 			fIn = context.openFileInput(fileName);
 			
-			byte[] buffer = new byte[fIn.available()];
-			 
-			fIn.read(buffer);
-			fIn.close();
-			 
-			return buffer;
+			//Read at once in an array sized with the file length.
+			return IOUtils.readBytes(fIn, fIn.getChannel().size());
 			
 		} catch (Exception e) {
 			throw new Exception("Error reading data '" + fileName + "' (internal storage) : "+ e.getMessage(),e);
 		}
 	 }
 	
+	/**
+	 * Maps in memory a file from the application internal storage data folder.
+	 * <br><br>
+	 * Mapping is done in O(1) and the content is not copied into the Java heap,
+	 * the operating system loads it when accessed. Use it for large data files.
+	 * 
+	 * @param context
+	 * @param fileName
+	 * @return	A read-only buffer with the file content.
+	 * @throws Exception
+	 */
+	public static ByteBuffer storage_mapDataFromInternalStorage(Context context, String fileName) throws Exception{
+		try {
+			return MappedFileReader.map(context.getFileStreamPath(fileName));
+		} catch (Exception e) {
+			throw new Exception("Error mapping data '" + fileName + "' (internal storage) : "+ e.getMessage(),e);
+		}
+	 }
+	
 	/**
 	 * Deletes a file from the application internal storage private folder.
 	 * 
@@ -5662,43 +5831,50 @@ public final class ToolBox {
 	
 	/**
 	 * Saves an URL link into the external SD card of the Device.
+	 * <br><br>
+	 * The data is streamed to a temporal file and, if the download is interrupted,
+	 * the next call resumes it from the already downloaded bytes. See {@link FileDownloader}.
 	 * 
 	 * @param dataUrl
 	 * @param fileName
-	 * @param bufferSize
+	 * @param bufferSize	Not used anymore. A pooled transfer buffer is used.
 	 * @return
 	 * @throws Exception
 	 */
 	public static String storage_saveUrlToExternal(String dataUrl, String fileName, int bufferSize) throws Exception{
+		return storage_saveUrlToExternalSegmented(dataUrl, fileName, 1);
+	}
+	
+	/**
+	 * Saves an URL link into the external SD card of the Device, downloading
+	 * it through several concurrent connections.
+	 * <br><br>
+	 * If the server supports byte ranges, the resource is split in segments
+	 * downloaded in parallel, otherwise it is downloaded as a single stream.
+	 * Interrupted downloads are resumed. See {@link FileDownloader#setSegments(int)}.
+	 * 
+	 * @param dataUrl
+	 * @param fileName
+	 * @param connections	Max number of concurrent connections.
+	 * @return
+	 * @throws Exception
+	 */
+	public static String storage_saveUrlToExternalSegmented(String dataUrl, String fileName, int connections) throws Exception{
 		String res;
 		
-		InputStream input = null;
-		OutputStream output = null;
-		
 		try {		
-			URL url = new URL (dataUrl);
-			input = url.openStream();
-			
 			//The sdcard directory '/sdcard' can be used directly but is
 			//better and safety if we use "getExternalStorageDirectory()" :)
 		    File storagePath = Environment.getExternalStorageDirectory();
 		    File f = new File(storagePath, fileName);
-		    output = new FileOutputStream (f);
 		    
-	        byte[] buffer = new byte[bufferSize];
-	        int bytesRead = 0;
-	        while ((bytesRead = input.read(buffer, 0, buffer.length)) >= 0) {
-	            output.write(buffer, 0, bytesRead);
-	        }
+		    FileDownloader downloader = new FileDownloader(dataUrl, f);
+		    downloader.setSegments(connections);
+		    downloader.download();
 	        
 	        res = f.getAbsolutePath();
 		}catch(Exception e){
 			throw new Exception("Error saving data in external storage : "+ e.getMessage(),e);
-	    } finally {
-	    	try{
-	    		input.close();
-	    		output.close();
-	    	}catch(Exception e){}
 	    }
 		 
 		return res;
@@ -5706,10 +5882,13 @@ public final class ToolBox {
 	
 	/**
 	 * Saves the Url link into the internal memory card in the application private zone.
+	 * <br><br>
+	 * The data is streamed to a temporal file and, if the download is interrupted,
+	 * the next call resumes it from the already downloaded bytes. See {@link FileDownloader}.
 	 * 
 	 * @param context
 	 * @param dataUrl
-	 * @param bufferSize
+	 * @param bufferSize	Not used anymore. A pooled transfer buffer is used.
 	 * @return
 	 * @throws Exception
 	 */
@@ -5722,23 +5901,8 @@ public final class ToolBox {
 			
 			if(!storage_checkIfFileExistsInInternalStorage(context, filename)){
 				
-				URL url = new URL (dataUrl);
-				InputStream input = url.openStream();
-				
-			    ByteArrayOutputStream output = new ByteArrayOutputStream ();
-			    try {
-			        byte[] buffer = new byte[bufferSize];
-			        int bytesRead = 0;
-			        while ((bytesRead = input.read(buffer, 0, buffer.length)) >= 0) {
-			            output.write(buffer, 0, bytesRead);
-			        }
-			    } finally {
-			        output.close();
-			    }
-			    
-			    byte[] data = output.toByteArray();
-			    
-			    storage_storeDataInInternalStorage(context, filename, data);
+				//Streamed directly to the file, resuming any previous interrupted download.
+				new FileDownloader(dataUrl, context.getFileStreamPath(filename)).download();
 			}
 		    
 		    res = filename;
@@ -5769,20 +5933,10 @@ public final class ToolBox {
 			if(!storage_checkIfFileExistsInInternalStorage(context, filename)){
 				
 				URL url = new URL (dataUrl);
-				InputStream input = url.openStream();
+				URLConnection connection = url.openConnection();
 				
-			    ByteArrayOutputStream output = new ByteArrayOutputStream ();
-			    try {
-			        byte[] buffer = new byte[bufferSize];
-			        int bytesRead = 0;
-			        while ((bytesRead = input.read(buffer, 0, buffer.length)) >= 0) {
-			            output.write(buffer, 0, bytesRead);
-			        }
-			    } finally {
-			        output.close();
-			    }
-			    
-			    byte[] data = output.toByteArray();
+				//The data array is pre-sized with the "Content-Length", if informed.
+			    byte[] data = IOUtils.readBytes(connection);
 			    
 			    //Add watermark --------------------------------------------------------------------------------
 			    try{
@@ -6265,23 +6419,9 @@ public final class ToolBox {
 		 byte[] res = null;
 		 
 		 try{
-			 // this dynamically extends to take the bytes you read
-			 ByteArrayOutputStream byteBuffer = new ByteArrayOutputStream();
-		
-			 // this is storage overwritten on each iteration with bytes
-			 int bufferSize = 1024;
-			 byte[] buffer = new byte[bufferSize];
-		
-			 // we need to know how may bytes were read to write them to the byteBuffer
-			 int len = 0;
-			 while (input.available()>0 && (len = input.read(buffer)) != -1) {
-			   byteBuffer.write(buffer, 0, len);
-			 }
-		
-			 byteBuffer.flush();
-			 res = byteBuffer.toByteArray();
-			 
-			 byteBuffer.close();
+			 //We read until the end of the stream, available() is only an estimation
+			 //and it is usually zero for network streams.
+			 res = IOUtils.readFully(input, -1);
 		 }catch(Exception e){
 			 throw new IOException("Failed to read byte data from the stream ("+e.getMessage()+").",e);
 		 } 
@@ -6290,13 +6430,31 @@ public final class ToolBox {
 	 }
 	 
 	 /**
-	  * Deletes the specified folder content.
+	  * Deletes the specified folder, with all its content. 
+	  * <br><br>
+	  * The delete is done in-process, in parallel, and this method 
+	  * returns once finished. For large folders, see {@link FolderDeleter} 
+	  * to delete in background or to cancel the delete.
 	  * 
 	  * @param path	The desired folder.
 	  * @throws IOException
+	  * @see #io_deleteFolderContentWithResult(String)
 	  */
 	 public static void io_deleteFolderContent(String path) throws IOException{
-		 Runtime.getRuntime().exec(String.format("rm -rf '%s'", path));
+		 io_deleteFolderContentWithResult(path);
+	 }
+	 
+	 /**
+	  * Deletes the specified folder, with all its content, as 
+	  * {@link #io_deleteFolderContent(String)} does, and tells 
+	  * what was deleted.
+	  * 
+	  * @param path	The desired folder.
+	  * @return The number of deleted files and folders and the freed bytes.
+	  * @throws IOException
+	  */
+	 public static FolderDeleter.Result io_deleteFolderContentWithResult(String path) throws IOException{
+		 return new FolderDeleter(new File(path)).delete();
 	 }
 	 
 	
@@ -7447,15 +7605,34 @@ public final class ToolBox {
 	
 	/**
 	 * Converts an image file from Assets folder to Base64 string.
+	 * <br><br>
+	 * The asset is encoded while read, so only the encoded string is 
+	 * kept in memory.
 	 *  
 	 * @param pathToFile
-	 * @return
+	 * @return The encoded image or null if the asset can not be read.
 	 */
 	public static String media_getAssetImageAsB64(Context context, String pathToFile){
 		String encodedImage = null;
 		
-		byte[] b = storage_readAssetResource(context, pathToFile);
-		encodedImage = Base64.encodeToString(b, false);
+		InputStream in = null;
+		try {
+			in = context.getAssets().open(pathToFile);
+			//For assets, available() is the whole asset size.
+			ExposedByteArrayOutputStream encoded = new ExposedByteArrayOutputStream(
+					Base64.encodedLength(in.available(), 0));
+			Base64.encode(in, encoded, false);
+			encodedImage = new String(encoded.getBuffer(), 0, encoded.size(), "US-ASCII");
+		} catch (Exception e) {
+			if(LOG_ENABLE)
+				Log.e(TAG, "Error encoding asset '" + pathToFile + "' (" + e.getMessage() + ")", e);
+		} finally {
+			if(in!=null) {
+				try {
+					in.close();
+				} catch (IOException e) {}
+			}
+		}
 		
 		return encodedImage; 
 	}
@@ -10291,33 +10468,16 @@ public final class ToolBox {
  	 
 	/**
 	 * Generates a HASH from the specified byte array.
+	 * <br><br>
+	 * Digests are cached per thread, see {@link Hasher}.
 	 * 
 	 * @param data	The data to get the HASH from.
 	 * @param hashType	{@link HASH_TYPE}
-	 * @return
+	 * @return	The HASH in hexadecimal or null if fails.
 	 */
-	@SuppressWarnings("deprecation")
 	public static String crypto_getHASH(byte[] data, HASH_TYPE hashType){
-		 
-		 MessageDigest digest = null;
-		 byte[] resData = null;
-		 
 		 try{
-			 switch(hashType){
-				 case md5:
-					 digest = MessageDigest.getInstance("MD5");
-					 resData = digest.digest(data);
-					 break;
-				 case sha1:
-					 digest = MessageDigest.getInstance("SHA-1");
-					 resData = digest.digest(data);
-					 break;				 
-			 }
-			 
-			 if(resData!=null)
-				 return new String(Hex.encodeHex(resData));
-			 else
-				 return null;
+			 return Hasher.hashHex(data, crypto_hashAlgorithm(hashType));
 			 
 		 }catch(Exception e){
 			 if(LOG_ENABLE)
@@ -10327,6 +10487,84 @@ public final class ToolBox {
 		 }
 	}
 	
+	/**
+	 * Generates a HASH from the content of a file. The file is read
+	 * in blocks, it is never loaded in memory.
+	 * 
+	 * @param file	The file to get the HASH from.
+	 * @param hashType	{@link HASH_TYPE}
+	 * @return	The HASH in hexadecimal or null if fails.
+	 */
+	public static String crypto_getHASH(File file, HASH_TYPE hashType){
+		 try{
+			 return Hasher.hashHex(file, crypto_hashAlgorithm(hashType));
+			 
+		 }catch(Exception e){
+			 if(LOG_ENABLE)
+				 Log.e("TollBox_ERROR","crypto_getHASH() Error getting HASH of file '" + file + "': " + e.getMessage(),e);
+			 
+			 return null;
+		 }
+	}
+	
+	/**
+	 * Generates a HASH from all the remaining content of a stream. The
+	 * stream is read in blocks and it is not closed.
+	 * 
+	 * @param in	The stream to get the HASH from.
+	 * @param hashType	{@link HASH_TYPE}
+	 * @return	The HASH in hexadecimal or null if fails.
+	 */
+	public static String crypto_getHASH(InputStream in, HASH_TYPE hashType){
+		 try{
+			 return HexEncoder.encode(Hasher.hash(in, crypto_hashAlgorithm(hashType)));
+			 
+		 }catch(Exception e){
+			 if(LOG_ENABLE)
+				 Log.e("TollBox_ERROR","crypto_getHASH() Error getting HASH of stream: " + e.getMessage(),e);
+			 
+			 return null;
+		 }
+	}
+	
+	/**
+	 * Generates a chunked tree (Merkle) HASH of a file. Chunks are hashed in
+	 * parallel, which is much faster for large files on multi-core devices, 
+	 * and each chunk can be verified later on its own with 
+	 * {@link TreeHasher#verifyChunk(File, TreeHasher.TreeHash, int)}.
+	 * <br><br>
+	 * Note: The root is not the plain HASH of the file, see {@link TreeHasher}.
+	 * 
+	 * @param file	The file to get the HASH from.
+	 * @param hashType	{@link HASH_TYPE}
+	 * @param chunkSize	The size of the chunks, see {@link TreeHasher#DEFAULT_CHUNK_SIZE}.
+	 * @return	The tree HASH or null if fails.
+	 */
+	public static TreeHasher.TreeHash crypto_getTreeHASH(File file, HASH_TYPE hashType, int chunkSize){
+		 try{
+			 return new TreeHasher(crypto_hashAlgorithm(hashType), chunkSize).hash(file);
+			 
+		 }catch(Exception e){
+			 if(LOG_ENABLE)
+				 Log.e("TollBox_ERROR","crypto_getTreeHASH() Error getting tree HASH of file '" + file + "': " + e.getMessage(),e);
+			 
+			 return null;
+		 }
+	}
+	
+	private static Hasher.Algorithm crypto_hashAlgorithm(HASH_TYPE hashType) {
+		switch(hashType){
+			case md5:
+				return Hasher.Algorithm.MD5;
+			case sha1:
+				return Hasher.Algorithm.SHA1;
+			case sha256:
+				return Hasher.Algorithm.SHA256;
+			default:
+				return Hasher.Algorithm.SHA512;
+		}
+	}
+	
 	//-------------------- STRICTMODE--------------------------------------------------------------------
 	
 	/**
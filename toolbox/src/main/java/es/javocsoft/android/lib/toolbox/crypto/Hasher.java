@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.crypto;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import es.javocsoft.android.lib.toolbox.encoding.HexEncoder;
+import es.javocsoft.android.lib.toolbox.io.BufferPool;
+
+/**
+ * Hashing of data, streams and files.
+ * <br><br>
+ * {@link MessageDigest} instances are expensive to get, so each thread
+ * keeps its own instance of each algorithm and reuses it. Streams and
+ * files are hashed in blocks of {@link BufferPool#BUFFER_SIZE} bytes with
+ * pooled buffers, without loading them in memory.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class Hasher {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Supported hash algorithms. */
+	public static enum Algorithm {
+		MD5("MD5"), SHA1("SHA-1"), SHA256("SHA-256"), SHA512("SHA-512");
+
+		private final String name;
+
+		Algorithm(String name) {
+			this.name = name;
+		}
+
+		/** The standard algorithm name, as in {@link MessageDigest#getInstance(String)}. */
+		public String getName() {
+			return name;
+		}
+	}
+
+	/*
+	 * Per thread digests, by algorithm. A digest is taken out of its slot
+	 * while in use, so a nested hash in the same thread (for example, from a
+	 * stream being hashed) gets a new instance instead of a shared one.
+	 */
+	private static final ThreadLocal<MessageDigest[]> digests = new ThreadLocal<MessageDigest[]>() {
+		@Override
+		protected MessageDigest[] initialValue() {
+			return new MessageDigest[Algorithm.values().length];
+		}
+	};
+
+
+	private Hasher() {}
+
+
+	/**
+	 * Hashes the data.
+	 *
+	 * @param data
+	 * @param algorithm
+	 * @return The hash.
+	 */
+	public static byte[] hash(byte[] data, Algorithm algorithm) {
+		return hash(data, 0, data.length, algorithm);
+	}
+
+	/**
+	 * Hashes a range of the data.
+	 *
+	 * @param data
+	 * @param off	Offset of the data to hash.
+	 * @param len	Length of the data to hash.
+	 * @param algorithm
+	 * @return The hash.
+	 */
+	public static byte[] hash(byte[] data, int off, int len, Algorithm algorithm) {
+		MessageDigest digest = acquire(algorithm);
+		try {
+			digest.update(data, off, len);
+			return digest.digest();
+		} finally {
+			release(algorithm, digest);
+		}
+	}
+
+	/**
+	 * Hashes the UTF-8 bytes of the text.
+	 *
+	 * @param text
+	 * @param algorithm
+	 * @return The hash.
+	 */
+	public static byte[] hash(String text, Algorithm algorithm) {
+		return hash(text.getBytes(UTF8), algorithm);
+	}
+
+	/**
+	 * Hashes all the remaining content of the stream. The
+	 * stream is not closed.
+	 *
+	 * @param in
+	 * @param algorithm
+	 * @return The hash.
+	 * @throws IOException
+	 */
+	public static byte[] hash(InputStream in, Algorithm algorithm) throws IOException {
+		MessageDigest digest = acquire(algorithm);
+		byte[] buffer = BufferPool.acquire();
+		try {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+			return digest.digest();
+		} finally {
+			BufferPool.release(buffer);
+			release(algorithm, digest);
+		}
+	}
+
+	/**
+	 * Hashes the content of the file.
+	 *
+	 * @param file
+	 * @param algorithm
+	 * @return The hash.
+	 * @throws IOException
+	 */
+	public static byte[] hash(File file, Algorithm algorithm) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			return hash(in, algorithm);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Hashes the data, see {@link #hash(byte[], Algorithm)}.
+	 *
+	 * @param data
+	 * @param algorithm
+	 * @return The hash as a lower case hexadecimal string.
+	 */
+	public static String hashHex(byte[] data, Algorithm algorithm) {
+		return HexEncoder.encode(hash(data, algorithm));
+	}
+
+	/**
+	 * Hashes the UTF-8 bytes of the text, see {@link #hash(String, Algorithm)}.
+	 *
+	 * @param text
+	 * @param algorithm
+	 * @return The hash as a lower case hexadecimal string.
+	 */
+	public static String hashHex(String text, Algorithm algorithm) {
+		return HexEncoder.encode(hash(text, algorithm));
+	}
+
+	/**
+	 * Hashes the content of the file, see {@link #hash(File, Algorithm)}.
+	 *
+	 * @param file
+	 * @param algorithm
+	 * @return The hash as a lower case hexadecimal string.
+	 * @throws IOException
+	 */
+	public static String hashHex(File file, Algorithm algorithm) throws IOException {
+		return HexEncoder.encode(hash(file, algorithm));
+	}
+
+	/**
+	 * Gets a digest of the algorithm for the calling thread, it must be
+	 * given back with {@link #release(Algorithm, MessageDigest)} once used.
+	 * <br><br>
+	 * Use it to hash data that comes in pieces.
+	 *
+	 * @param algorithm
+	 * @return A reset digest.
+	 */
+	public static MessageDigest acquire(Algorithm algorithm) {
+		MessageDigest[] slots = digests.get();
+		MessageDigest digest = slots[algorithm.ordinal()];
+		if (digest != null) {
+			slots[algorithm.ordinal()] = null;
+			return digest;
+		}
+
+		try {
+			return MessageDigest.getInstance(algorithm.getName());
+		} catch (NoSuchAlgorithmException e) {
+			//All of them are mandatory in every Java and Android platform.
+			throw new IllegalStateException("Hash algorithm not available: " + algorithm.getName(), e);
+		}
+	}
+
+	/**
+	 * Gives back to the calling thread a digest got with
+	 * {@link #acquire(Algorithm)}.
+	 *
+	 * @param algorithm
+	 * @param digest
+	 */
+	public static void release(Algorithm algorithm, MessageDigest digest) {
+		digest.reset();
+		digests.get()[algorithm.ordinal()] = digest;
+	}
+}
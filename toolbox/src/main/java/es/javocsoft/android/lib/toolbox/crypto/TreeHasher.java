@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.crypto;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import es.javocsoft.android.lib.toolbox.encoding.HexEncoder;
+import es.javocsoft.android.lib.toolbox.io.BufferPool;
+
+/**
+ * Chunked tree (Merkle) hashing of large files.
+ * <br><br>
+ * The file is split in chunks of a fixed size that are hashed in parallel,
+ * each by a worker reading its own region of the file. The chunk hashes are
+ * the leaves of a binary tree whose root identifies the whole file, so a
+ * file can be verified chunk by chunk, for example while it is downloaded
+ * in segments, without hashing it all again.
+ * <br><br>
+ * To not mistake leaves for inner nodes, a leaf is H(0x00 | chunk) and an
+ * inner node is H(0x01 | left | right), like in RFC 6962. A node without
+ * sibling moves up to the next level unchanged.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class TreeHasher {
+
+	/** Default chunk size, 4MB. */
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private static final byte LEAF_PREFIX = 0x00;
+	private static final byte NODE_PREFIX = 0x01;
+
+	private final Hasher.Algorithm algorithm;
+	private final int chunkSize;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+
+	/**
+	 * Creates a tree hasher with chunks of {@link #DEFAULT_CHUNK_SIZE}.
+	 *
+	 * @param algorithm
+	 */
+	public TreeHasher(Hasher.Algorithm algorithm) {
+		this(algorithm, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a tree hasher.
+	 *
+	 * @param algorithm
+	 * @param chunkSize	Size of the chunks, in bytes. The same size must be
+	 * 					used to verify the file later.
+	 */
+	public TreeHasher(Hasher.Algorithm algorithm, int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		this.algorithm = algorithm;
+		this.chunkSize = chunkSize;
+	}
+
+
+	/**
+	 * Sets the max number of threads hashing chunks. By default, as many
+	 * as available cores.
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Hashes the file, in parallel.
+	 *
+	 * @param file
+	 * @return The tree hash of the file.
+	 * @throws IOException
+	 */
+	public TreeHash hash(File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final long length = channel.size();
+			final int chunks = chunkCount(length, chunkSize);
+			final byte[][] leaves = new byte[chunks][];
+
+			final AtomicInteger next = new AtomicInteger();
+			int workers = Math.min(threads, chunks);
+			ExecutorService executor = Executors.newFixedThreadPool(workers);
+			try {
+				List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+				for (int i = 0; i < workers; i++) {
+					tasks.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws IOException {
+							int index;
+							while ((index = next.getAndIncrement()) < chunks) {
+								leaves[index] = hashChunk(channel, index, length);
+							}
+							return null;
+						}
+					}));
+				}
+				for (Future<Void> task : tasks) {
+					task.get();
+				}
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while hashing '" + file + "'.", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException("Error hashing '" + file + "' (" + e.getCause() + ").", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+
+			return new TreeHash(algorithm, chunkSize, length, leaves);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Hashes only one chunk of the file.
+	 *
+	 * @param file
+	 * @param index	The chunk index.
+	 * @return The leaf hash of the chunk.
+	 * @throws IOException
+	 */
+	public byte[] hashChunk(File file, int index) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			if (index < 0 || index >= chunkCount(length, chunkSize))
+				throw new IllegalArgumentException("Chunk " + index + " out of the file.");
+			return hashChunk(channel, index, length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Hashes the chunk data.
+	 *
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @return The leaf hash of the chunk.
+	 */
+	public byte[] hashChunk(byte[] data, int off, int len) {
+		MessageDigest digest = Hasher.acquire(algorithm);
+		try {
+			digest.update(LEAF_PREFIX);
+			digest.update(data, off, len);
+			return digest.digest();
+		} finally {
+			Hasher.release(algorithm, digest);
+		}
+	}
+
+	/**
+	 * Verifies one chunk of the file against a known tree hash, without
+	 * hashing the rest of the file.
+	 *
+	 * @param file
+	 * @param expected	The expected tree hash, made with the same algorithm
+	 * 					and chunk size.
+	 * @param index		The chunk to verify.
+	 * @return TRUE if the chunk is the expected one.
+	 * @throws IOException
+	 */
+	public boolean verifyChunk(File file, TreeHash expected, int index) throws IOException {
+		checkCompatible(expected);
+		return MessageDigest.isEqual(expected.getChunkHash(index), hashChunk(file, index));
+	}
+
+	/**
+	 * Verifies the data of one chunk against a known tree hash.
+	 *
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @param expected	The expected tree hash, made with the same algorithm
+	 * 					and chunk size.
+	 * @param index		The chunk index.
+	 * @return TRUE if the data is the expected chunk.
+	 */
+	public boolean verifyChunk(byte[] data, int off, int len, TreeHash expected, int index) {
+		checkCompatible(expected);
+		return MessageDigest.isEqual(expected.getChunkHash(index), hashChunk(data, off, len));
+	}
+
+
+	/**
+	 * The tree hash of a file: its chunk hashes and the root.
+	 */
+	public static class TreeHash {
+
+		private final Hasher.Algorithm algorithm;
+		private final int chunkSize;
+		private final long length;
+		private final byte[][] leaves;
+		private final byte[] root;
+
+		/**
+		 * Rebuilds a tree hash from its chunk hashes, for example the ones
+		 * published with a file. Compare its root with a trusted one before
+		 * using its chunk hashes to verify the file.
+		 *
+		 * @param algorithm
+		 * @param chunkSize
+		 * @param length	The file length.
+		 * @param leaves	The chunk hashes, in file order.
+		 */
+		public TreeHash(Hasher.Algorithm algorithm, int chunkSize, long length, byte[][] leaves) {
+			if (leaves.length != chunkCount(length, chunkSize))
+				throw new IllegalArgumentException(leaves.length + " chunk hashes for " + chunkCount(length, chunkSize) + " chunks.");
+			this.algorithm = algorithm;
+			this.chunkSize = chunkSize;
+			this.length = length;
+			this.leaves = leaves.clone();
+			this.root = computeRoot(algorithm, leaves);
+		}
+
+		public Hasher.Algorithm getAlgorithm() {
+			return algorithm;
+		}
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		/** The length of the hashed file. */
+		public long getLength() {
+			return length;
+		}
+
+		public int getChunkCount() {
+			return leaves.length;
+		}
+
+		/** The leaf hash of a chunk. */
+		public byte[] getChunkHash(int index) {
+			return leaves[index].clone();
+		}
+
+		/** The root hash, it identifies the whole file. */
+		public byte[] getRoot() {
+			return root.clone();
+		}
+
+		/** The root hash as a lower case hexadecimal string. */
+		public String getRootHex() {
+			return HexEncoder.encode(root);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TreeHash))
+				return false;
+			TreeHash other = (TreeHash) o;
+			return algorithm == other.algorithm && chunkSize == other.chunkSize &&
+					length == other.length && Arrays.equals(root, other.root);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(root);
+		}
+
+		@Override
+		public String toString() {
+			return algorithm.getName() + " tree of " + leaves.length + " chunks: " + getRootHex();
+		}
+	}
+
+
+	//AUXILIAR
+
+	private byte[] hashChunk(FileChannel channel, int index, long length) throws IOException {
+		long position = (long) index * chunkSize;
+		long end = Math.min(length, position + chunkSize);
+
+		MessageDigest digest = Hasher.acquire(algorithm);
+		byte[] buffer = BufferPool.acquire();
+		try {
+			digest.update(LEAF_PREFIX);
+			ByteBuffer bb = ByteBuffer.wrap(buffer);
+			while (position < end) {
+				bb.clear();
+				bb.limit((int) Math.min(buffer.length, end - position));
+				//Positional reads, the channel is shared by all the workers.
+				int read = channel.read(bb, position);
+				if (read == -1)
+					throw new EOFException("File truncated while hashing.");
+				digest.update(buffer, 0, read);
+				position += read;
+			}
+			return digest.digest();
+		} finally {
+			BufferPool.release(buffer);
+			Hasher.release(algorithm, digest);
+		}
+	}
+
+	private void checkCompatible(TreeHash expected) {
+		if (expected.getAlgorithm() != algorithm || expected.getChunkSize() != chunkSize)
+			throw new IllegalArgumentException("Tree hash made with a different algorithm or chunk size.");
+	}
+
+	private static int chunkCount(long length, int chunkSize) {
+		//An empty file still has one, empty, chunk.
+		long chunks = Math.max(1, (length + chunkSize - 1) / chunkSize);
+		if (chunks > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many chunks, use a larger chunk size.");
+		return (int) chunks;
+	}
+
+	private static byte[] computeRoot(Hasher.Algorithm algorithm, byte[][] leaves) {
+		byte[][] level = leaves;
+		MessageDigest digest = Hasher.acquire(algorithm);
+		try {
+			while (level.length > 1) {
+				byte[][] parents = new byte[(level.length + 1) / 2][];
+				for (int i = 0; i < parents.length; i++) {
+					int left = i * 2;
+					if (left + 1 == level.length) {
+						parents[i] = level[left];
+					} else {
+						digest.update(NODE_PREFIX);
+						digest.update(level[left]);
+						digest.update(level[left + 1]);
+						parents[i] = digest.digest();
+					}
+				}
+				level = parents;
+			}
+		} finally {
+			Hasher.release(algorithm, digest);
+		}
+		return level[0].clone();
+	}
+}
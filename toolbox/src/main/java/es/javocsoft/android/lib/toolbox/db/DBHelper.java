@@ -21,13 +21,17 @@
  */
 package es.javocsoft.android.lib.toolbox.db;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
+import java.io.Reader;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import android.annotation.SuppressLint;
 import android.content.ContentValues;
@@ -35,6 +39,7 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 import es.javocsoft.android.lib.toolbox.ToolBox;
 
@@ -64,6 +69,9 @@ public class DBHelper<T extends DBSQLite> {
     protected T mDbHelper;	
 	protected SQLiteDatabase mDatabase;
 	
+	/* Compiled statements of the opened database, by SQL. */
+	private final Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+	
 	public static final long DB_OPERATION_OK = 0;
 	public static final long DB_ERROR = -1;
 	public static final long DB_ERROR_CLOSED = -2;
@@ -75,6 +83,24 @@ public class DBHelper<T extends DBSQLite> {
 	
 	/** An SQL query result order types. */
 	public static enum QUERY_ORDER {ASC, DESC};
+	
+	/**
+	 * What to do when a row of a batch breaks a constraint of the table:<br>
+	 * <ul>
+	 * <li>ABORT. The batch stops and the rows of the current chunk are rolled back.</li>
+	 * <li>IGNORE. The row is not inserted.</li>
+	 * <li>REPLACE. The existing rows in conflict are deleted and the row is inserted.</li>
+	 * <li>UPSERT. The existing row with the same key columns is updated with the row values.</li>
+	 * </ul>
+	 */
+	public static enum CONFLICT_MODE {ABORT, IGNORE, REPLACE, UPSERT};
+	
+	/** Default number of rows committed in each transaction of a batch. */
+	public static final int DEFAULT_BATCH_CHUNK_SIZE = 500;
+	
+	private static final int ROW_INSERTED = 1;
+	private static final int ROW_UPDATED = 2;
+	private static final int ROW_IGNORED = 3;
 
 	
 	
@@ -94,6 +120,7 @@ public class DBHelper<T extends DBSQLite> {
 	 * @throws SQLException
 	 */
 	public synchronized  void open() throws SQLException {
+		closeStatements();
 		mDatabase = mDbHelper.getWritableDatabase();
 	}
 	
@@ -101,6 +128,7 @@ public class DBHelper<T extends DBSQLite> {
 	 * Closes a SQLiteDatabase database helper.
 	 */
 	public synchronized  void close() {
+		closeStatements();
 		mDbHelper.close();		
 	}
 	
@@ -147,6 +175,40 @@ public class DBHelper<T extends DBSQLite> {
 	}
 
 	
+	/**
+	 * Gets the compiled INSERT statement for the columns of the table. 
+	 * Statements are compiled once and reused until the database is 
+	 * closed. Synchronize on the statement while using it.
+	 * 
+	 * @param tableName
+	 * @param columns
+	 * @return
+	 */
+	protected SQLiteStatement getInsertStatement(String tableName, String[] columns) {
+		return getStatement(JsonTableImporter.insertSql(tableName, columns, SQLiteDatabase.CONFLICT_NONE));
+	}
+	
+	private SQLiteStatement getStatement(String sql) {
+		synchronized (statements) {
+			SQLiteStatement statement = statements.get(sql);
+			if(statement==null){
+				statement = mDatabase.compileStatement(sql);
+				statements.put(sql, statement);
+			}
+			return statement;
+		}
+	}
+	
+	private void closeStatements() {
+		synchronized (statements) {
+			for(SQLiteStatement statement:statements.values()){
+				statement.close();
+			}
+			statements.clear();
+		}
+	}
+
+	
 	//DB OPERATIONS
 	
 	/**
@@ -311,16 +373,95 @@ public class DBHelper<T extends DBSQLite> {
 			Log.w(ToolBox.TAG, "Database is not opened!");
 			return null;
 		}
-		
+
 	}
-	
+
+	/**
+	 * A get to a SQLite table that returns the rows as objects. See
+	 * {@link DBRowMapper}.
+	 *
+	 * @param tableClass	The {@link DBTable} class of the rows.
+	 * @param tableName	The table name to query
+	 * @param where		Optional. The WHERE SQL clause (without the WHERE word itself)
+	 * @param selection	Optional. If in the where clause ? were specified, then this will
+	 * 					contain the values in the same order of the specified ? in the where.
+	 * @param orderBy	Optional. The order by SQL clause (without the ORDER BY word itself)
+	 * @param orderType	Optional. See {@link QUERY_ORDER}.
+	 * @return	The rows or null if the database is not opened.
+	 */
+	public <E extends DBTable> List<E> getRows(Class<E> tableClass, String tableName,
+			String where, String[] selection,
+			String orderBy, QUERY_ORDER orderType) {
+
+		return getRows(tableClass, tableName, where, selection, orderBy, orderType, 0, -1);
+	}
+
+	/**
+	 * A get to a SQLite table that returns a page of the rows as objects.
+	 * Only the rows of the page are read from the database. See
+	 * {@link DBRowMapper}.
+	 *
+	 * @param tableClass	The {@link DBTable} class of the rows.
+	 * @param tableName	The table name to query
+	 * @param where		Optional. The WHERE SQL clause (without the WHERE word itself)
+	 * @param selection	Optional. If in the where clause ? were specified, then this will
+	 * 					contain the values in the same order of the specified ? in the where.
+	 * @param orderBy	Optional. The order by SQL clause (without the ORDER BY word itself).
+	 * 					Set it to get stable pages.
+	 * @param orderType	Optional. See {@link QUERY_ORDER}.
+	 * @param offset	The number of rows to skip.
+	 * @param limit		The max number of rows of the page, -1 for no limit.
+	 * @return	The rows or null if the database is not opened.
+	 */
+	public <E extends DBTable> List<E> getRows(Class<E> tableClass, String tableName,
+			String where, String[] selection,
+			String orderBy, QUERY_ORDER orderType, int offset, int limit) {
+
+		Cursor cursor = query(tableName, where, selection, orderBy, orderType, offset, limit);
+		if(cursor==null)
+			return null;
+
+		return new DBRowMapper<E>(tableClass).readAll(cursor);
+	}
+
+	/**
+	 * A get to a SQLite table that reads the rows as objects lazily,
+	 * one by one while iterating, so large tables are not loaded in
+	 * memory. The cursor is closed at the end of the iteration, close
+	 * the iterator to stop before. See {@link DBRowMapper}.
+	 *
+	 * @param tableClass	The {@link DBTable} class of the rows.
+	 * @param tableName	The table name to query
+	 * @param where		Optional. The WHERE SQL clause (without the WHERE word itself)
+	 * @param selection	Optional. If in the where clause ? were specified, then this will
+	 * 					contain the values in the same order of the specified ? in the where.
+	 * @param orderBy	Optional. The order by SQL clause (without the ORDER BY word itself)
+	 * @param orderType	Optional. See {@link QUERY_ORDER}.
+	 * @return	The rows iterator or null if the database is not opened.
+	 */
+	public <E extends DBTable> DBRowMapper<E>.RowIterator iterateRows(Class<E> tableClass, String tableName,
+			String where, String[] selection,
+			String orderBy, QUERY_ORDER orderType) {
+
+		Cursor cursor = query(tableName, where, selection, orderBy, orderType, 0, -1);
+		if(cursor==null)
+			return null;
+
+		return new DBRowMapper<E>(tableClass).iterate(cursor);
+	}
+
 	/**
 	 * Inserts an object in the database.
+	 * <br><br>
+	 * The fields of each {@link DBTable} class are resolved once and the
+	 * INSERT statement of each table is compiled once and reused, so
+	 * inserting many rows does not pay for reflection or SQL parsing
+	 * on every row.
 	 * 
 	 * @param o	Must be of type {@link DBTable}.
 	 * @param fieldNames	Optional. If specified, the fields of the table. 
 	 * 						They must be in the same order of t fields.
-	 * @return	Returns {@link DBHelper#DB_OPERATION_OK} in case of no errors, otherwise a
+	 * @return	Returns the row id of the inserted row in case of no errors, otherwise a
 	 * 			number minor than 0 indicating the error. 
 	 */
 	protected long insert(DBTable o, String[] fieldNames) {
@@ -331,85 +472,42 @@ public class DBHelper<T extends DBSQLite> {
 			if(o.getClass().getSuperclass()!=null && 
 					o.getClass().getSuperclass()==DBTable.class) {
 				
-				//We prepare field names.
-				Field[] fields = o.getClass().getFields();
+				//Cached field metadata
+				DBTableMapping mapping = DBTableMapping.of(o.getClass());
 				if(fieldNames==null){
-					fieldNames = new String[fields.length];
-					for(int i = 0; i < fields.length; i++) {
-						fieldNames[i] = fields[i].getName();
-					}
+					fieldNames = mapping.names;
 				}
 				
-				if(fields.length!=fieldNames.length) {
+				if(mapping.fields.length!=fieldNames.length) {
 					//Both should match
 					res = DB_ERROR_BAD_DATA;
+				}else if(mapping.supported.length==0) {
+					res = DB_ERROR_INSERT_DATA;
 				}else{
-					ContentValues contentValues = new ContentValues();
-					
+					//(fieldColumns and object fields must be in the same order)
+					SQLiteStatement statement = getInsertStatement(o.tableName, mapping.supportedColumns(fieldNames));
 					try{
-						//We iterate through fields adding the values to the columns.
-						//(fieldColumns and object fields must be in the same order)
-						for(int i = 0; i < fields.length; i++) {
-					        Class<?> fieldType = fields[i].getType();
-		
-					        if(String.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (String) fields[i].get(o));
-					        } else if(Integer.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Integer) fields[i].get(o));		        
-					        } else if(Long.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Long) fields[i].get(o));		        
-					        } else if(Short.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Short) fields[i].get(o));		            
-					        } else if(Float.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Float) fields[i].get(o));
-					        } else if(Double.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Double) fields[i].get(o));		        
-					        } else if(Boolean.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Boolean) fields[i].get(o));		            
-					        } else if(Byte.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Byte) fields[i].get(o));		            
-					        } else if(byte[].class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (byte[]) fields[i].get(o));
-					            
-					        } else if(int.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Integer) fields[i].get(o));		            
-					        } else if(long.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Long) fields[i].get(o));		            
-					        } else if(short.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Short) fields[i].get(o));		            
-					        } else if(float.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Float) fields[i].get(o));
-					        } else if(double.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Double) fields[i].get(o));		        
-					        } else if(boolean.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Boolean) fields[i].get(o));		            
-					        } else if(byte.class.isAssignableFrom(fieldType)) {
-					            contentValues.put(fieldNames[i], (Byte) fields[i].get(o));		            
-					        } else {
-					        	//Not valid type.
-					        	Log.w(ToolBox.TAG, "Bad field type [" + fieldType + "] for inserting data in SQLite.");
-					        }
-						}
-						
-						if(contentValues.size()>0) {
-							long rowId = mDatabase.insert( (DBTable.class.cast(o)).tableName, null, contentValues);
+						synchronized (statement) {
+							statement.clearBindings();
+							mapping.bind(statement, o);
+							long rowId = statement.executeInsert();
 							res = (rowId!=-1?rowId:DB_ERROR);
-						}else{
-							res = DB_ERROR_INSERT_DATA;
 						}
-						
+					}catch(SQLException e){
+						Log.e(ToolBox.TAG, "Error inserting data in SQLite [" + e.getMessage() + "]", e);
+						res = DB_ERROR;
 					}catch(IllegalAccessException e){
 						Log.e(ToolBox.TAG, "Error inserting data in SQLite [" + e.getMessage() + "]", e);
 						res = DB_ERROR_UNEXPECTED;
 					}
 				}
 			}else{
-				Log.w(ToolBox.TAG, "Database is not opened!");
-				return DB_ERROR_CLOSED;
+				Log.e(ToolBox.TAG, "Error inserting data in SQLite [Object must be of DBTable type]");
+				return DB_ERROR_BAD_TYPE;
 			}
 		}else{
-			Log.e(ToolBox.TAG, "Error inserting data in SQLite [Object must be of DBTable type]");
-			return DB_ERROR_BAD_TYPE;
+			Log.w(ToolBox.TAG, "Database is not opened!");
+			return DB_ERROR_CLOSED;
 		}
 		
 		return res;
@@ -424,16 +522,18 @@ public class DBHelper<T extends DBSQLite> {
 	 */
 	protected long insert(List<DBTable> oList) {
 		
-		long res = DB_ERROR;
+		long res = DB_OPERATION_OK;
 		
 		mDatabase.beginTransaction();
 		for(DBTable o:oList) {
-			if((res = insert(o, null))!=DB_OPERATION_OK){				
+			//A row id on success
+			if((res = insert(o, null))<0){				
 				break;
 			}
 		}
 		
-		if(res==DB_OPERATION_OK) {
+		if(res>=0) {
+			res = DB_OPERATION_OK;
 			//All went OK so we mark all transactions as OK so
 			//they are committed
 			mDatabase.setTransactionSuccessful();
@@ -443,6 +543,137 @@ public class DBHelper<T extends DBSQLite> {
 		return res;
 	}
 	
+	/**
+	 * Inserts rows in the database, committing them in chunks. Use it to load
+	 * large amounts of rows.
+	 * <br><br>
+	 * Each chunk of rows is written in its own transaction, so the database 
+	 * is not locked for the whole batch and other threads can read and write 
+	 * between chunks. The rows can be of any {@link DBTable} class, each one 
+	 * is written in its table with a compiled statement.
+	 * <br><br>
+	 * If a row can not be written the batch stops, the rows of its chunk are 
+	 * rolled back and the ones of the previous chunks stay committed.
+	 * 
+	 * @param rows		The rows, of {@link DBTable} types. They are read once, 
+	 * 					so they can come from a lazy source.
+	 * @param chunkSize	The number of rows of each transaction, see 
+	 * 					{@link #DEFAULT_BATCH_CHUNK_SIZE}. At least 1.
+	 * @param mode		What to do with rows that break a constraint, see {@link CONFLICT_MODE}.
+	 * @param keyColumns	For {@link CONFLICT_MODE#UPSERT}, the fields that identify 
+	 * 						the row to update.
+	 * @return	The batch result, with the error code if it failed.
+	 */
+	public BatchResult insertBatch(Iterable<? extends DBTable> rows, int chunkSize, CONFLICT_MODE mode, String... keyColumns) {
+		BatchResult result = new BatchResult();
+		long start = System.currentTimeMillis();
+		
+		if(!mDatabase.isOpen()) {
+			Log.w(ToolBox.TAG, "Database is not opened!");
+			result.error = DB_ERROR_CLOSED;
+			return result;
+		}
+		if(mode==CONFLICT_MODE.UPSERT && (keyColumns==null || keyColumns.length==0)) {
+			throw new IllegalArgumentException("Key columns are required to upsert.");
+		}
+		
+		chunkSize = Math.max(1, chunkSize);
+		
+		//The statements for each table class, resolved once
+		Map<Class<?>, BatchWriter> writers = new HashMap<Class<?>, BatchWriter>();
+		Iterator<? extends DBTable> it = rows.iterator();
+		while(it.hasNext() && result.error==DB_OPERATION_OK) {
+			long chunkStart = System.currentTimeMillis();
+			int inserted = 0, updated = 0, ignored = 0;
+			
+			mDatabase.beginTransaction();
+			try{
+				for(int count=0; count<chunkSize && it.hasNext(); count++) {
+					DBTable o = it.next();
+					BatchWriter writer = writers.get(o.getClass());
+					if(writer==null) {
+						if(o.getClass().getSuperclass()!=DBTable.class) {
+							Log.e(ToolBox.TAG, "Error inserting data in SQLite [Object must be of DBTable type]");
+							result.error = DB_ERROR_BAD_TYPE;
+							break;
+						}
+						writer = new BatchWriter(o, mode, keyColumns);
+						writers.put(o.getClass(), writer);
+					}
+					
+					long res = writer.write(o);
+					if(res==ROW_INSERTED) {
+						inserted++;
+					}else if(res==ROW_UPDATED) {
+						updated++;
+					}else if(res==ROW_IGNORED) {
+						ignored++;
+					}else{
+						result.error = res;
+						break;
+					}
+				}
+				
+				if(result.error==DB_OPERATION_OK) {
+					mDatabase.setTransactionSuccessful();
+				}
+			}finally{
+				mDatabase.endTransaction();
+			}
+			
+			if(result.error==DB_OPERATION_OK) {
+				result.rowsInserted += inserted;
+				result.rowsUpdated += updated;
+				result.rowsIgnored += ignored;
+				result.chunks++;
+				result.maxChunkMillis = Math.max(result.maxChunkMillis, System.currentTimeMillis() - chunkStart);
+			}
+		}
+		
+		result.elapsedMillis = System.currentTimeMillis() - start;
+		return result;
+	}
+	
+	/**
+	 * Inserts rows in the database, committing them in chunks of 
+	 * {@link #DEFAULT_BATCH_CHUNK_SIZE} rows. 
+	 * See {@link #insertBatch(Iterable, int, CONFLICT_MODE, String...)}.
+	 * 
+	 * @param rows	The rows, of {@link DBTable} types.
+	 * @param mode	What to do with rows that break a constraint, see {@link CONFLICT_MODE}.
+	 * @return	The batch result, with the error code if it failed.
+	 */
+	public BatchResult insertBatch(Iterable<? extends DBTable> rows, CONFLICT_MODE mode) {
+		return insertBatch(rows, DEFAULT_BATCH_CHUNK_SIZE, mode);
+	}
+	
+	/**
+	 * Imports a JSON array of records into a table, streaming. See {@link JsonTableImporter}.
+	 * <br><br>
+	 * The JSON properties must have the same name as the table columns, for a 
+	 * {@link DBTable} use {@link DBTable#getColumnsAsArray(Class)}.
+	 * 
+	 * @param tableName	The table to fill.
+	 * @param columns	The columns to fill.
+	 * @param json		The JSON array of records. It is not closed.
+	 * @param chunkSize	The number of rows committed in each transaction.
+	 * @return	The import result, with the inserted rows and the speed, or null
+	 * 			if the database is not opened.
+	 * @throws IOException	If the JSON can not be read or is not an array of objects.
+	 * @throws SQLException	If a row can not be inserted. The rows of the previous
+	 * 						transactions stay committed.
+	 */
+	public JsonTableImporter.Result importJsonArray(String tableName, String[] columns, Reader json, int chunkSize) throws IOException {
+		if(mDatabase.isOpen()) {
+			JsonTableImporter importer = new JsonTableImporter(mDatabase, tableName, columns);
+			importer.setChunkSize(chunkSize);
+			return importer.importArray(json);
+		}else{
+			Log.w(ToolBox.TAG, "Database is not opened!");
+			return null;
+		}
+	}
+	
 	/**
 	 * Update rows of a table given the where clause and content to be
 	 * updated.
@@ -491,4 +722,199 @@ public class DBHelper<T extends DBSQLite> {
 		}
 	}
 	
+	
+	/**
+	 * The result of a batch insert, see {@link DBHelper#insertBatch(Iterable, int, CONFLICT_MODE, String...)}.
+	 * Only the rows of committed chunks are counted.
+	 */
+	public static class BatchResult {
+		
+		private int rowsInserted;
+		private int rowsUpdated;
+		private int rowsIgnored;
+		private int chunks;
+		private long elapsedMillis;
+		private long maxChunkMillis;
+		private long error = DB_OPERATION_OK;
+		
+		/** Number of inserted rows, replacing rows included. */
+		public int getRowsInserted() {
+			return rowsInserted;
+		}
+		
+		/** Number of rows updated by an upsert. */
+		public int getRowsUpdated() {
+			return rowsUpdated;
+		}
+		
+		/** Number of rows not written because of a conflict. */
+		public int getRowsIgnored() {
+			return rowsIgnored;
+		}
+		
+		/** Number of committed chunks. */
+		public int getChunks() {
+			return chunks;
+		}
+		
+		/** Time taken, in milliseconds. */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+		
+		/** The longest time of a chunk transaction, in milliseconds. */
+		public long getMaxChunkMillis() {
+			return maxChunkMillis;
+		}
+		
+		/** {@link DBHelper#DB_OPERATION_OK} or the error that stopped the batch. */
+		public long getError() {
+			return error;
+		}
+		
+		public boolean isSuccessful() {
+			return error==DB_OPERATION_OK;
+		}
+		
+		@Override
+		public String toString() {
+			return rowsInserted + " rows inserted, " + rowsUpdated + " updated, " + rowsIgnored + 
+					" ignored, in " + chunks + " chunks and " + elapsedMillis + "ms (longest chunk " + 
+					maxChunkMillis + "ms)" + (error!=DB_OPERATION_OK?" error " + error:"");
+		}
+	}
+	
+	
+	//AUXILIAR
+	
+	/*
+	 * Writes the rows of a DBTable class in a batch, with the 
+	 * compiled statements of its table.
+	 */
+	private class BatchWriter {
+		
+		private final DBTableMapping mapping;
+		private final SQLiteStatement insertStatement;
+		private final CONFLICT_MODE mode;
+		/* Upsert only. */
+		private SQLiteStatement updateStatement;
+		private int[] updateFields;
+		private int[] keyFields;
+		
+		BatchWriter(DBTable o, CONFLICT_MODE mode, String[] keyColumns) {
+			this.mapping = DBTableMapping.of(o.getClass());
+			this.mode = mode;
+			
+			int conflictAlgorithm;
+			switch(mode) {
+				case IGNORE:
+				case UPSERT:
+					conflictAlgorithm = SQLiteDatabase.CONFLICT_IGNORE;
+					break;
+				case REPLACE:
+					conflictAlgorithm = SQLiteDatabase.CONFLICT_REPLACE;
+					break;
+				default:
+					conflictAlgorithm = SQLiteDatabase.CONFLICT_NONE;
+			}
+			this.insertStatement = getStatement(JsonTableImporter.insertSql(o.tableName, 
+					mapping.supportedColumns(mapping.names), conflictAlgorithm));
+			
+			if(mode==CONFLICT_MODE.UPSERT) {
+				keyFields = new int[keyColumns.length];
+				for(int i=0;i<keyColumns.length;i++) {
+					keyFields[i] = mapping.indexOf(keyColumns[i]);
+					if(keyFields[i]==-1)
+						throw new IllegalArgumentException("Key column '" + keyColumns[i] + "' is not a field of " + o.getClass().getName());
+				}
+				updateFields = new int[mapping.supported.length - keyFields.length];
+				StringBuilder sql = new StringBuilder("UPDATE ").append(o.tableName).append(" SET ");
+				int u = 0;
+				for(int i:mapping.supported) {
+					if(!contains(keyFields, i)) {
+						sql.append(u>0?",":"").append(mapping.names[i]).append("=?");
+						updateFields[u++] = i;
+					}
+				}
+				sql.append(" WHERE ");
+				for(int k=0;k<keyFields.length;k++) {
+					sql.append(k>0?" AND ":"").append(mapping.names[keyFields[k]]).append("=?");
+				}
+				//Nothing to update if all the columns are keys
+				if(updateFields.length>0)
+					updateStatement = getStatement(sql.toString());
+			}
+		}
+		
+		/* Returns ROW_INSERTED, ROW_UPDATED, ROW_IGNORED or an error. */
+		long write(DBTable o) {
+			if(mapping.supported.length==0)
+				return DB_ERROR_INSERT_DATA;
+			
+			try{
+				long rowId;
+				synchronized (insertStatement) {
+					insertStatement.clearBindings();
+					mapping.bind(insertStatement, o);
+					rowId = insertStatement.executeInsert();
+				}
+				if(rowId!=-1)
+					return ROW_INSERTED;
+				
+				if(mode==CONFLICT_MODE.UPSERT && updateStatement!=null) {
+					int updated;
+					synchronized (updateStatement) {
+						updateStatement.clearBindings();
+						mapping.bind(updateStatement, o, updateFields, 1);
+						mapping.bind(updateStatement, o, keyFields, updateFields.length + 1);
+						updated = updateStatement.executeUpdateDelete();
+					}
+					//Not updated if the conflict was not on the key
+					return (updated>0?ROW_UPDATED:ROW_IGNORED);
+				}
+				return (mode==CONFLICT_MODE.ABORT?DB_ERROR:ROW_IGNORED);
+				
+			}catch(SQLException e){
+				Log.e(ToolBox.TAG, "Error inserting data in SQLite [" + e.getMessage() + "]", e);
+				return DB_ERROR;
+			}catch(IllegalAccessException e){
+				Log.e(ToolBox.TAG, "Error inserting data in SQLite [" + e.getMessage() + "]", e);
+				return DB_ERROR_UNEXPECTED;
+			}
+		}
+	}
+	
+	private static boolean contains(int[] values, int value) {
+		for(int v:values) {
+			if(v==value)
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Queries all the columns of a table, with an optional page.
+	 */
+	private Cursor query(String tableName, String where, String[] selection,
+			String orderBy, QUERY_ORDER orderType, int offset, int limit) {
+
+		if(mDatabase.isOpen()) {
+			String page = null;
+			if(limit>=0) {
+				page = Math.max(0, offset) + "," + limit;
+			}else if(offset>0) {
+				//SQLite needs a limit to set an offset
+				page = offset + "," + Long.MAX_VALUE;
+			}
+			return mDatabase.query(tableName, null,
+					where, (selection!=null && selection.length>0?selection:null),
+					null, null,
+					(orderBy!=null && orderType!=null?orderBy + " " + orderType.name():null),
+					page);
+		}else{
+			Log.w(ToolBox.TAG, "Database is not opened!");
+			return null;
+		}
+	}
+
 }
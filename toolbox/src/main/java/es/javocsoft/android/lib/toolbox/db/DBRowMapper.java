@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.db;
+
+import java.io.Closeable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import android.database.Cursor;
+
+/**
+ * Maps the rows of a {@link Cursor} to objects of a {@link DBTable} class.
+ * <br><br>
+ * The public fields of the class are filled from the columns with the same
+ * name. The column of each field is looked up once per cursor, not once per
+ * row, and primitive fields are set without boxing, so reading a table only
+ * allocates the resulting objects and their values. Fields without a column
+ * in the cursor are left untouched.
+ * <br><br>
+ * The objects are created with the no arguments constructor of the class,
+ * that can be private. For classes without it, override {@link #newRow()}.
+ * <br><br>
+ * The rows can be read all at once, a page at a time or lazily, one by one,
+ * with {@link #iterate(Cursor)} or {@link #forEach(Cursor, OnRowMappedListener)}.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ *
+ * @param <E>	The {@link DBTable} class.
+ */
+public class DBRowMapper<E extends DBTable> {
+
+	/**
+	 * Receives the rows mapped by {@link DBRowMapper#forEach(Cursor, OnRowMappedListener)}.
+	 */
+	public interface OnRowMappedListener<E> {
+		/**
+		 * @param row	The mapped row.
+		 * @return FALSE to stop reading rows.
+		 */
+		boolean onRowMapped(E row);
+	}
+
+	private final Class<E> tableClass;
+	private final DBTableMapping mapping;
+	/* The fields that can be set, of a supported type and neither static nor final. */
+	private final int[] fields;
+	private Constructor<E> constructor;
+
+
+	/**
+	 * Creates a mapper for the class.
+	 *
+	 * @param tableClass
+	 */
+	public DBRowMapper(Class<E> tableClass) {
+		this.tableClass = tableClass;
+		this.mapping = DBTableMapping.of(tableClass);
+
+		int count = 0;
+		int[] settable = new int[mapping.supported.length];
+		for (int i : mapping.supported) {
+			int modifiers = mapping.fields[i].getModifiers();
+			if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers))
+				settable[count++] = i;
+		}
+		this.fields = new int[count];
+		System.arraycopy(settable, 0, fields, 0, count);
+
+		try {
+			constructor = tableClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			//newRow() must be overridden
+			constructor = null;
+		}
+	}
+
+
+	/**
+	 * Reads all the rows of the cursor. The cursor is closed.
+	 *
+	 * @param cursor
+	 * @return The rows, empty if the cursor is null.
+	 */
+	public List<E> readAll(Cursor cursor) {
+		return readPage(cursor, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads a page of rows of the cursor. The cursor is closed.
+	 * <br><br>
+	 * To not load the skipped rows from the database, prefer paging in
+	 * the query, see {@link DBHelper#getRows(Class, String, String, String[], String, DBHelper.QUERY_ORDER, int, int)}.
+	 *
+	 * @param cursor
+	 * @param offset	The position of the first row to read.
+	 * @param limit		The max number of rows to read.
+	 * @return The rows, empty if the cursor is null.
+	 */
+	public List<E> readPage(Cursor cursor, int offset, int limit) {
+		if (cursor == null)
+			return new ArrayList<E>(0);
+		try {
+			int count = Math.max(0, Math.min(limit, cursor.getCount() - offset));
+			List<E> rows = new ArrayList<E>(count);
+			if (count > 0 && cursor.moveToPosition(offset)) {
+				int[] columns = columnIndexes(cursor);
+				do {
+					rows.add(read(cursor, columns));
+				} while (rows.size() < count && cursor.moveToNext());
+			}
+			return rows;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Reads the rows of the cursor one by one, without keeping them. The
+	 * cursor is closed.
+	 *
+	 * @param cursor
+	 * @param listener	Receives each row.
+	 * @return The number of read rows.
+	 */
+	public int forEach(Cursor cursor, OnRowMappedListener<E> listener) {
+		if (cursor == null)
+			return 0;
+		try {
+			int count = 0;
+			int[] columns = columnIndexes(cursor);
+			while (cursor.moveToNext()) {
+				count++;
+				if (!listener.onRowMapped(read(cursor, columns)))
+					break;
+			}
+			return count;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Reads the rows of the cursor lazily, each one when it is iterated.
+	 * The cursor is closed once all the rows are read, close the iterator
+	 * to stop before.
+	 *
+	 * @param cursor
+	 * @return An iterable over the rows, it can be iterated only once.
+	 */
+	public RowIterator iterate(Cursor cursor) {
+		return new RowIterator(cursor);
+	}
+
+	/**
+	 * Reads the row at the current position of the cursor.
+	 *
+	 * @param cursor	A cursor positioned on a row.
+	 * @return The row.
+	 */
+	public E read(Cursor cursor) {
+		return read(cursor, columnIndexes(cursor));
+	}
+
+	/**
+	 * Creates an empty row object, to be filled from the cursor.
+	 * By default, with the no arguments constructor of the class.
+	 *
+	 * @return
+	 */
+	protected E newRow() {
+		if (constructor == null)
+			throw new IllegalStateException(tableClass.getName() + " has no constructor without arguments, override newRow().");
+		try {
+			return constructor.newInstance();
+		} catch (Exception e) {
+			throw new IllegalStateException("Error creating a " + tableClass.getName() + " (" + e.getMessage() + ")", e);
+		}
+	}
+
+
+	/**
+	 * Lazy iteration over the rows of a cursor.
+	 */
+	public class RowIterator implements Iterator<E>, Iterable<E>, Closeable {
+
+		private final Cursor cursor;
+		private final int[] columns;
+		private boolean hasNext;
+
+		private RowIterator(Cursor cursor) {
+			this.cursor = cursor;
+			this.columns = (cursor != null ? columnIndexes(cursor) : null);
+			this.hasNext = (cursor != null && cursor.moveToNext());
+			if (!hasNext)
+				close();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext)
+				throw new NoSuchElementException();
+			E row = read(cursor, columns);
+			hasNext = cursor.moveToNext();
+			if (!hasNext)
+				close();
+			return row;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return this;
+		}
+
+		/**
+		 * Closes the cursor.
+		 */
+		@Override
+		public void close() {
+			hasNext = false;
+			if (cursor != null && !cursor.isClosed())
+				cursor.close();
+		}
+	}
+
+
+	//AUXILIAR
+
+	/**
+	 * The column of each settable field in the cursor, -1 if it is not there.
+	 */
+	private int[] columnIndexes(Cursor cursor) {
+		int[] columns = new int[fields.length];
+		for (int f = 0; f < fields.length; f++) {
+			columns[f] = cursor.getColumnIndex(mapping.names[fields[f]]);
+		}
+		return columns;
+	}
+
+	private E read(Cursor cursor, int[] columns) {
+		E row = newRow();
+		try {
+			for (int f = 0; f < fields.length; f++) {
+				int column = columns[f];
+				if (column == -1)
+					continue;
+
+				int i = fields[f];
+				Field field = mapping.fields[i];
+				switch (mapping.types[i]) {
+					case DBTableMapping.TYPE_STRING:
+						field.set(row, cursor.isNull(column) ? null : cursor.getString(column));
+						break;
+					case DBTableMapping.TYPE_BLOB:
+						field.set(row, cursor.isNull(column) ? null : cursor.getBlob(column));
+						break;
+					case DBTableMapping.TYPE_INTEGER:
+						field.set(row, cursor.isNull(column) ? null : Integer.valueOf(cursor.getInt(column)));
+						break;
+					case DBTableMapping.TYPE_LONG:
+						field.set(row, cursor.isNull(column) ? null : Long.valueOf(cursor.getLong(column)));
+						break;
+					case DBTableMapping.TYPE_SHORT:
+						field.set(row, cursor.isNull(column) ? null : Short.valueOf(cursor.getShort(column)));
+						break;
+					case DBTableMapping.TYPE_BYTE:
+						field.set(row, cursor.isNull(column) ? null : Byte.valueOf((byte) cursor.getInt(column)));
+						break;
+					case DBTableMapping.TYPE_FLOAT:
+						field.set(row, cursor.isNull(column) ? null : Float.valueOf(cursor.getFloat(column)));
+						break;
+					case DBTableMapping.TYPE_DOUBLE:
+						field.set(row, cursor.isNull(column) ? null : Double.valueOf(cursor.getDouble(column)));
+						break;
+					case DBTableMapping.TYPE_BOOLEAN:
+						field.set(row, cursor.isNull(column) ? null : Boolean.valueOf(cursor.getInt(column) != 0));
+						break;
+					case DBTableMapping.TYPE_P_INT:
+						field.setInt(row, cursor.getInt(column));
+						break;
+					case DBTableMapping.TYPE_P_LONG:
+						field.setLong(row, cursor.getLong(column));
+						break;
+					case DBTableMapping.TYPE_P_SHORT:
+						field.setShort(row, cursor.getShort(column));
+						break;
+					case DBTableMapping.TYPE_P_BYTE:
+						field.setByte(row, (byte) cursor.getInt(column));
+						break;
+					case DBTableMapping.TYPE_P_FLOAT:
+						field.setFloat(row, cursor.getFloat(column));
+						break;
+					case DBTableMapping.TYPE_P_DOUBLE:
+						field.setDouble(row, cursor.getDouble(column));
+						break;
+					case DBTableMapping.TYPE_P_BOOLEAN:
+						field.setBoolean(row, cursor.getInt(column) != 0);
+						break;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Error reading a " + tableClass.getName() + " (" + e.getMessage() + ")", e);
+		}
+		return row;
+	}
+}
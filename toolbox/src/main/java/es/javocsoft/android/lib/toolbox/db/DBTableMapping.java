@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.db;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import es.javocsoft.android.lib.toolbox.ToolBox;
+
+/**
+ * The column metadata of a {@link DBTable} class: its public fields, in a
+ * fixed order, and how each one is stored. It is resolved once per class
+ * and cached, so rows are bound without looking up the fields or their
+ * types again and primitive values are bound without boxing.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+final class DBTableMapping {
+
+	static final int TYPE_UNSUPPORTED = -1;
+	static final int TYPE_STRING = 0;
+	static final int TYPE_BLOB = 1;
+	//Boxed types, can be null
+	static final int TYPE_INTEGER = 2;
+	static final int TYPE_LONG = 3;
+	static final int TYPE_SHORT = 4;
+	static final int TYPE_BYTE = 5;
+	static final int TYPE_FLOAT = 6;
+	static final int TYPE_DOUBLE = 7;
+	static final int TYPE_BOOLEAN = 8;
+	//Primitive types
+	static final int TYPE_P_INT = 9;
+	static final int TYPE_P_LONG = 10;
+	static final int TYPE_P_SHORT = 11;
+	static final int TYPE_P_BYTE = 12;
+	static final int TYPE_P_FLOAT = 13;
+	static final int TYPE_P_DOUBLE = 14;
+	static final int TYPE_P_BOOLEAN = 15;
+
+	private static final ConcurrentHashMap<Class<?>, DBTableMapping> mappings = new ConcurrentHashMap<Class<?>, DBTableMapping>();
+
+	/** All the public fields, the columns of the table. */
+	final Field[] fields;
+	/** The storage type of each field. */
+	final int[] types;
+	/** The field names. */
+	final String[] names;
+	/** The indexes of the fields of a supported type. */
+	final int[] supported;
+
+
+	private DBTableMapping(Class<?> tableClass) {
+		fields = tableClass.getFields();
+		types = new int[fields.length];
+		names = new String[fields.length];
+		int count = 0;
+		for (int i = 0; i < fields.length; i++) {
+			names[i] = fields[i].getName();
+			types[i] = typeOf(fields[i].getType());
+			if (types[i] != TYPE_UNSUPPORTED) {
+				count++;
+			} else {
+				Log.w(ToolBox.TAG, "Bad field type [" + fields[i].getType() + "] for inserting data in SQLite.");
+			}
+		}
+		supported = new int[count];
+		for (int i = 0, c = 0; i < fields.length; i++) {
+			if (types[i] != TYPE_UNSUPPORTED)
+				supported[c++] = i;
+		}
+	}
+
+	/**
+	 * Gets the mapping of the class.
+	 */
+	static DBTableMapping of(Class<?> tableClass) {
+		DBTableMapping mapping = mappings.get(tableClass);
+		if (mapping == null) {
+			mapping = new DBTableMapping(tableClass);
+			DBTableMapping previous = mappings.putIfAbsent(tableClass, mapping);
+			if (previous != null)
+				mapping = previous;
+		}
+		return mapping;
+	}
+
+	/**
+	 * The columns of the fields of a supported type.
+	 *
+	 * @param columnNames	The column of each field, in field order.
+	 */
+	String[] supportedColumns(String[] columnNames) {
+		String[] columns = new String[supported.length];
+		for (int c = 0; c < supported.length; c++) {
+			columns[c] = columnNames[supported[c]];
+		}
+		return columns;
+	}
+
+	/**
+	 * Gets the index of the field of a supported type with the name.
+	 *
+	 * @param name
+	 * @return The field index or -1 if there is not such field.
+	 */
+	int indexOf(String name) {
+		for (int i : supported) {
+			if (names[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Binds the values of the fields of a supported type to the
+	 * statement parameters, in field order and starting at 1.
+	 *
+	 * @param statement
+	 * @param row	An object of the mapped class.
+	 * @throws IllegalAccessException
+	 */
+	void bind(SQLiteStatement statement, Object row) throws IllegalAccessException {
+		bind(statement, row, supported, 1);
+	}
+
+	/**
+	 * Binds the values of the specified fields to the statement
+	 * parameters, in the given order.
+	 *
+	 * @param statement
+	 * @param row	An object of the mapped class.
+	 * @param fieldIndexes	The fields to bind, all of a supported type.
+	 * @param firstIndex	The parameter of the first field, starting at 1.
+	 * @throws IllegalAccessException
+	 */
+	void bind(SQLiteStatement statement, Object row, int[] fieldIndexes, int firstIndex) throws IllegalAccessException {
+		int index = firstIndex;
+		for (int i : fieldIndexes) {
+			Field field = fields[i];
+			switch (types[i]) {
+				case TYPE_STRING:
+					String text = (String) field.get(row);
+					if (text == null) {
+						statement.bindNull(index);
+					} else {
+						statement.bindString(index, text);
+					}
+					break;
+				case TYPE_BLOB:
+					byte[] blob = (byte[]) field.get(row);
+					if (blob == null) {
+						statement.bindNull(index);
+					} else {
+						statement.bindBlob(index, blob);
+					}
+					break;
+				case TYPE_INTEGER:
+				case TYPE_LONG:
+				case TYPE_SHORT:
+				case TYPE_BYTE:
+					Number integer = (Number) field.get(row);
+					if (integer == null) {
+						statement.bindNull(index);
+					} else {
+						statement.bindLong(index, integer.longValue());
+					}
+					break;
+				case TYPE_FLOAT:
+				case TYPE_DOUBLE:
+					Number real = (Number) field.get(row);
+					if (real == null) {
+						statement.bindNull(index);
+					} else {
+						statement.bindDouble(index, real.doubleValue());
+					}
+					break;
+				case TYPE_BOOLEAN:
+					Boolean bool = (Boolean) field.get(row);
+					if (bool == null) {
+						statement.bindNull(index);
+					} else {
+						statement.bindLong(index, bool ? 1 : 0);
+					}
+					break;
+				case TYPE_P_INT:
+					statement.bindLong(index, field.getInt(row));
+					break;
+				case TYPE_P_LONG:
+					statement.bindLong(index, field.getLong(row));
+					break;
+				case TYPE_P_SHORT:
+					statement.bindLong(index, field.getShort(row));
+					break;
+				case TYPE_P_BYTE:
+					statement.bindLong(index, field.getByte(row));
+					break;
+				case TYPE_P_FLOAT:
+					statement.bindDouble(index, field.getFloat(row));
+					break;
+				case TYPE_P_DOUBLE:
+					statement.bindDouble(index, field.getDouble(row));
+					break;
+				case TYPE_P_BOOLEAN:
+					statement.bindLong(index, field.getBoolean(row) ? 1 : 0);
+					break;
+			}
+			index++;
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static int typeOf(Class<?> type) {
+		if (type == String.class)
+			return TYPE_STRING;
+		if (type == byte[].class)
+			return TYPE_BLOB;
+		if (type == Integer.class)
+			return TYPE_INTEGER;
+		if (type == Long.class)
+			return TYPE_LONG;
+		if (type == Short.class)
+			return TYPE_SHORT;
+		if (type == Byte.class)
+			return TYPE_BYTE;
+		if (type == Float.class)
+			return TYPE_FLOAT;
+		if (type == Double.class)
+			return TYPE_DOUBLE;
+		if (type == Boolean.class)
+			return TYPE_BOOLEAN;
+		if (type == int.class)
+			return TYPE_P_INT;
+		if (type == long.class)
+			return TYPE_P_LONG;
+		if (type == short.class)
+			return TYPE_P_SHORT;
+		if (type == byte.class)
+			return TYPE_P_BYTE;
+		if (type == float.class)
+			return TYPE_P_FLOAT;
+		if (type == double.class)
+			return TYPE_P_DOUBLE;
+		if (type == boolean.class)
+			return TYPE_P_BOOLEAN;
+		return TYPE_UNSUPPORTED;
+	}
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.db;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import es.javocsoft.android.lib.toolbox.json.GsonProcessor;
+
+/**
+ * Imports a JSON array of objects into a SQLite table, streaming.
+ * <br><br>
+ * The array is read with a {@link JsonReader}, one property at a time,
+ * without creating an object for each record. The properties are mapped
+ * to the table columns once and their values are bound straight into a
+ * compiled INSERT statement that is reused for all the rows. The rows are
+ * committed in transactions of a configurable number of rows, so neither
+ * the whole array nor the whole import are kept in memory.
+ * <br><br>
+ * Property values are stored as they come: texts as TEXT, integer numbers
+ * as INTEGER, decimal numbers as REAL, booleans as 1 or 0, and nested
+ * objects or arrays as their JSON text. Properties without a column are
+ * skipped and columns without a property in a record are set to NULL.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class JsonTableImporter {
+
+	/** Default number of rows per transaction. */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	/* The conflict clauses, by SQLiteDatabase.CONFLICT_* value. */
+	private static final String[] CONFLICT_CLAUSES = {
+		"", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE" };
+
+	private final SQLiteDatabase database;
+	private final String tableName;
+	/* The column of each JSON property. */
+	private final Map<String, String> propertyColumns;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private int conflictAlgorithm = SQLiteDatabase.CONFLICT_NONE;
+
+
+	/**
+	 * Creates an importer for a table whose columns have the same
+	 * name as the JSON properties.
+	 *
+	 * @param database	An open database.
+	 * @param tableName
+	 * @param columns	The columns to fill.
+	 */
+	public JsonTableImporter(SQLiteDatabase database, String tableName, String[] columns) {
+		this(database, tableName, sameNames(columns));
+	}
+
+	/**
+	 * Creates an importer for a table.
+	 *
+	 * @param database	An open database.
+	 * @param tableName
+	 * @param propertyColumns	The column of each JSON property.
+	 */
+	public JsonTableImporter(SQLiteDatabase database, String tableName, Map<String, String> propertyColumns) {
+		if (propertyColumns.isEmpty())
+			throw new IllegalArgumentException("No columns to import into '" + tableName + "'.");
+		this.database = database;
+		this.tableName = tableName;
+		this.propertyColumns = new LinkedHashMap<String, String>(propertyColumns);
+	}
+
+
+	/**
+	 * Sets the number of rows committed in each transaction. Larger
+	 * chunks are faster but keep the database locked for longer.
+	 *
+	 * @param chunkSize	By default, {@link #DEFAULT_CHUNK_SIZE}.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Sets what to do when a row breaks a constraint of the table.
+	 *
+	 * @param conflictAlgorithm	One of the SQLiteDatabase.CONFLICT_* values. By
+	 * 							default, {@link SQLiteDatabase#CONFLICT_NONE}, the
+	 * 							import fails.
+	 */
+	public void setConflictAlgorithm(int conflictAlgorithm) {
+		if (conflictAlgorithm < 0 || conflictAlgorithm >= CONFLICT_CLAUSES.length)
+			throw new IllegalArgumentException("Unknown conflict algorithm " + conflictAlgorithm);
+		this.conflictAlgorithm = conflictAlgorithm;
+	}
+
+	/**
+	 * Imports the records of the JSON array. The reader is not closed.
+	 * <br><br>
+	 * If the import fails, only the rows of the current chunk are rolled
+	 * back, the ones of previous chunks stay committed.
+	 *
+	 * @param json	The JSON array of records.
+	 * @return The import result.
+	 * @throws IOException	If the JSON can not be read or is not an array of objects.
+	 * @throws android.database.SQLException	If a row can not be inserted.
+	 */
+	public Result importArray(Reader json) throws IOException {
+		long start = System.currentTimeMillis();
+		Result result = new Result();
+
+		//Mapping resolved once, the bind index of each property
+		Map<String, Integer> bindIndexes = new HashMap<String, Integer>();
+		String[] columns = new String[propertyColumns.size()];
+		int i = 0;
+		for (Map.Entry<String, String> entry : propertyColumns.entrySet()) {
+			columns[i] = entry.getValue();
+			bindIndexes.put(entry.getKey(), ++i);
+		}
+		TypeAdapter<JsonElement> elementAdapter = GsonProcessor.getInstance()
+				.getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP).getAdapter(JsonElement.class);
+
+		JsonReader in = new JsonReader(json);
+		SQLiteStatement statement = database.compileStatement(insertSql(tableName, columns, conflictAlgorithm));
+		try {
+			in.beginArray();
+			while (in.hasNext()) {
+				database.beginTransaction();
+				try {
+					int rows = 0;
+					while (rows < chunkSize && in.hasNext()) {
+						statement.clearBindings();
+						in.beginObject();
+						while (in.hasNext()) {
+							Integer index = bindIndexes.get(in.nextName());
+							if (index == null) {
+								in.skipValue();
+							} else {
+								bind(statement, index, in, elementAdapter);
+							}
+						}
+						in.endObject();
+
+						if (statement.executeInsert() == -1) {
+							//Ignored by the conflict algorithm
+							result.rowsSkipped++;
+						} else {
+							result.rowsInserted++;
+						}
+						rows++;
+					}
+					database.setTransactionSuccessful();
+				} finally {
+					database.endTransaction();
+				}
+				result.chunks++;
+			}
+			in.endArray();
+		} catch (IllegalStateException e) {
+			throw new IOException("Not a JSON array of objects (" + e.getMessage() + ").", e);
+		} finally {
+			statement.close();
+		}
+
+		result.elapsedMillis = System.currentTimeMillis() - start;
+		return result;
+	}
+
+
+	/**
+	 * The result of an import.
+	 */
+	public static class Result {
+
+		private int rowsInserted;
+		private int rowsSkipped;
+		private int chunks;
+		private long elapsedMillis;
+
+		/** Number of inserted rows. */
+		public int getRowsInserted() {
+			return rowsInserted;
+		}
+
+		/** Number of rows ignored because of a conflict, see {@link JsonTableImporter#setConflictAlgorithm(int)}. */
+		public int getRowsSkipped() {
+			return rowsSkipped;
+		}
+
+		/** Number of committed transactions. */
+		public int getChunks() {
+			return chunks;
+		}
+
+		/** Time taken, in milliseconds. */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/** Import speed, in inserted rows per second. */
+		public double getRowsPerSecond() {
+			return rowsInserted * 1000d / Math.max(1, elapsedMillis);
+		}
+
+		@Override
+		public String toString() {
+			return rowsInserted + " rows inserted, " + rowsSkipped + " skipped, in " + chunks +
+					" transactions and " + elapsedMillis + "ms (" + Math.round(getRowsPerSecond()) + " rows/s)";
+		}
+	}
+
+
+	//AUXILIAR
+
+	/**
+	 * Builds the INSERT statement of the columns, with one parameter by column.
+	 */
+	static String insertSql(String tableName, String[] columns, int conflictAlgorithm) {
+		StringBuilder sql = new StringBuilder(64 + columns.length * 16);
+		sql.append("INSERT").append(CONFLICT_CLAUSES[conflictAlgorithm]).append(" INTO ").append(tableName).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				sql.append(',');
+			sql.append(columns[i]);
+		}
+		sql.append(") VALUES (");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i > 0 ? ",?" : "?");
+		}
+		return sql.append(')').toString();
+	}
+
+	private static void bind(SQLiteStatement statement, int index, JsonReader in,
+			TypeAdapter<JsonElement> elementAdapter) throws IOException {
+		switch (in.peek()) {
+			case NULL:
+				in.nextNull();
+				statement.bindNull(index);
+				break;
+			case BOOLEAN:
+				statement.bindLong(index, in.nextBoolean() ? 1 : 0);
+				break;
+			case NUMBER:
+				bindNumber(statement, index, in.nextString());
+				break;
+			case STRING:
+				statement.bindString(index, in.nextString());
+				break;
+			default:
+				//Nested object or array
+				statement.bindString(index, elementAdapter.read(in).toString());
+		}
+	}
+
+	private static void bindNumber(SQLiteStatement statement, int index, String number) {
+		if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+			try {
+				statement.bindLong(index, Long.parseLong(number));
+				return;
+			} catch (NumberFormatException e) {
+				//Too large for an INTEGER
+			}
+		}
+		statement.bindDouble(index, Double.parseDouble(number));
+	}
+
+	private static Map<String, String> sameNames(String[] columns) {
+		Map<String, String> propertyColumns = new LinkedHashMap<String, String>();
+		for (String column : columns) {
+			propertyColumns.put(column, column);
+		}
+		return propertyColumns;
+	}
+}
@@ -18,9 +18,7 @@ package es.javocsoft.android.lib.toolbox.encoding;
  */
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -28,7 +26,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.text.MessageFormat;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import es.javocsoft.android.lib.toolbox.io.BufferPool;
+import es.javocsoft.android.lib.toolbox.io.IOUtils;
 
 /**
  * Implements Base64 encoding and decoding as defined by RFC 2045:
@@ -181,7 +183,7 @@ public class Base64
 	 * 
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static final int NON_BASE_64 = -1;
+	static final byte NON_BASE_64 = -1;
 
 	/**
 	 * A character that is not a valid base 64 character.
@@ -195,7 +197,7 @@ public class Base64
 	 * 
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static final int NON_BASE_64_PADDING = -3;
+	static final byte NON_BASE_64_PADDING = -3;
 
 	/**
 	 * This class need not be instantiated, all methods are static.
@@ -254,6 +256,48 @@ public class Base64
 	 */
 	public static final String version = "1.2";
 
+	/**
+	 * Encoding flag to omit the padding '=' characters at the end of the
+	 * encoded data.
+	 */
+	public static final int NO_PADDING = 1;
+
+	/**
+	 * Encoding and decoding flag to use the "URL and Filename safe" alphabet
+	 * of RFC 4648, with '-' and '_' in place of '+' and '/'.
+	 */
+	public static final int URL_SAFE = 8;
+
+	/**
+	 * Table of the sixty-four characters of the URL and Filename safe
+	 * Base64 alphabet: [A-Za-z0-9-_]
+	 */
+	protected static final byte[] base64UrlSafeChars = new byte[64];
+
+	/**
+	 * Reverse lookup table for the URL and Filename safe Base64 alphabet,
+	 * see {@link #reverseBase64Chars}.
+	 */
+	protected static final byte[] reverseBase64UrlSafeChars = new byte[0x100];
+	static
+	{
+		System.arraycopy(base64Chars, 0, base64UrlSafeChars, 0, 62);
+		base64UrlSafeChars[62] = '-';
+		base64UrlSafeChars[63] = '_';
+
+		System.arraycopy(reverseBase64Chars, 0, reverseBase64UrlSafeChars, 0, 0x100);
+		reverseBase64UrlSafeChars['+'] = NON_BASE_64;
+		reverseBase64UrlSafeChars['/'] = NON_BASE_64;
+		reverseBase64UrlSafeChars['-'] = 62;
+		reverseBase64UrlSafeChars['_'] = 63;
+	}
+
+	/**
+	 * Number of input bytes encoded in each line when line breaks are
+	 * inserted, 76 characters.
+	 */
+	private static final int BYTES_PER_LINE = 57;
+
 	/**
 	 * Encode a String in Base64. The String is converted to and from bytes
 	 * according to the platform's default character encoding. No line breaks or
@@ -357,31 +401,25 @@ public class Base64
 	 */
 	public static byte[] encode(byte[] bytes, boolean lineBreaks)
 	{
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		// calculate the length of the resulting output.
-		// in general it will be 4/3 the size of the input
-		// but the input length must be divisible by three.
-		// If it isn't the next largest size that is divisible
-		// by three is used.
-		int mod;
-		int length = bytes.length;
-		if ((mod = length % 3) != 0)
+		int length = encodedLength(bytes.length, 0);
+		if (!lineBreaks)
 		{
-			length += 3 - mod;
+			byte[] out = new byte[length];
+			encodeBlocks(bytes, 0, bytes.length, out, 0, 0);
+			return out;
 		}
-		length = length * 4 / 3;
-		ByteArrayOutputStream out = new ByteArrayOutputStream(length);
-		try
-		{
-			encode(in, out, lineBreaks);
-		} catch (IOException x)
+
+		// Each line of 76 characters, the last one included, ends
+		// with a line break.
+		int lines = (bytes.length + BYTES_PER_LINE - 1) / BYTES_PER_LINE;
+		byte[] out = new byte[length + lines];
+		int dp = 0;
+		for (int sp = 0; sp < bytes.length; sp += BYTES_PER_LINE)
 		{
-			// This can't happen.
-			// The input and output streams were constructed
-			// on memory structures that don't actually use IO.
-			throw new RuntimeException(x);
+			dp += encodeBlocks(bytes, sp, Math.min(BYTES_PER_LINE, bytes.length - sp), out, dp, 0);
+			out[dp++] = '\n';
 		}
-		return out.toByteArray();
+		return out;
 	}
 
 	/**
@@ -460,9 +498,11 @@ public class Base64
 		OutputStream out = null;
 		try
 		{
-			in = new BufferedInputStream(new FileInputStream(fIn));
-			temp = File.createTempFile("Base64", null, null);
-			out = new BufferedOutputStream(new FileOutputStream(temp));
+			// Data is encoded in blocks, no extra buffering is needed. The
+			// temporal file goes in the destination folder, so it is renamed.
+			in = new FileInputStream(fIn);
+			temp = File.createTempFile("Base64", null, fOut.getAbsoluteFile().getParentFile());
+			out = new FileOutputStream(temp);
 			encode(in, out, lineBreaks);
 			in.close();
 			in = null;
@@ -521,74 +561,21 @@ public class Base64
 	 */
 	public static void encode(InputStream in, OutputStream out, boolean lineBreaks) throws IOException
 	{
-		// Base64 encoding converts three bytes of input to
-		// four bytes of output
-		int[] inBuffer = new int[3];
-		int lineCount = 0;
-
-		boolean done = false;
-		while (!done && (inBuffer[0] = in.read()) != END_OF_INPUT)
+		Base64OutputStream encoder = new Base64OutputStream(out, 0, lineBreaks);
+		byte[] buffer = BufferPool.acquire();
+		try
 		{
-			// Fill the buffer
-			inBuffer[1] = in.read();
-			inBuffer[2] = in.read();
-
-			// Calculate the out Buffer
-			// The first byte of our in buffer will always be valid
-			// but we must check to make sure the other two bytes
-			// are not END_OF_INPUT before using them.
-			// The basic idea is that the three bytes get split into
-			// four bytes along these lines:
-			// [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
-			// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
-			// bytes are considered to be zero when absent.
-			// the four bytes are then mapped to common ASCII symbols
-
-			// A's: first six bits of first byte
-			out.write(base64Chars[inBuffer[0] >> 2]);
-			if (inBuffer[1] != END_OF_INPUT)
+			int read;
+			while ((read = in.read(buffer)) != END_OF_INPUT)
 			{
-				// B's: last two bits of first byte, first four bits of second
-				// byte
-				out.write(base64Chars[((inBuffer[0] << 4) & 0x30) | (inBuffer[1] >> 4)]);
-				if (inBuffer[2] != END_OF_INPUT)
-				{
-					// C's: last four bits of second byte, first two bits of
-					// third byte
-					out.write(base64Chars[((inBuffer[1] << 2) & 0x3c) | (inBuffer[2] >> 6)]);
-					// D's: last six bits of third byte
-					out.write(base64Chars[inBuffer[2] & 0x3F]);
-				} else
-				{
-					// C's: last four bits of second byte
-					out.write(base64Chars[((inBuffer[1] << 2) & 0x3c)]);
-					// an equals sign for a character that is not a Base64
-					// character
-					out.write('=');
-					done = true;
-				}
-			} else
-			{
-				// B's: last two bits of first byte
-				out.write(base64Chars[((inBuffer[0] << 4) & 0x30)]);
-				// an equal signs for characters that is not a Base64 characters
-				out.write('=');
-				out.write('=');
-				done = true;
-			}
-			lineCount += 4;
-			if (lineBreaks && lineCount >= 76)
-			{
-				out.write('\n');
-				lineCount = 0;
+				encoder.write(buffer, 0, read);
 			}
-		}
-		if (lineBreaks && lineCount >= 1)
+			// Writes the last block, without closing the stream.
+			encoder.finish();
+		} finally
 		{
-			out.write('\n');
-			lineCount = 0;
+			BufferPool.release(buffer);
 		}
-		out.flush();
 	}
 
 	/**
@@ -849,31 +836,9 @@ public class Base64
 	 */
 	public static byte[] decode(byte[] bytes)
 	{
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		// calculate the length of the resulting output.
-		// in general it will be at most 3/4 the size of the input
-		// but the input length must be divisible by four.
-		// If it isn't the next largest size that is divisible
-		// by four is used.
-		int mod;
-		int length = bytes.length;
-		if ((mod = length % 4) != 0)
-		{
-			length += 4 - mod;
-		}
-		length = length * 3 / 4;
-		ByteArrayOutputStream out = new ByteArrayOutputStream(length);
-		try
-		{
-			decode(in, out, false);
-		} catch (IOException x)
-		{
-			// This can't happen.
-			// The input and output streams were constructed
-			// on memory structures that don't actually use IO.
-			throw new RuntimeException(x);
-		}
-		return out.toByteArray();
+		byte[] out = new byte[decodedLength(bytes, 0, bytes.length, 0)];
+		decodeBlocks(bytes, 0, bytes.length, out, 0, reverseBase64Chars, null);
+		return out;
 	}
 
 	/**
@@ -891,8 +856,8 @@ public class Base64
 	 */
 	public static void decode(byte[] bytes, OutputStream out) throws IOException
 	{
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		decode(in, out, false);
+		out.write(decode(bytes));
+		out.flush();
 	}
 
 	/**
@@ -910,8 +875,8 @@ public class Base64
 	 */
 	public static void decodeToStream(byte[] bytes, OutputStream out) throws IOException
 	{
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		decode(in, out, false);
+		out.write(decode(bytes));
+		out.flush();
 	}
 
 	/**
@@ -1010,9 +975,11 @@ public class Base64
 		OutputStream out = null;
 		try
 		{
-			in = new BufferedInputStream(new FileInputStream(fIn));
-			temp = File.createTempFile("Base64", null, null);
-			out = new BufferedOutputStream(new FileOutputStream(temp));
+			// Data is encoded in blocks, no extra buffering is needed. The
+			// temporal file goes in the destination folder, so it is renamed.
+			in = new FileInputStream(fIn);
+			temp = File.createTempFile("Base64", null, fOut.getAbsoluteFile().getParentFile());
+			out = new FileOutputStream(temp);
 			decode(in, out, throwExceptions);
 			in.close();
 			in = null;
@@ -1050,47 +1017,6 @@ public class Base64
 		}
 	}
 
-	/**
-	 * Reads the next (decoded) Base64 character from the input stream. Non
-	 * Base64 characters are skipped.
-	 * 
-	 * @param in
-	 *            Stream from which bytes are read.
-	 * @param throwExceptions
-	 *            Throw an exception if an unexpected character is encountered.
-	 * @return the next Base64 character from the stream or -1 if there are no
-	 *         more Base64 characters on the stream.
-	 * @throws IOException
-	 *             if an IO Error occurs.
-	 * @throws es.javocsoft.android.lib.toolbox.encoding.Base64DecodingException
-	 *             if unexpected data is encountered when throwExceptions is
-	 *             specified.
-	 * 
-	 * @since ostermillerutils 1.00.00
-	 */
-	private static final int readBase64(InputStream in, boolean throwExceptions) throws IOException
-	{
-		int read;
-		int numPadding = 0;
-		do
-		{
-			read = in.read();
-			if (read == END_OF_INPUT)
-				return END_OF_INPUT;
-			read = reverseBase64Chars[(byte) read];
-			if (throwExceptions && (read == NON_BASE_64 || (numPadding > 0 && read > NON_BASE_64)))
-			{
-				throw new Base64DecodingException(MessageFormat.format("unexpectedchar %s", (Object[]) new String[]
-				{ "'" + (char) read + "' (0x" + Integer.toHexString(read) + ")" }), (char) read);
-			}
-			if (read == NON_BASE_64_PADDING)
-			{
-				numPadding++;
-			}
-		} while (read <= NON_BASE_64);
-		return read;
-	}
-
 	/**
 	 * Decode Base64 encoded data from the InputStream to a byte array.
 	 * Characters that are not part of the Base64 alphabet are ignored in the
@@ -1106,9 +1032,7 @@ public class Base64
 	 */
 	public static byte[] decodeToBytes(InputStream in) throws IOException
 	{
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		decode(in, out, false);
-		return out.toByteArray();
+		return IOUtils.readFully(new Base64InputStream(in, 0), -1);
 	}
 
 	/**
@@ -1196,49 +1120,399 @@ public class Base64
 	 */
 	public static void decode(InputStream in, OutputStream out, boolean throwExceptions) throws IOException
 	{
-		// Base64 decoding converts four bytes of input to three bytes of output
-		int[] inBuffer = new int[4];
-
-		// read bytes unmapping them from their ASCII encoding in the process
-		// we must read at least two bytes to be able to output anything
-		boolean done = false;
-		while (!done && (inBuffer[0] = readBase64(in, throwExceptions)) != END_OF_INPUT
-		        && (inBuffer[1] = readBase64(in, throwExceptions)) != END_OF_INPUT)
+		InputStream decoder = new Base64InputStream(in, 0, throwExceptions);
+		byte[] buffer = BufferPool.acquire();
+		try
 		{
-			// Fill the buffer
-			inBuffer[2] = readBase64(in, throwExceptions);
-			inBuffer[3] = readBase64(in, throwExceptions);
-
-			// Calculate the output
-			// The first two bytes of our in buffer will always be valid
-			// but we must check to make sure the other two bytes
-			// are not END_OF_INPUT before using them.
-			// The basic idea is that the four bytes will get reconstituted
-			// into three bytes along these lines:
-			// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
-			// [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
-			// bytes are considered to be zero when absent.
-
-			// six A and two B
-			out.write(inBuffer[0] << 2 | inBuffer[1] >> 4);
-			if (inBuffer[2] != END_OF_INPUT)
+			int read;
+			while ((read = decoder.read(buffer)) != END_OF_INPUT)
 			{
-				// four B and four C
-				out.write(inBuffer[1] << 4 | inBuffer[2] >> 2);
-				if (inBuffer[3] != END_OF_INPUT)
-				{
-					// two C and six D
-					out.write(inBuffer[2] << 6 | inBuffer[3]);
-				} else
+				out.write(buffer, 0, read);
+			}
+		} finally
+		{
+			BufferPool.release(buffer);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Calculates the exact length of the Base64 encoding of the given number
+	 * of bytes, without line breaks.
+	 * 
+	 * @param length
+	 *            Number of bytes to encode.
+	 * @param flags
+	 *            {@link #NO_PADDING} to not count the padding characters, or 0.
+	 * @return Number of encoded characters.
+	 * @throws IllegalArgumentException
+	 *             if the encoded data would be larger than an array can hold.
+	 */
+	public static int encodedLength(int length, int flags)
+	{
+		long encoded = (length / 3) * 4L;
+		int rest = length % 3;
+		if (rest != 0)
+		{
+			encoded += (flags & NO_PADDING) != 0 ? rest + 1 : 4;
+		}
+		if (encoded > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Input too large to be encoded (" + length + " bytes).");
+		}
+		return (int) encoded;
+	}
+
+	/**
+	 * Encode bytes in Base64 into the given array. No line breaks or other
+	 * white space are inserted into the encoded data.
+	 * <p>
+	 * The data is encoded in blocks of three bytes directly from one array to
+	 * the other, nothing is allocated.
+	 * 
+	 * @param src
+	 *            The data to encode.
+	 * @param srcOff
+	 *            Offset of the data in src.
+	 * @param len
+	 *            Number of bytes to encode.
+	 * @param dst
+	 *            Array to which to write the encoded data. It must have room
+	 *            for {@link #encodedLength(int, int)} bytes.
+	 * @param dstOff
+	 *            Offset in dst where to start writing.
+	 * @param flags
+	 *            A combination of {@link #NO_PADDING} and {@link #URL_SAFE},
+	 *            or 0.
+	 * @return Number of bytes written to dst.
+	 * @throws IllegalArgumentException
+	 *             if there is not room enough in dst.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, byte[] dst, int dstOff, int flags)
+	{
+		if (dst.length - dstOff < encodedLength(len, flags))
+		{
+			throw new IllegalArgumentException("Output array too small, " + encodedLength(len, flags) + " bytes needed.");
+		}
+		return encodeBlocks(src, srcOff, len, dst, dstOff, flags);
+	}
+
+	/**
+	 * Encode in Base64 all the remaining bytes of the source buffer into the
+	 * destination buffer. No line breaks or other white space are inserted into
+	 * the encoded data. The position of both buffers is advanced.
+	 * 
+	 * @param src
+	 *            The data to encode.
+	 * @param dst
+	 *            Buffer to which to write the encoded data. It must have room
+	 *            for {@link #encodedLength(int, int)} bytes.
+	 * @param flags
+	 *            A combination of {@link #NO_PADDING} and {@link #URL_SAFE},
+	 *            or 0.
+	 * @return Number of bytes written to dst.
+	 * @throws IllegalArgumentException
+	 *             if there is not room enough in dst.
+	 */
+	public static int encode(ByteBuffer src, ByteBuffer dst, int flags)
+	{
+		int length = encodedLength(src.remaining(), flags);
+		if (dst.remaining() < length)
+		{
+			throw new IllegalArgumentException("Output buffer too small, " + length + " bytes needed.");
+		}
+
+		if (src.hasArray() && dst.hasArray())
+		{
+			encodeBlocks(src.array(), src.arrayOffset() + src.position(), src.remaining(), dst.array(),
+			        dst.arrayOffset() + dst.position(), flags);
+			src.position(src.limit());
+			dst.position(dst.position() + length);
+			return length;
+		}
+
+		// Direct buffers are encoded through pooled arrays. Chunks are a
+		// multiple of three bytes so only the last one can be padded.
+		byte[] in = BufferPool.acquire();
+		byte[] out = BufferPool.acquire();
+		try
+		{
+			int chunk = (BufferPool.BUFFER_SIZE / 4) * 3;
+			while (src.hasRemaining())
+			{
+				int read = Math.min(chunk, src.remaining());
+				src.get(in, 0, read);
+				dst.put(out, 0, encodeBlocks(in, 0, read, out, 0, flags));
+			}
+		} finally
+		{
+			BufferPool.release(in);
+			BufferPool.release(out);
+		}
+		return length;
+	}
+
+	/**
+	 * Calculates the exact length of the decoded data. Characters that are not
+	 * part of the Base64 alphabet are not counted, like the decoding methods
+	 * ignore them.
+	 * 
+	 * @param src
+	 *            The Base64 encoded data.
+	 * @param off
+	 *            Offset of the data in src.
+	 * @param len
+	 *            Length of the encoded data.
+	 * @param flags
+	 *            {@link #URL_SAFE} if the data uses the URL safe alphabet, or 0.
+	 * @return Number of decoded bytes.
+	 */
+	public static int decodedLength(byte[] src, int off, int len, int flags)
+	{
+		byte[] table = decodingTable(flags);
+		int chars = 0;
+		for (int i = off, end = off + len; i < end; i++)
+		{
+			if (table[src[i] & 0xff] >= 0)
+				chars++;
+		}
+		return decodedLength(chars);
+	}
+
+	/**
+	 * Decode Base64 encoded bytes into the given array. Characters that are
+	 * not part of the Base64 alphabet are ignored in the input.
+	 * <p>
+	 * Blocks of four Base64 characters are decoded directly from one array to
+	 * the other, only blocks with other characters (line breaks, padding...)
+	 * are decoded one character at a time. Nothing is allocated.
+	 * 
+	 * @param src
+	 *            The data to decode.
+	 * @param srcOff
+	 *            Offset of the data in src.
+	 * @param len
+	 *            Length of the data to decode.
+	 * @param dst
+	 *            Array to which to write the decoded data. It must have room
+	 *            for {@link #decodedLength(byte[], int, int, int)} bytes.
+	 * @param dstOff
+	 *            Offset in dst where to start writing.
+	 * @param flags
+	 *            {@link #URL_SAFE} if the data uses the URL safe alphabet, or 0.
+	 * @return Number of bytes written to dst.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if there is not room enough in dst.
+	 */
+	public static int decode(byte[] src, int srcOff, int len, byte[] dst, int dstOff, int flags)
+	{
+		return decodeBlocks(src, srcOff, len, dst, dstOff, decodingTable(flags), null);
+	}
+
+	/**
+	 * Decode all the remaining Base64 encoded bytes of the source buffer into
+	 * the destination buffer. Characters that are not part of the Base64
+	 * alphabet are ignored in the input. The position of both buffers is
+	 * advanced.
+	 * 
+	 * @param src
+	 *            The data to decode.
+	 * @param dst
+	 *            Buffer to which to write the decoded data.
+	 * @param flags
+	 *            {@link #URL_SAFE} if the data uses the URL safe alphabet, or 0.
+	 * @return Number of bytes written to dst.
+	 * @throws java.nio.BufferOverflowException
+	 *             if there is not room enough in dst.
+	 */
+	public static int decode(ByteBuffer src, ByteBuffer dst, int flags)
+	{
+		byte[] table = decodingTable(flags);
+		if (src.hasArray() && dst.hasArray())
+		{
+			int length = decodedLength(src.array(), src.arrayOffset() + src.position(), src.remaining(), flags);
+			if (dst.remaining() < length)
+			{
+				throw new BufferOverflowException();
+			}
+			decodeBlocks(src.array(), src.arrayOffset() + src.position(), src.remaining(), dst.array(),
+			        dst.arrayOffset() + dst.position(), table, null);
+			src.position(src.limit());
+			dst.position(dst.position() + length);
+			return length;
+		}
+
+		// Direct buffers are decoded through pooled arrays, keeping the
+		// characters of an incomplete block from one chunk to the next.
+		byte[] in = BufferPool.acquire();
+		byte[] out = BufferPool.acquire();
+		int[] quantum = new int[2];
+		int length = 0;
+		try
+		{
+			while (src.hasRemaining())
+			{
+				int read = Math.min(in.length, src.remaining());
+				src.get(in, 0, read);
+				int decoded = decodeBlocks(in, 0, read, out, 0, table, quantum);
+				dst.put(out, 0, decoded);
+				length += decoded;
+			}
+			int decoded = decodeQuantum(quantum, out, 0);
+			dst.put(out, 0, decoded);
+			length += decoded;
+		} finally
+		{
+			BufferPool.release(in);
+			BufferPool.release(out);
+		}
+		return length;
+	}
+
+	/**
+	 * Encodes whole blocks of three bytes with a single table lookup per
+	 * character, then the last incomplete block if any.
+	 */
+	private static int encodeBlocks(byte[] src, int srcOff, int len, byte[] dst, int dstOff, int flags)
+	{
+		byte[] chars = (flags & URL_SAFE) != 0 ? base64UrlSafeChars : base64Chars;
+		int sp = srcOff;
+		int dp = dstOff;
+		int blocksEnd = srcOff + len - len % 3;
+		while (sp < blocksEnd)
+		{
+			int bits = (src[sp++] & 0xff) << 16 | (src[sp++] & 0xff) << 8 | (src[sp++] & 0xff);
+			dst[dp++] = chars[(bits >>> 18) & 0x3f];
+			dst[dp++] = chars[(bits >>> 12) & 0x3f];
+			dst[dp++] = chars[(bits >>> 6) & 0x3f];
+			dst[dp++] = chars[bits & 0x3f];
+		}
+
+		int rest = len % 3;
+		if (rest != 0)
+		{
+			int b0 = src[sp++] & 0xff;
+			dst[dp++] = chars[b0 >> 2];
+			if (rest == 1)
+			{
+				dst[dp++] = chars[(b0 << 4) & 0x3f];
+			} else
+			{
+				int b1 = src[sp] & 0xff;
+				dst[dp++] = chars[((b0 << 4) & 0x3f) | (b1 >> 4)];
+				dst[dp++] = chars[(b1 << 2) & 0x3f];
+			}
+			if ((flags & NO_PADDING) == 0)
+			{
+				for (int i = rest; i < 3; i++)
+					dst[dp++] = '=';
+			}
+		}
+		return dp - dstOff;
+	}
+
+	/**
+	 * Decodes whole blocks of four Base64 characters at once, falling back to
+	 * one character at a time when a block has characters out of the alphabet.
+	 * <p>
+	 * When quantum is given, it holds the bits and the number of characters of
+	 * an incomplete block between calls, see {@link #decodeQuantum(int[], byte[], int)}.
+	 * Otherwise, the incomplete block at the end is decoded.
+	 */
+	static int decodeBlocks(byte[] src, int srcOff, int len, byte[] dst, int dstOff, byte[] table, int[] quantum)
+	{
+		int sp = srcOff;
+		int end = srcOff + len;
+		int dp = dstOff;
+		int bits = quantum != null ? quantum[0] : 0;
+		int count = quantum != null ? quantum[1] : 0;
+		while (sp < end)
+		{
+			if (count == 0 && end - sp >= 4)
+			{
+				int c0 = table[src[sp] & 0xff];
+				int c1 = table[src[sp + 1] & 0xff];
+				int c2 = table[src[sp + 2] & 0xff];
+				int c3 = table[src[sp + 3] & 0xff];
+				if ((c0 | c1 | c2 | c3) >= 0)
 				{
-					done = true;
+					int block = c0 << 18 | c1 << 12 | c2 << 6 | c3;
+					dst[dp++] = (byte) (block >> 16);
+					dst[dp++] = (byte) (block >> 8);
+					dst[dp++] = (byte) block;
+					sp += 4;
+					continue;
 				}
-			} else
+			}
+
+			int c = table[src[sp++] & 0xff];
+			if (c < 0)
+				continue;
+			bits = bits << 6 | c;
+			if (++count == 4)
 			{
-				done = true;
+				dst[dp++] = (byte) (bits >> 16);
+				dst[dp++] = (byte) (bits >> 8);
+				dst[dp++] = (byte) bits;
+				bits = 0;
+				count = 0;
 			}
 		}
-		out.flush();
+
+		if (quantum != null)
+		{
+			quantum[0] = bits;
+			quantum[1] = count;
+		} else
+		{
+			dp += decodeTail(bits, count, dst, dp);
+		}
+		return dp - dstOff;
+	}
+
+	/**
+	 * Decodes the incomplete block left by {@link #decodeBlocks(byte[], int, int, byte[], int, byte[], int[])}
+	 * at the end of the data, and clears it.
+	 */
+	static int decodeQuantum(int[] quantum, byte[] dst, int dstOff)
+	{
+		int written = decodeTail(quantum[0], quantum[1], dst, dstOff);
+		quantum[0] = 0;
+		quantum[1] = 0;
+		return written;
+	}
+
+	/**
+	 * Decodes the last two or three characters of Base64 data. A single
+	 * character can not be decoded, it is ignored.
+	 */
+	private static int decodeTail(int bits, int count, byte[] dst, int dstOff)
+	{
+		if (count == 2)
+		{
+			dst[dstOff] = (byte) (bits >> 4);
+			return 1;
+		} else if (count == 3)
+		{
+			dst[dstOff] = (byte) (bits >> 10);
+			dst[dstOff + 1] = (byte) (bits >> 2);
+			return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * Number of bytes encoded by the given number of Base64 characters.
+	 */
+	private static int decodedLength(int chars)
+	{
+		int rest = chars % 4;
+		return (chars / 4) * 3 + (rest > 1 ? rest - 1 : 0);
+	}
+
+	static byte[] decodingTable(int flags)
+	{
+		return (flags & URL_SAFE) != 0 ? reverseBase64UrlSafeChars : reverseBase64Chars;
 	}
 
 	/**
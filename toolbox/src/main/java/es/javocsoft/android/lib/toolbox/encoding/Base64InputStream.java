@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.encoding;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+
+/**
+ * An input stream that decodes on the fly the Base64 data read from the
+ * underlying stream, so data of any size is decoded with constant memory.
+ * <p>
+ * The data is decoded in blocks with {@link Base64}. Like
+ * {@link Base64#decode(byte[])}, characters that are not part of the Base64
+ * alphabet are ignored, unless the stream is created to throw exceptions on
+ * unexpected data.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class Base64InputStream extends FilterInputStream
+{
+
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	private final byte[] table;
+	private final boolean throwExceptions;
+
+	private final byte[] encoded = new byte[CHUNK_SIZE];
+	private final byte[] decoded = new byte[CHUNK_SIZE];
+	private int decodedPos;
+	private int decodedCount;
+	private final int[] quantum = new int[2];
+	private boolean padding;
+	private boolean eof;
+
+	/**
+	 * Creates a Base64 decoding stream that ignores the characters that are
+	 * not part of the Base64 alphabet.
+	 *
+	 * @param in
+	 *            Stream from which to read the encoded data.
+	 * @param flags
+	 *            {@link Base64#URL_SAFE} if the data uses the URL safe
+	 *            alphabet, or 0.
+	 */
+	public Base64InputStream(InputStream in, int flags)
+	{
+		this(in, flags, false);
+	}
+
+	/**
+	 * Creates a Base64 decoding stream.
+	 *
+	 * @param in
+	 *            Stream from which to read the encoded data.
+	 * @param flags
+	 *            {@link Base64#URL_SAFE} if the data uses the URL safe
+	 *            alphabet, or 0.
+	 * @param throwExceptions
+	 *            Whether to throw a {@link Base64DecodingException} when
+	 *            anything other than Base64 characters, white space and final
+	 *            padding is read.
+	 */
+	public Base64InputStream(InputStream in, int flags, boolean throwExceptions)
+	{
+		super(in);
+		this.table = Base64.decodingTable(flags);
+		this.throwExceptions = throwExceptions;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (decodedPos == decodedCount && !fill())
+			return -1;
+		return decoded[decodedPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+		if (decodedPos == decodedCount && !fill())
+			return -1;
+		int count = Math.min(len, decodedCount - decodedPos);
+		System.arraycopy(decoded, decodedPos, b, off, count);
+		decodedPos += count;
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = 0;
+		while (skipped < n && (decodedPos < decodedCount || fill()))
+		{
+			int count = (int) Math.min(n - skipped, decodedCount - decodedPos);
+			decodedPos += count;
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		return decodedCount - decodedPos;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit)
+	{
+	}
+
+	@Override
+	public synchronized void reset() throws IOException
+	{
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * Decodes the next chunk of data. Returns false at the end of the data.
+	 */
+	private boolean fill() throws IOException
+	{
+		decodedPos = 0;
+		decodedCount = 0;
+		while (decodedCount == 0 && !eof)
+		{
+			int read = in.read(encoded, 0, encoded.length);
+			if (read == -1)
+			{
+				eof = true;
+				decodedCount = Base64.decodeQuantum(quantum, decoded, 0);
+			} else
+			{
+				if (throwExceptions)
+					check(read);
+				decodedCount = Base64.decodeBlocks(encoded, 0, read, decoded, 0, table, quantum);
+			}
+		}
+		return decodedCount > 0;
+	}
+
+	private void check(int length) throws Base64DecodingException
+	{
+		for (int i = 0; i < length; i++)
+		{
+			byte c = table[encoded[i] & 0xff];
+			if (c == Base64.NON_BASE_64_PADDING)
+			{
+				padding = true;
+			} else if (c == Base64.NON_BASE_64 || (padding && c >= 0))
+			{
+				char read = (char) (encoded[i] & 0xff);
+				throw new Base64DecodingException(MessageFormat.format("unexpectedchar {0}",
+				        "'" + read + "' (0x" + Integer.toHexString(read) + ")"), read);
+			}
+		}
+	}
+}
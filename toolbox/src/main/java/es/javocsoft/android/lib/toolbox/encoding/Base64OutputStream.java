@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.encoding;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that encodes in Base64 the written data on the fly,
+ * so data of any size is encoded with constant memory.
+ * <p>
+ * The data is encoded in blocks with {@link Base64}. The output is the same
+ * as {@link Base64#encode(byte[], boolean)}: with line breaks, every line of
+ * 76 characters, the last one included, ends with a line break.
+ * <p>
+ * The last bytes, and the padding, are only written by {@link #finish()} or
+ * {@link #close()}, {@link #flush()} can not write an incomplete block.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class Base64OutputStream extends FilterOutputStream
+{
+
+	/** Bytes encoded at once, a whole number of lines. */
+	private static final int CHUNK_SIZE = 57 * 48;
+
+	private final int flags;
+	private final boolean lineBreaks;
+	private final int lineSize;
+
+	private final byte[] pending = new byte[CHUNK_SIZE];
+	private int pendingCount;
+	private final byte[] encoded;
+	private boolean finished;
+
+	/**
+	 * Creates a Base64 encoding stream without line breaks.
+	 *
+	 * @param out
+	 *            Stream to which to write the encoded data.
+	 * @param flags
+	 *            A combination of {@link Base64#NO_PADDING} and
+	 *            {@link Base64#URL_SAFE}, or 0.
+	 */
+	public Base64OutputStream(OutputStream out, int flags)
+	{
+		this(out, flags, false);
+	}
+
+	/**
+	 * Creates a Base64 encoding stream.
+	 *
+	 * @param out
+	 *            Stream to which to write the encoded data.
+	 * @param flags
+	 *            A combination of {@link Base64#NO_PADDING} and
+	 *            {@link Base64#URL_SAFE}, or 0.
+	 * @param lineBreaks
+	 *            Whether to insert line breaks every 76 characters in the
+	 *            output.
+	 */
+	public Base64OutputStream(OutputStream out, int flags, boolean lineBreaks)
+	{
+		super(out);
+		this.flags = flags;
+		this.lineBreaks = lineBreaks;
+		this.lineSize = lineBreaks ? 57 : CHUNK_SIZE;
+		int lines = CHUNK_SIZE / lineSize;
+		this.encoded = new byte[Base64.encodedLength(CHUNK_SIZE, flags) + (lineBreaks ? lines : 0)];
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		checkNotFinished();
+		pending[pendingCount++] = (byte) b;
+		if (pendingCount == CHUNK_SIZE)
+		{
+			writeEncoded(pending, 0, CHUNK_SIZE);
+			pendingCount = 0;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		checkNotFinished();
+		if (pendingCount > 0)
+		{
+			int count = Math.min(len, CHUNK_SIZE - pendingCount);
+			System.arraycopy(b, off, pending, pendingCount, count);
+			pendingCount += count;
+			off += count;
+			len -= count;
+			if (pendingCount < CHUNK_SIZE)
+				return;
+			writeEncoded(pending, 0, CHUNK_SIZE);
+			pendingCount = 0;
+		}
+
+		// Whole chunks are encoded straight from the caller array.
+		while (len >= CHUNK_SIZE)
+		{
+			writeEncoded(b, off, CHUNK_SIZE);
+			off += CHUNK_SIZE;
+			len -= CHUNK_SIZE;
+		}
+		System.arraycopy(b, off, pending, 0, len);
+		pendingCount = len;
+	}
+
+	/**
+	 * Writes the last bytes, with the padding, without closing the
+	 * underlying stream. Nothing else can be written afterwards.
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException
+	{
+		if (finished)
+			return;
+		if (pendingCount > 0)
+		{
+			writeEncoded(pending, 0, pendingCount);
+			pendingCount = 0;
+		}
+		finished = true;
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			finish();
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	private void writeEncoded(byte[] b, int off, int len) throws IOException
+	{
+		int written = 0;
+		for (int end = off + len; off < end; off += lineSize)
+		{
+			written += Base64.encode(b, off, Math.min(lineSize, end - off), encoded, written, flags);
+			if (lineBreaks)
+				encoded[written++] = '\n';
+		}
+		out.write(encoded, 0, written);
+	}
+
+	private void checkNotFinished() throws IOException
+	{
+		if (finished)
+			throw new IOException("Base64 stream already finished.");
+	}
+}
@@ -1,13 +1,11 @@
 package es.javocsoft.android.lib.toolbox.encoding;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.text.MessageFormat;
 
+import es.javocsoft.android.lib.toolbox.io.FileTransfer;
+
 /**
  * Utilities for File manipulation. More information about this class is
  * available from <a target="_top" href=
@@ -77,65 +75,12 @@ public class FileHelper
 		if (from.renameTo(to))
 			return;
 
-		InputStream in = null;
-		OutputStream out = null;
-		try
-		{
-			in = new FileInputStream(from);
-			out = new FileOutputStream(to);
-			copy(in, out);
-			in.close();
-			in = null;
-			out.flush();
-			out.close();
-			out = null;
-			if (!from.delete())
-			{
-				throw new IOException(MessageFormat.format("deleteoriginalerror %s", (Object[]) new String[]
-				{ from.toString(), to.toString() }));
-			}
-		} finally
+		FileTransfer.copy(from, to, null);
+		if (!from.delete())
 		{
-			if (in != null)
-			{
-				in.close();
-				in = null;
-			}
-			if (out != null)
-			{
-				out.flush();
-				out.close();
-				out = null;
-			}
+			throw new IOException(MessageFormat.format("deleteoriginalerror %s", (Object[]) new String[]
+			{ from.toString(), to.toString() }));
 		}
 	}
 
-	/**
-	 * Buffer size when reading from input stream.
-	 * 
-	 * @since ostermillerutils 1.00.00
-	 */
-	private final static int BUFFER_SIZE = 1024;
-
-	/**
-	 * Copy the data from the input stream to the output stream.
-	 * 
-	 * @param in
-	 *            data source
-	 * @param out
-	 *            data destination
-	 * @throws IOException
-	 *             in an input or output error occurs
-	 * 
-	 * @since ostermillerutils 1.00.00
-	 */
-	private static void copy(InputStream in, OutputStream out) throws IOException
-	{
-		byte[] buffer = new byte[BUFFER_SIZE];
-		int read;
-		while ((read = in.read(buffer)) != -1)
-		{
-			out.write(buffer, 0, read);
-		}
-	}
 }
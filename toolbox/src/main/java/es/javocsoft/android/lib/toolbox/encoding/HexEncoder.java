@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.encoding;
+
+/**
+ * Table based hexadecimal encoding and decoding.
+ * <br><br>
+ * Each byte is converted with a single lookup in a table of the 256
+ * possible pairs of hexadecimal digits, without intermediate strings.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class HexEncoder {
+
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+	/** The two lower case hexadecimal digits of each byte value, packed in a char pair. */
+	private static final char[] PAIRS = new char[256 * 2];
+	static {
+		for (int i = 0; i < 256; i++) {
+			PAIRS[i * 2] = DIGITS[i >>> 4];
+			PAIRS[i * 2 + 1] = DIGITS[i & 0x0f];
+		}
+	}
+
+
+	private HexEncoder() {}
+
+
+	/**
+	 * Encodes the bytes as a lower case hexadecimal string.
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static String encode(byte[] data) {
+		return encode(data, 0, data.length);
+	}
+
+	/**
+	 * Encodes a range of bytes as a lower case hexadecimal string.
+	 *
+	 * @param data
+	 * @param off	Offset of the first byte to encode.
+	 * @param len	Number of bytes to encode.
+	 * @return
+	 */
+	public static String encode(byte[] data, int off, int len) {
+		char[] chars = new char[len * 2];
+		encode(data, off, len, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes a range of bytes into the given array as lower case
+	 * hexadecimal digits.
+	 *
+	 * @param data
+	 * @param off		Offset of the first byte to encode.
+	 * @param len		Number of bytes to encode.
+	 * @param dst		Where to write the digits, it must have room for len * 2 chars.
+	 * @param dstOff	Offset in dst where to start writing.
+	 * @return The number of written chars.
+	 */
+	public static int encode(byte[] data, int off, int len, char[] dst, int dstOff) {
+		int dp = dstOff;
+		for (int i = off, end = off + len; i < end; i++) {
+			int pair = (data[i] & 0xff) << 1;
+			dst[dp++] = PAIRS[pair];
+			dst[dp++] = PAIRS[pair + 1];
+		}
+		return dp - dstOff;
+	}
+
+	/**
+	 * Decodes a hexadecimal string, in upper or lower case.
+	 *
+	 * @param hex
+	 * @return
+	 * @throws IllegalArgumentException if the string has an odd length or
+	 * 		   non hexadecimal characters.
+	 */
+	public static byte[] decode(CharSequence hex) {
+		int length = hex.length();
+		if ((length & 1) != 0)
+			throw new IllegalArgumentException("Odd number of hexadecimal digits (" + length + ").");
+
+		byte[] data = new byte[length / 2];
+		for (int i = 0, j = 0; i < length; i += 2, j++) {
+			data[j] = (byte) (digit(hex.charAt(i)) << 4 | digit(hex.charAt(i + 1)));
+		}
+		return data;
+	}
+
+
+	//AUXILIAR
+
+	private static int digit(char c) {
+		if (c >= '0' && c <= '9')
+			return c - '0';
+		if (c >= 'a' && c <= 'f')
+			return c - 'a' + 10;
+		if (c >= 'A' && c <= 'F')
+			return c - 'A' + 10;
+		throw new IllegalArgumentException("Not an hexadecimal digit '" + c + "'.");
+	}
+}
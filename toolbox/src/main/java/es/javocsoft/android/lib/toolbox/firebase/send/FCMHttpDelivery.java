@@ -33,6 +33,7 @@ import java.util.Map;
 import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResponse;
 import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResultItem;
 import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseMessage;
+import es.javocsoft.android.lib.toolbox.json.GsonProcessor;
 import es.javocsoft.android.lib.toolbox.net.HttpOperations;
 
 
@@ -71,7 +72,10 @@ public class FCMHttpDelivery {
 	private static final String FCM_HTTP_ENDPOINT = "https://fcm.googleapis.com/fcm/send";
 
 	
-	private static final Gson gson = new Gson();
+	/* The library beans are converted with the type adapters of the GSON processor. */
+	private static Gson gson() {
+		return GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP);
+	}
 	
 	
 	
@@ -153,7 +157,7 @@ public class FCMHttpDelivery {
         if(timeToLive>=0)
         	msg.time_to_live = timeToLive;
                 
-        json = gson.toJson(msg);
+        json = gson().toJson(msg);
         
         return json;
 	}
@@ -184,7 +188,7 @@ public class FCMHttpDelivery {
 				//Send the request to FCM servers.
 				String responseRaw = HttpOperations.doPost(FCM_HTTP_ENDPOINT, jsonData, headersData);
 				//Get the response object
-				response = gson.fromJson(responseRaw, FirebaseDeliveryResponse.class);
+				response = gson().fromJson(responseRaw, FirebaseDeliveryResponse.class);
 				break; //Successfully submitted and get response
 				
 			} catch (Exception e) {}
@@ -255,12 +259,12 @@ public class FCMHttpDelivery {
 		data.put("message", "Some message");
 		msg.data = data;
 		
-		System.out.println(gson.toJson(msg));
+		System.out.println(gson().toJson(msg));
 		
 		
 		//Test of FCM JSON response parsing:
 		String responseSimulated = "{ \"multicast_id\": \"216\",\"success\": 3,\"failure\": 3,\"canonical_ids\": 1,\"results\": [{ \"message_id\": \"1:0408\" },{ \"error\": \"Unavailable\" },{ \"error\": \"InvalidRegistration\" },{ \"message_id\": \"1:1516\" },{ \"message_id\": \"1:2342\", \"registration_id\": \"32\" },{ \"error\": \"NotRegistered\"}]}";
-		FirebaseDeliveryResponse responseObj = gson.fromJson(responseSimulated, FirebaseDeliveryResponse.class);
+		FirebaseDeliveryResponse responseObj = gson().fromJson(responseSimulated, FirebaseDeliveryResponse.class);
 		System.out.println(responseObj.success);
 		System.out.println(responseObj.failure);
 		System.out.println(responseObj.canonical_ids);
@@ -33,6 +33,7 @@ import com.google.gson.Gson;
 import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResponse;
 import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResultItem;
 import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMMessage;
+import es.javocsoft.android.lib.toolbox.json.GsonProcessor;
 import es.javocsoft.android.lib.toolbox.net.HttpOperations;
 
 
@@ -70,7 +71,10 @@ public class GCMHttpDelivery {
 	private static final String GCM_HTTP_HEADER_CONTENTTYPE_VALUE = "application/json";
 	private static final String GCM_HTTP_ENDPOINT = "https://android.googleapis.com/gcm/send";
 	
-	private static final Gson gson = new Gson();
+	/* The library beans are converted with the type adapters of the GSON processor. */
+	private static Gson gson() {
+		return GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP);
+	}
 	
 	
 	
@@ -152,7 +156,7 @@ public class GCMHttpDelivery {
         if(timeToLive>=0)
         	msg.time_to_live = timeToLive;
                 
-        json = gson.toJson(msg);
+        json = gson().toJson(msg);
         
         return json;
 	}
@@ -183,7 +187,7 @@ public class GCMHttpDelivery {
 				//Send the request to GCM servers.
 				String responseRaw = HttpOperations.doPost(GCM_HTTP_ENDPOINT, jsonData, headersData);
 				//Get the response object
-				response = gson.fromJson(responseRaw, GCMDeliveryResponse.class);
+				response = gson().fromJson(responseRaw, GCMDeliveryResponse.class);
 				break; //Successfully submitted and get response
 				
 			} catch (Exception e) {}
@@ -254,12 +258,12 @@ public class GCMHttpDelivery {
 		data.put("message", "Some message");
 		msg.data = data;
 		
-		System.out.println(gson.toJson(msg));
+		System.out.println(gson().toJson(msg));
 		
 		
 		//Test of GCM JSON response parsing:
 		String responseSimulated = "{ \"multicast_id\": \"216\",\"success\": 3,\"failure\": 3,\"canonical_ids\": 1,\"results\": [{ \"message_id\": \"1:0408\" },{ \"error\": \"Unavailable\" },{ \"error\": \"InvalidRegistration\" },{ \"message_id\": \"1:1516\" },{ \"message_id\": \"1:2342\", \"registration_id\": \"32\" },{ \"error\": \"NotRegistered\"}]}";
-		GCMDeliveryResponse responseObj = gson.fromJson(responseSimulated, GCMDeliveryResponse.class);
+		GCMDeliveryResponse responseObj = gson().fromJson(responseSimulated, GCMDeliveryResponse.class);
 		System.out.println(responseObj.success);
 		System.out.println(responseObj.failure);
 		System.out.println(responseObj.canonical_ids);
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared pool of reusable transfer buffers, so IO operations do not
+ * allocate a new buffer on every call.
+ * <br><br>
+ * Buffers must be given back with {@link #release(byte[])} or
+ * {@link #release(ByteBuffer)} once used, usually in a finally block:
+ * <pre>
+ * 		byte[] buffer = BufferPool.acquire();
+ * 		try {
+ * 			...
+ * 		} finally {
+ * 			BufferPool.release(buffer);
+ * 		}
+ * </pre>
+ * Only a limited amount of buffers are retained, the rest are
+ * left to the garbage collector.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class BufferPool {
+
+	/** Size of the pooled heap buffers. */
+	public static final int BUFFER_SIZE = 64 * 1024;
+	/** Size of the pooled direct buffers. */
+	public static final int DIRECT_BUFFER_SIZE = FileTransfer.DEFAULT_BUFFER_SIZE;
+
+	private static final int MAX_POOLED_BUFFERS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	private static final ConcurrentLinkedQueue<byte[]> heapBuffers = new ConcurrentLinkedQueue<byte[]>();
+	private static final AtomicInteger heapBuffersCount = new AtomicInteger();
+	private static final ConcurrentLinkedQueue<ByteBuffer> directBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+	private static final AtomicInteger directBuffersCount = new AtomicInteger();
+
+
+	private BufferPool() {}
+
+
+	/**
+	 * Gets a heap buffer of {@link #BUFFER_SIZE} bytes.
+	 *
+	 * @return
+	 */
+	public static byte[] acquire() {
+		byte[] buffer = heapBuffers.poll();
+		if (buffer != null) {
+			heapBuffersCount.decrementAndGet();
+			return buffer;
+		}
+		return new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Returns a heap buffer to the pool. Buffers not obtained
+	 * from {@link #acquire()} are ignored.
+	 *
+	 * @param buffer
+	 */
+	public static void release(byte[] buffer) {
+		if (buffer == null || buffer.length != BUFFER_SIZE)
+			return;
+		if (heapBuffersCount.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+			heapBuffers.offer(buffer);
+		} else {
+			heapBuffersCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets a cleared direct buffer of {@link #DIRECT_BUFFER_SIZE} bytes.
+	 *
+	 * @return
+	 */
+	public static ByteBuffer acquireDirect() {
+		ByteBuffer buffer = directBuffers.poll();
+		if (buffer != null) {
+			directBuffersCount.decrementAndGet();
+			buffer.clear();
+			return buffer;
+		}
+		return ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Returns a direct buffer to the pool. Buffers not obtained
+	 * from {@link #acquireDirect()} are ignored.
+	 *
+	 * @param buffer
+	 */
+	public static void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect() || buffer.capacity() != DIRECT_BUFFER_SIZE)
+			return;
+		if (directBuffersCount.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+			directBuffers.offer(buffer);
+		} else {
+			directBuffersCount.decrementAndGet();
+		}
+	}
+
+}
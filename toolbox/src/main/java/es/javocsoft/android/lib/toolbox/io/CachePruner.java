@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+import es.javocsoft.android.lib.toolbox.ToolBox;
+import es.javocsoft.android.lib.toolbox.task.TaskExecutor;
+
+/**
+ * Keeps one or more cache folders under a size budget.
+ * <br><br>
+ * All the files under the folders are accounted together and, when their
+ * total size exceeds the budget, the least recently modified files are
+ * deleted first until the budget is met. Optionally, files older than a
+ * maximum age are always deleted.
+ * <br><br>
+ * The folders are walked iteratively, one level at a time, and both the
+ * listing of each level and the deletion are spread across several threads.
+ * Folders themselves are never deleted, caches like the http response cache
+ * or {@link es.javocsoft.android.lib.toolbox.net.image.DiskLruCache} expect
+ * them to exist. When pruning to a size budget, cache journal files are also
+ * kept, the caches recover from missing entries but not from a missing journal
+ * while open. Without a budget, like when clearing the whole cache, they are
+ * deleted with the rest.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class CachePruner {
+
+	private static final String TAG = "CachePruner";
+
+	private static final String[] JOURNAL_FILES = { "journal", "journal.tmp", "journal.bkp" };
+
+	private final File[] folders;
+	private long maxBytes = Long.MAX_VALUE;
+	private long maxAge = -1;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private volatile boolean cancelled;
+
+
+	/**
+	 * Creates a pruner for the given folders. Null or
+	 * not existing folders are ignored.
+	 *
+	 * @param folders	The cache folders.
+	 */
+	public CachePruner(File... folders) {
+		this.folders = folders;
+	}
+
+
+	/**
+	 * Sets the max total size of the folders.
+	 *
+	 * @param maxBytes	Size budget in bytes. By default there is no limit. With
+	 * 					a budget, cache journal files are never deleted.
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Sets the max age of the files. Older files are deleted
+	 * even if the folders are under the size budget.
+	 *
+	 * @param maxAge	Max age in milliseconds, 0 means all files. By default
+	 * 					there is no age limit.
+	 */
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Sets the number of threads used to walk the folders and to delete
+	 * files. By default, as many as available cores.
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Stops a running prune. Files already deleted are not restored
+	 * and the pruner can not be used again.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Prunes the folders in the calling thread.
+	 *
+	 * @return The prune result.
+	 */
+	public Result prune() {
+		long start = System.currentTimeMillis();
+		Result result = new Result();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<CacheFile> files = scan(executor);
+			for (CacheFile file : files) {
+				result.bytesScanned += file.length;
+			}
+			result.filesScanned = files.size();
+
+			List<CacheFile> victims = selectVictims(files, result.bytesScanned, start);
+			delete(executor, victims, result);
+
+		} catch (Exception e) {
+			Log.e(TAG, "Error pruning cache (" + e.getMessage() + ")", e);
+		} finally {
+			executor.shutdown();
+		}
+
+		result.cancelled = cancelled;
+		result.elapsedMillis = System.currentTimeMillis() - start;
+		if (ToolBox.LOG_ENABLE)
+			Log.i(TAG, "Cache pruned: " + result);
+
+		return result;
+	}
+
+	/**
+	 * Prunes the folders in background.
+	 *
+	 * @param listener	Optional. Informed with the result once finished, from
+	 * 					the background thread.
+	 */
+	public void pruneInBackground(final OnCachePrunedListener listener) {
+		TaskExecutor.addTask(new TaskExecutor.ExecutorRunnable() {
+			@Override
+			protected void doJobTask() {
+				Result result = prune();
+				if (listener != null)
+					listener.onCachePruned(result);
+			}
+		}, TAG);
+	}
+
+
+	/**
+	 * Informs of a finished prune.
+	 */
+	public interface OnCachePrunedListener {
+
+		/**
+		 * Called once the prune is finished.
+		 *
+		 * @param result
+		 */
+		void onCachePruned(Result result);
+	}
+
+	/**
+	 * The result of a prune.
+	 */
+	public static class Result {
+
+		private int filesScanned;
+		private long bytesScanned;
+		private int filesDeleted;
+		private long bytesFreed;
+		private long elapsedMillis;
+		private boolean cancelled;
+
+		/** Number of files found in the folders. */
+		public int getFilesScanned() {
+			return filesScanned;
+		}
+
+		/** Total size of the folders before pruning. */
+		public long getBytesScanned() {
+			return bytesScanned;
+		}
+
+		/** Number of deleted files. */
+		public int getFilesDeleted() {
+			return filesDeleted;
+		}
+
+		/** Bytes reclaimed by the deleted files. */
+		public long getBytesFreed() {
+			return bytesFreed;
+		}
+
+		/** Time taken, in milliseconds. */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/** Tells if the prune was cancelled before finishing. */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public String toString() {
+			return filesDeleted + " of " + filesScanned + " files deleted, " +
+					bytesFreed + " of " + bytesScanned + " bytes freed in " +
+					elapsedMillis + "ms" + (cancelled ? " (cancelled)" : "");
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static class CacheFile {
+		final File file;
+		final long length;
+		final long modified;
+
+		CacheFile(File file) {
+			this.file = file;
+			this.length = file.length();
+			this.modified = file.lastModified();
+		}
+	}
+
+	/*
+	 * Walks the folders one level at a time. The folders of each level are
+	 * listed in parallel, each worker collecting the files it stats and the
+	 * sub-folders that make the next level.
+	 */
+	private List<CacheFile> scan(ExecutorService executor) throws Exception {
+		final boolean keepJournals = maxBytes != Long.MAX_VALUE;
+		List<CacheFile> files = new ArrayList<CacheFile>();
+		List<File> level = new ArrayList<File>();
+		for (File folder : folders) {
+			if (folder != null && folder.isDirectory())
+				level.add(folder);
+		}
+
+		while (!level.isEmpty() && !cancelled) {
+			final List<File> current = level;
+			final AtomicInteger next = new AtomicInteger();
+			int workers = Math.min(threads, current.size());
+			List<Future<List<File>>> tasks = new ArrayList<Future<List<File>>>();
+			final List<List<CacheFile>> found = new ArrayList<List<CacheFile>>();
+			for (int i = 0; i < workers; i++) {
+				final List<CacheFile> workerFiles = new ArrayList<CacheFile>();
+				found.add(workerFiles);
+				tasks.add(executor.submit(new Callable<List<File>>() {
+					@Override
+					public List<File> call() {
+						List<File> subFolders = new ArrayList<File>();
+						int index;
+						while ((index = next.getAndIncrement()) < current.size() && !cancelled) {
+							File folder = current.get(index);
+							File[] children = folder.listFiles();
+							File canonicalFolder = canonical(folder);
+							if (children == null || canonicalFolder == null)
+								continue;
+							for (File child : children) {
+								//Links are not followed, their targets are not part of the cache.
+								if (IOUtils.isSymlink(canonicalFolder, child))
+									continue;
+								if (child.isDirectory()) {
+									subFolders.add(child);
+								} else if (!keepJournals || !isJournal(child)) {
+									workerFiles.add(new CacheFile(child));
+								}
+							}
+						}
+						return subFolders;
+					}
+				}));
+			}
+
+			level = new ArrayList<File>();
+			for (int i = 0; i < workers; i++) {
+				level.addAll(tasks.get(i).get());
+				files.addAll(found.get(i));
+			}
+		}
+
+		return files;
+	}
+
+	private List<CacheFile> selectVictims(List<CacheFile> files, long totalBytes, long now) {
+		Collections.sort(files, new Comparator<CacheFile>() {
+			@Override
+			public int compare(CacheFile a, CacheFile b) {
+				return a.modified < b.modified ? -1 : (a.modified == b.modified ? 0 : 1);
+			}
+		});
+
+		long oldest = maxAge >= 0 ? now - maxAge : Long.MIN_VALUE;
+		long remaining = totalBytes;
+		int count = 0;
+		for (CacheFile file : files) {
+			if (remaining <= maxBytes && file.modified >= oldest)
+				break;
+			remaining -= file.length;
+			count++;
+		}
+		return files.subList(0, count);
+	}
+
+	private void delete(ExecutorService executor, final List<CacheFile> victims, Result result) throws Exception {
+		if (victims.isEmpty())
+			return;
+
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger deleted = new AtomicInteger();
+		final AtomicLong freed = new AtomicLong();
+		int workers = Math.min(threads, victims.size());
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					int index;
+					while ((index = next.getAndIncrement()) < victims.size() && !cancelled) {
+						CacheFile victim = victims.get(index);
+						if (victim.file.delete()) {
+							deleted.incrementAndGet();
+							freed.addAndGet(victim.length);
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+
+		result.filesDeleted = deleted.get();
+		result.bytesFreed = freed.get();
+	}
+
+	private static boolean isJournal(File file) {
+		String name = file.getName();
+		for (String journal : JOURNAL_FILES) {
+			if (journal.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * The folder resolved once, its children are checked for links against it.
+	 * Null if it can not be resolved, then it is not walked.
+	 */
+	private static File canonical(File folder) {
+		try {
+			return folder.getCanonicalFile();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteArrayOutputStream} that gives access to its internal
+ * buffer, so the written data can be used without the extra copy done
+ * by {@link #toByteArray()}.
+ * <br><br>
+ * Note: The exposed data is only valid until the next write.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+	public ExposedByteArrayOutputStream() {
+		super();
+	}
+
+	public ExposedByteArrayOutputStream(int size) {
+		super(size);
+	}
+
+
+	/**
+	 * Reads all the remaining content of the input stream into this buffer.
+	 * The input stream is not closed.
+	 *
+	 * @param in
+	 * @return	The amount of read bytes.
+	 * @throws IOException
+	 */
+	public synchronized long readFrom(InputStream in) throws IOException {
+		long total = 0;
+		int read;
+		while (true) {
+			//We read directly into the internal buffer, growing it when full.
+			if (count == buf.length)
+				ensureCapacity(buf.length + 1);
+			read = in.read(buf, count, buf.length - count);
+			if (read == -1)
+				break;
+			count += read;
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the internal buffer. Only the first {@link #size()} bytes
+	 * are valid.
+	 *
+	 * @return
+	 */
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	/**
+	 * Returns the written bytes. When the internal buffer is filled
+	 * exactly, it is returned without copying it.
+	 *
+	 * @return
+	 */
+	public synchronized byte[] toByteArrayUnsafe() {
+		if (count == buf.length)
+			return buf;
+		return toByteArray();
+	}
+
+	/**
+	 * Returns a read-only {@link ByteBuffer} view of the written bytes.
+	 *
+	 * @return
+	 */
+	public synchronized ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns an {@link InputStream} over the written bytes, without
+	 * copying them.
+	 *
+	 * @return
+	 */
+	public synchronized ByteArrayInputStream toInputStream() {
+		return new ByteArrayInputStream(buf, 0, count);
+	}
+
+
+	//AUXILIAR
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity <= buf.length)
+			return;
+		int newCapacity = Math.max(buf.length << 1, minCapacity);
+		if (newCapacity < 0) {
+			if (minCapacity < 0)
+				throw new OutOfMemoryError();
+			newCapacity = Integer.MAX_VALUE - 8;
+		}
+		byte[] newBuf = new byte[newCapacity];
+		System.arraycopy(buf, 0, newBuf, 0, count);
+		buf = newBuf;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import es.javocsoft.android.lib.toolbox.crypto.Hasher;
+
+/**
+ * Fast file content comparison.
+ * <br><br>
+ * Files of different length are never read. Otherwise both files are
+ * memory mapped in large windows and compared eight bytes at a time.
+ * <br><br>
+ * For files checked again and again, like the files of a folder being
+ * synchronized, an instance keeps a cache of file digests. A digest is
+ * reused while the file keeps the same length and modification time, so
+ * unchanged files are not read again.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FileComparator {
+
+	/** Size of the compared windows, small enough for 32 bits address spaces. */
+	private static final int WINDOW_SIZE = 32 * 1024 * 1024;
+
+	private final Hasher.Algorithm algorithm;
+	private final Map<String, CachedDigest> cache;
+
+
+	/**
+	 * Creates a comparator with a digest cache.
+	 *
+	 * @param algorithm	The digest algorithm.
+	 * @param maxEntries	Max number of cached digests, least recently used
+	 * 						ones are discarded first.
+	 */
+	public FileComparator(Hasher.Algorithm algorithm, final int maxEntries) {
+		this.algorithm = algorithm;
+		this.cache = new LinkedHashMap<String, CachedDigest>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedDigest> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+
+	/**
+	 * Compares the content of two files, using the cached digests.
+	 * <br><br>
+	 * Files of different length are not read at all. Note that hashing the
+	 * files costs more than comparing them once, the cache pays off when
+	 * the same files are compared several times.
+	 *
+	 * @param file1
+	 * @param file2
+	 * @return TRUE if both files have the same content.
+	 * @throws IOException
+	 */
+	public boolean contentEquals(File file1, File file2) throws IOException {
+		if (file1.length() != file2.length())
+			return false;
+		return MessageDigest.isEqual(getDigest(file1), getDigest(file2));
+	}
+
+	/**
+	 * Tells if the file content has the given digest, for example the
+	 * digest of the file the last time it was uploaded.
+	 *
+	 * @param file
+	 * @param digest	The expected digest, of this comparator algorithm.
+	 * @return TRUE if the file content has that digest.
+	 * @throws IOException
+	 */
+	public boolean contentEquals(File file, byte[] digest) throws IOException {
+		return MessageDigest.isEqual(getDigest(file), digest);
+	}
+
+	/**
+	 * Gets the digest of the file, from the cache if the file did not
+	 * change since the digest was calculated.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] getDigest(File file) throws IOException {
+		String path = file.getAbsolutePath();
+		long length = file.length();
+		long modified = file.lastModified();
+		synchronized (cache) {
+			CachedDigest cached = cache.get(path);
+			if (cached != null && cached.length == length && cached.modified == modified)
+				return cached.digest.clone();
+		}
+
+		byte[] digest = Hasher.hash(file, algorithm);
+		synchronized (cache) {
+			cache.put(path, new CachedDigest(length, modified, digest));
+		}
+		return digest.clone();
+	}
+
+	/**
+	 * Removes all the cached digests.
+	 */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+
+	/**
+	 * Compares the content of two files, without any cache.
+	 *
+	 * @param file1
+	 * @param file2
+	 * @return TRUE if both files have the same content.
+	 * @throws IOException
+	 */
+	public static boolean contentEqualsMapped(File file1, File file2) throws IOException {
+		if (file1.length() != file2.length())
+			return false;
+		if (file1.getCanonicalFile().equals(file2.getCanonicalFile()))
+			return true;
+
+		FileInputStream in1 = new FileInputStream(file1);
+		try {
+			FileInputStream in2 = new FileInputStream(file2);
+			try {
+				FileChannel channel1 = in1.getChannel();
+				FileChannel channel2 = in2.getChannel();
+				long length = channel1.size();
+				if (length != channel2.size())
+					return false;
+
+				for (long position = 0; position < length; position += WINDOW_SIZE) {
+					long size = Math.min(WINDOW_SIZE, length - position);
+					ByteBuffer window1 = channel1.map(FileChannel.MapMode.READ_ONLY, position, size);
+					ByteBuffer window2 = channel2.map(FileChannel.MapMode.READ_ONLY, position, size);
+					if (!windowEquals(window1, window2, (int) size))
+						return false;
+				}
+				return true;
+			} finally {
+				in2.close();
+			}
+		} finally {
+			in1.close();
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static class CachedDigest {
+		final long length;
+		final long modified;
+		final byte[] digest;
+
+		CachedDigest(long length, long modified, byte[] digest) {
+			this.length = length;
+			this.modified = modified;
+			this.digest = digest;
+		}
+	}
+
+	private static boolean windowEquals(ByteBuffer window1, ByteBuffer window2, int size) {
+		//Same byte order in both, so comparing longs is comparing bytes.
+		window1.order(ByteOrder.nativeOrder());
+		window2.order(ByteOrder.nativeOrder());
+		int longs = size & ~7;
+		for (int i = 0; i < longs; i += 8) {
+			if (window1.getLong(i) != window2.getLong(i))
+				return false;
+		}
+		for (int i = longs; i < size; i++) {
+			if (window1.get(i) != window2.get(i))
+				return false;
+		}
+		return true;
+	}
+}
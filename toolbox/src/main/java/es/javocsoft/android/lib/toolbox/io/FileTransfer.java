@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * NIO based file copy and move operations.
+ * <br><br>
+ * File to file copies are done with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * so the kernel moves the data without passing through the Java heap. Stream to file
+ * copies use a large direct buffer instead of the usual small byte arrays.
+ * <br><br>
+ * Example of usage:
+ * <pre>
+ * 		FileTransfer.move(new File(from), new File(to), true, new TransferProgressListener() {
+ * 			public void onProgress(long transferred, long total) {
+ * 				Log.d(TAG, "Moved " + transferred + " of " + total);
+ * 			}
+ * 		});
+ * </pre>
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FileTransfer {
+
+	/** Default buffer size used for stream based copies. */
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	/** Max bytes moved per transferTo call, so progress can be informed. */
+	private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+
+	private FileTransfer() {}
+
+
+	/**
+	 * Copies a file into another. If the destination exists, it is overwritten.
+	 *
+	 * @param from		Source file.
+	 * @param to		Destination file.
+	 * @param listener	Optional progress listener. Can be null.
+	 * @return	The number of copied bytes.
+	 * @throws IOException
+	 */
+	public static long copy(File from, File to, TransferProgressListener listener) throws IOException {
+		FileInputStream in = null;
+		FileOutputStream out = null;
+		try {
+			in = new FileInputStream(from);
+			out = new FileOutputStream(to);
+
+			FileChannel source = in.getChannel();
+			FileChannel destination = out.getChannel();
+			long total = source.size();
+			long position = 0;
+			while (position < total) {
+				long count = source.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, total - position), destination);
+				if (count <= 0) {
+					//Some kernels refuse to transfer between certain file systems,
+					//we continue with a buffered copy from the current position.
+					source.position(position);
+					position += channelCopy(source, destination, position, total, listener);
+					break;
+				}
+				position += count;
+				if (listener != null)
+					listener.onProgress(position, total);
+			}
+
+			return position;
+		} finally {
+			closeQuietly(in);
+			closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Moves a file to another location. An attempt is made to rename
+	 * the file and if that fails (for example, when moving between internal
+	 * and external storage), the file is copied and the source deleted.
+	 *
+	 * @param from		Source file.
+	 * @param to		Destination file.
+	 * @param overwrite	If false, an exception is thrown rather than overwriting
+	 * 					an existing file.
+	 * @param listener	Optional progress listener. Can be null. It is not called
+	 * 					when the file could just be renamed.
+	 * @throws IOException
+	 */
+	public static void move(File from, File to, boolean overwrite, TransferProgressListener listener) throws IOException {
+		if (to.exists()) {
+			if (!overwrite)
+				throw new IOException("Destination file '" + to + "' already exists.");
+			if (!to.delete())
+				throw new IOException("Destination file '" + to + "' could not be deleted.");
+		}
+
+		if (from.renameTo(to))
+			return;
+
+		copy(from, to, listener);
+		if (!from.delete())
+			throw new IOException("Source file '" + from + "' could not be deleted after copying it to '" + to + "'.");
+	}
+
+	/**
+	 * Copies the content of an input stream into a file. If the
+	 * destination exists, it is overwritten.
+	 * <br><br>
+	 * If the input stream is a {@link FileInputStream} its channel is used
+	 * directly, otherwise data is moved through a direct buffer.
+	 *
+	 * @param in			Source stream. It is not closed.
+	 * @param to			Destination file.
+	 * @param totalBytes	The expected amount of bytes, used to inform the progress,
+	 * 						or -1 if unknown.
+	 * @param listener		Optional progress listener. Can be null.
+	 * @return	The number of copied bytes.
+	 * @throws IOException
+	 */
+	public static long copy(InputStream in, File to, long totalBytes, TransferProgressListener listener) throws IOException {
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(to);
+			FileChannel destination = out.getChannel();
+
+			if (in instanceof FileInputStream) {
+				FileChannel source = ((FileInputStream) in).getChannel();
+				long total = source.size() - source.position();
+				long position = 0;
+				while (position < total) {
+					long count = destination.transferFrom(source, position, Math.min(TRANSFER_CHUNK_SIZE, total - position));
+					if (count <= 0)
+						break;
+					position += count;
+					if (listener != null)
+						listener.onProgress(position, total);
+				}
+				//The source position is moved forward by transferFrom, the destination
+				//position is not, the rest is written after the transferred bytes.
+				if (position < total) {
+					destination.position(position);
+					position += channelCopy(source, destination, position, total, listener);
+				}
+
+				return position;
+			}
+
+			return channelCopy(Channels.newChannel(in), destination, 0, totalBytes, listener);
+		} finally {
+			closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Copies the content of an input stream into an output stream using
+	 * a direct buffer. None of the streams are closed.
+	 *
+	 * @param in			Source stream.
+	 * @param out			Destination stream.
+	 * @param totalBytes	The expected amount of bytes, used to inform the progress,
+	 * 						or -1 if unknown.
+	 * @param listener		Optional progress listener. Can be null.
+	 * @return	The number of copied bytes.
+	 * @throws IOException
+	 */
+	public static long copy(InputStream in, OutputStream out, long totalBytes, TransferProgressListener listener) throws IOException {
+		WritableByteChannel destination = (out instanceof FileOutputStream) ?
+				((FileOutputStream) out).getChannel() : Channels.newChannel(out);
+		long res = channelCopy(Channels.newChannel(in), destination, 0, totalBytes, listener);
+		out.flush();
+		return res;
+	}
+
+
+	//AUXILIAR
+
+	/*
+	 * Moves all data from the source channel to the destination through a
+	 * pooled direct buffer. "done" are the bytes already transferred by the caller,
+	 * only used to inform the progress.
+	 */
+	private static long channelCopy(ReadableByteChannel source, WritableByteChannel destination,
+									long done, long total, TransferProgressListener listener) throws IOException {
+		ByteBuffer buffer = BufferPool.acquireDirect();
+		long copied = 0;
+		try {
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					copied += destination.write(buffer);
+				}
+				buffer.clear();
+				if (listener != null)
+					listener.onProgress(done + copied, total);
+			}
+		} finally {
+			BufferPool.release(buffer);
+		}
+		return copied;
+	}
+
+	private static void closeQuietly(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				//Nothing to do.
+			}
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+import es.javocsoft.android.lib.toolbox.ToolBox;
+import es.javocsoft.android.lib.toolbox.task.TaskExecutor;
+
+/**
+ * Recursively deletes a folder, in process and in parallel.
+ * <br><br>
+ * The folder is walked iteratively, one level at a time. The folders of
+ * each level are listed by a bounded pool of workers, which delete the
+ * files they find right away. Once all the files are gone, the emptied
+ * folders are deleted from the deepest level up.
+ * <br><br>
+ * Symbolic links are deleted but never followed, like "rm -rf" does.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FolderDeleter {
+
+	private static final String TAG = "FolderDeleter";
+
+	private final File folder;
+	private boolean keepFolder;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private volatile boolean cancelled;
+
+
+	/**
+	 * Creates a deleter for the folder.
+	 *
+	 * @param folder	The folder to delete.
+	 */
+	public FolderDeleter(File folder) {
+		this.folder = folder;
+	}
+
+
+	/**
+	 * Sets if the folder itself must be kept, deleting only its
+	 * content. By default the folder is also deleted.
+	 *
+	 * @param keepFolder
+	 */
+	public void setKeepFolder(boolean keepFolder) {
+		this.keepFolder = keepFolder;
+	}
+
+	/**
+	 * Sets the max number of threads deleting. By default, as many as
+	 * available cores.
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Stops a running delete. Already deleted files are not restored
+	 * and the deleter can not be used again.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Deletes the folder in the calling thread.
+	 *
+	 * @return The delete result.
+	 */
+	public Result delete() {
+		long start = System.currentTimeMillis();
+		final Result result = new Result();
+
+		if (folder != null && (folder.exists() || IOUtils.isSymlink(folder))) {
+			if (!folder.isDirectory() || IOUtils.isSymlink(folder)) {
+				//Not a real folder, just delete it.
+				long length = folder.isDirectory() ? 0 : folder.length();
+				if (folder.delete()) {
+					result.filesDeleted.incrementAndGet();
+					result.bytesFreed.addAndGet(length);
+				} else {
+					result.failed.incrementAndGet();
+				}
+			} else {
+				ExecutorService executor = Executors.newFixedThreadPool(threads);
+				try {
+					List<List<File>> levels = deleteFiles(executor, result);
+					if (keepFolder)
+						levels.remove(0);
+					for (int i = levels.size() - 1; i >= 0 && !cancelled; i--) {
+						deleteFolders(executor, levels.get(i), result);
+					}
+				} catch (Exception e) {
+					Log.e(TAG, "Error deleting folder '" + folder + "' (" + e.getMessage() + ")", e);
+				} finally {
+					executor.shutdown();
+				}
+			}
+		}
+
+		result.cancelled = cancelled;
+		result.elapsedMillis = System.currentTimeMillis() - start;
+		if (ToolBox.LOG_ENABLE)
+			Log.i(TAG, "Folder '" + folder + "' deleted: " + result);
+
+		return result;
+	}
+
+	/**
+	 * Deletes the folder in background.
+	 *
+	 * @param listener	Optional. Informed with the result once finished, from
+	 * 					the background thread.
+	 */
+	public void deleteInBackground(final OnFolderDeletedListener listener) {
+		TaskExecutor.addTask(new TaskExecutor.ExecutorRunnable() {
+			@Override
+			protected void doJobTask() {
+				Result result = delete();
+				if (listener != null)
+					listener.onFolderDeleted(result);
+			}
+		}, TAG);
+	}
+
+
+	/**
+	 * Informs of a finished delete.
+	 */
+	public interface OnFolderDeletedListener {
+
+		/**
+		 * Called once the delete is finished.
+		 *
+		 * @param result
+		 */
+		void onFolderDeleted(Result result);
+	}
+
+	/**
+	 * The result of a delete.
+	 */
+	public static class Result {
+
+		private final AtomicInteger filesDeleted = new AtomicInteger();
+		private final AtomicInteger foldersDeleted = new AtomicInteger();
+		private final AtomicInteger failed = new AtomicInteger();
+		private final AtomicLong bytesFreed = new AtomicLong();
+		private long elapsedMillis;
+		private boolean cancelled;
+
+		/** Number of deleted files, including symbolic links. */
+		public int getFilesDeleted() {
+			return filesDeleted.get();
+		}
+
+		/** Number of deleted folders. */
+		public int getFoldersDeleted() {
+			return foldersDeleted.get();
+		}
+
+		/** Number of files and folders that could not be deleted. */
+		public int getFailed() {
+			return failed.get();
+		}
+
+		/** Bytes reclaimed by the deleted files. */
+		public long getBytesFreed() {
+			return bytesFreed.get();
+		}
+
+		/** Time taken, in milliseconds. */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/** Tells if the delete was cancelled before finishing. */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		/** Tells if everything was deleted. */
+		public boolean isSuccessful() {
+			return failed.get() == 0 && !cancelled;
+		}
+
+		@Override
+		public String toString() {
+			return filesDeleted + " files and " + foldersDeleted + " folders deleted, " +
+					bytesFreed + " bytes freed, " + failed + " failed in " +
+					elapsedMillis + "ms" + (cancelled ? " (cancelled)" : "");
+		}
+	}
+
+
+	//AUXILIAR
+
+	/*
+	 * Walks the tree level by level deleting the files. Returns the folders
+	 * of each level, the first one being the deleted folder itself.
+	 */
+	private List<List<File>> deleteFiles(ExecutorService executor, final Result result) throws Exception {
+		List<List<File>> levels = new ArrayList<List<File>>();
+		List<File> level = new ArrayList<File>();
+		level.add(folder);
+
+		while (!level.isEmpty() && !cancelled) {
+			levels.add(level);
+			final List<File> current = level;
+			final AtomicInteger next = new AtomicInteger();
+			int workers = Math.min(threads, current.size());
+			List<Future<List<File>>> tasks = new ArrayList<Future<List<File>>>();
+			for (int i = 0; i < workers; i++) {
+				tasks.add(executor.submit(new Callable<List<File>>() {
+					@Override
+					public List<File> call() {
+						List<File> subFolders = new ArrayList<File>();
+						int index;
+						while ((index = next.getAndIncrement()) < current.size() && !cancelled) {
+							File folder = current.get(index);
+							File[] children = folder.listFiles();
+							File canonicalFolder = canonical(folder);
+							if (children == null || canonicalFolder == null)
+								continue;
+							for (File child : children) {
+								if (cancelled)
+									break;
+								boolean directory = child.isDirectory();
+								if (directory && !IOUtils.isSymlink(canonicalFolder, child)) {
+									subFolders.add(child);
+								} else {
+									//A link to a folder frees nothing of the folder.
+									long length = directory ? 0 : child.length();
+									if (child.delete()) {
+										result.filesDeleted.incrementAndGet();
+										result.bytesFreed.addAndGet(length);
+									} else {
+										result.failed.incrementAndGet();
+									}
+								}
+							}
+						}
+						return subFolders;
+					}
+				}));
+			}
+
+			level = new ArrayList<File>();
+			for (Future<List<File>> task : tasks) {
+				level.addAll(task.get());
+			}
+		}
+
+		return levels;
+	}
+
+	private void deleteFolders(ExecutorService executor, final List<File> folders, final Result result) throws Exception {
+		final AtomicInteger next = new AtomicInteger();
+		int workers = Math.min(threads, folders.size());
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					int index;
+					while ((index = next.getAndIncrement()) < folders.size() && !cancelled) {
+						if (folders.get(index).delete()) {
+							result.foldersDeleted.incrementAndGet();
+						} else {
+							result.failed.incrementAndGet();
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> task : tasks) {
+			task.get();
+		}
+	}
+
+	/*
+	 * The folder resolved once, its children are checked for links against it.
+	 * Null if it can not be resolved, then it is not walked.
+	 */
+	private static File canonical(File folder) {
+		try {
+			return folder.getCanonicalFile();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -23,13 +23,17 @@ package es.javocsoft.android.lib.toolbox.io;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.URLConnection;
 import java.util.Arrays;
 
+import android.content.res.AssetFileDescriptor;
+
 /**
  * Some useful IO operations.
  *
@@ -39,6 +43,11 @@ import java.util.Arrays;
 public class IOUtils
 {
 
+	/** Initial buffer size when the length of the content to read is unknown. */
+	private static final int DEFAULT_INITIAL_SIZE = 8 * 1024;
+	/** Some VMs reserve header words in an array. */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
 	public static String convertStreamToString(InputStream is) throws IOException {
 		/*
 		 * To convert the InputStream to String we use the
@@ -67,24 +76,20 @@ public class IOUtils
 	
 	public static ByteArrayInputStream inputStreamToByteArrayInputStream(InputStream is) throws IOException
 	{
-		byte[] buff = new byte[8000];
-
-		int bytesRead = 0;
-
-		ByteArrayOutputStream bao = new ByteArrayOutputStream();
-
-		while ((bytesRead = is.read(buff)) != -1)
-		{
-			bao.write(buff, 0, bytesRead);
-		}
+		ExposedByteArrayOutputStream bao = new ExposedByteArrayOutputStream(DEFAULT_INITIAL_SIZE);
+		bao.readFrom(is);
 
-		byte[] data = bao.toByteArray();
-
-		return new ByteArrayInputStream(data);
+		//The stream is built over the read buffer, no extra copy is done.
+		return bao.toInputStream();
 	}
 
 	/**
-	 * Compare two input stream
+	 * Compare two input stream. Both streams are closed.
+	 * <br><br>
+	 * The streams are read in large blocks, filling each block completely
+	 * before comparing, so streams that return data in pieces of different
+	 * sizes (network streams) are compared right. To compare files, see
+	 * {@link FileComparator}.
 	 * 
 	 * @param input1
 	 *            the first stream
@@ -100,32 +105,26 @@ public class IOUtils
 		boolean error = false;
 		try
 		{
-			byte[] buffer1 = new byte[1024];
-			byte[] buffer2 = new byte[1024];
+			byte[] buffer1 = BufferPool.acquire();
+			byte[] buffer2 = BufferPool.acquire();
 			try
 			{
-				int numRead1 = 0;
-				int numRead2 = 0;
 				while (true)
 				{
-					numRead1 = input1.read(buffer1);
-					numRead2 = input2.read(buffer2);
-					if (numRead1 > -1)
-					{
-						if (numRead2 != numRead1)
-							return false;
-						// Otherwise same number of bytes read
-						if (!Arrays.equals(buffer1, buffer2))
-							return false;
-						// Otherwise same bytes read, so continue ...
-					} else
-					{
-						// Nothing more in stream 1 ...
-						return numRead2 < 0;
-					}
+					int numRead1 = fill(input1, buffer1);
+					int numRead2 = fill(input2, buffer2);
+					if (numRead1 != numRead2)
+						return false;
+					if (!rangeEquals(buffer1, buffer2, numRead1))
+						return false;
+					if (numRead1 < buffer1.length)
+						// Both streams ended at the same point
+						return true;
 				}
 			} finally
 			{
+				BufferPool.release(buffer1);
+				BufferPool.release(buffer2);
 				input1.close();
 			}
 		} catch (IOException e)
@@ -151,6 +150,36 @@ public class IOUtils
 		}
 	}
 
+	/**
+	 * Reads from the stream until the buffer is full or the stream ends.
+	 * 
+	 * @return The number of read bytes, less than the buffer length only
+	 *         at the end of the stream.
+	 */
+	private static int fill(InputStream in, byte[] buffer) throws IOException
+	{
+		int count = 0;
+		int read;
+		while (count < buffer.length && (read = in.read(buffer, count, buffer.length - count)) != -1)
+		{
+			count += read;
+		}
+		return count;
+	}
+
+	/**
+	 * Compares the first bytes of two arrays.
+	 */
+	static boolean rangeEquals(byte[] a, byte[] b, int length)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			if (a[i] != b[i])
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Read and return the entire contents of the supplied {@link InputStream
 	 * stream}. This method always closes the stream when finished reading.
@@ -163,20 +192,35 @@ public class IOUtils
 	 *             if there is an error reading the content
 	 */
 	public static byte[] readBytes(InputStream stream) throws IOException
+	{
+		return readBytes(stream, -1);
+	}
+
+	/**
+	 * Read and return the entire contents of the supplied {@link InputStream
+	 * stream}, pre-sizing the result with the expected length. This method
+	 * always closes the stream when finished reading.
+	 * 
+	 * @param stream
+	 *            the stream to the contents; may be null
+	 * @param length
+	 *            the expected length of the contents or -1 if unknown
+	 * @return the contents, or an empty byte array if the supplied reader is
+	 *         null
+	 * @throws IOException
+	 *             if there is an error reading the content
+	 * @see #readFully(InputStream, long)
+	 */
+	public static byte[] readBytes(InputStream stream, long length) throws IOException
 	{
 		if (stream == null)
 			return new byte[] {};
 
-		byte[] buffer = new byte[1024];
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] res = null;
 		boolean error = false;
 		try
 		{
-			int numRead = 0;
-			while ((numRead = stream.read(buffer)) > -1)
-			{
-				output.write(buffer, 0, numRead);
-			}
+			res = readFully(stream, length);
 		} catch (IOException e)
 		{
 			error = true; // this error should be thrown, even if there is an
@@ -198,8 +242,126 @@ public class IOUtils
 					throw e;
 			}
 		}
-		output.flush();
-		return output.toByteArray();
+		return res;
+	}
+
+	/**
+	 * Read and return the entire contents of the supplied file. The
+	 * result array is allocated once using the file length.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @return the contents
+	 * @throws IOException
+	 *             if there is an error reading the content
+	 */
+	public static byte[] readBytes(File file) throws IOException
+	{
+		return readBytes(new FileInputStream(file), file.length());
+	}
+
+	/**
+	 * Read and return the entire contents of the supplied asset file
+	 * descriptor. The result array is allocated once using the descriptor
+	 * length, when known. The descriptor is closed when finished reading.
+	 * 
+	 * @param afd
+	 *            the asset file descriptor, see
+	 *            {@link android.content.res.AssetManager#openFd(String)}
+	 * @return the contents
+	 * @throws IOException
+	 *             if there is an error reading the content
+	 */
+	public static byte[] readBytes(AssetFileDescriptor afd) throws IOException
+	{
+		long length = afd.getLength();
+		return readBytes(afd.createInputStream(),
+				length == AssetFileDescriptor.UNKNOWN_LENGTH ? -1 : length);
+	}
+
+	/**
+	 * Read and return the entire body of the supplied connection. The result
+	 * array is allocated once when the server informs the "Content-Length".
+	 * 
+	 * @param connection
+	 *            the connection to read from
+	 * @return the contents
+	 * @throws IOException
+	 *             if there is an error reading the content
+	 */
+	public static byte[] readBytes(URLConnection connection) throws IOException
+	{
+		return readBytes(connection.getInputStream(), connection.getContentLength());
+	}
+
+	/**
+	 * Reads all the remaining content of the supplied stream without closing
+	 * it.
+	 * <br><br>
+	 * When the expected length is known, the content is read into a single
+	 * array of that size, so no intermediate buffers nor copies are needed.
+	 * If the stream turns out to be longer or the length is unknown, a
+	 * growable buffer is used instead.
+	 * 
+	 * @param stream
+	 *            the stream to read
+	 * @param length
+	 *            the expected length of the contents or -1 if unknown
+	 * @return the contents
+	 * @throws IOException
+	 *             if there is an error reading the content
+	 */
+	public static byte[] readFully(InputStream stream, long length) throws IOException
+	{
+		if (length < 0 || length > MAX_ARRAY_SIZE)
+			return readToBuffer(stream, -1).toByteArrayUnsafe();
+
+		byte[] data = new byte[(int) length];
+		int offset = 0;
+		int numRead;
+		while (offset < data.length && (numRead = stream.read(data, offset, data.length - offset)) != -1)
+		{
+			offset += numRead;
+		}
+		if (offset < data.length)
+		{
+			// The stream was shorter than expected
+			return Arrays.copyOf(data, offset);
+		}
+
+		int next = stream.read();
+		if (next == -1)
+			return data;
+
+		// The stream is longer than expected, we continue in a growable buffer
+		ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream(
+				(int) Math.min(MAX_ARRAY_SIZE, Math.max((long) data.length * 2, DEFAULT_INITIAL_SIZE)));
+		output.write(data, 0, data.length);
+		output.write(next);
+		output.readFrom(stream);
+		return output.toByteArrayUnsafe();
+	}
+
+	/**
+	 * Reads all the remaining content of the supplied stream into a growable
+	 * buffer, without closing the stream. The returned buffer gives access to
+	 * the read data without any final copy, see
+	 * {@link ExposedByteArrayOutputStream#getBuffer()}.
+	 * 
+	 * @param stream
+	 *            the stream to read
+	 * @param sizeHint
+	 *            the expected length of the contents or -1 if unknown
+	 * @return the buffer with the contents
+	 * @throws IOException
+	 *             if there is an error reading the content
+	 */
+	public static ExposedByteArrayOutputStream readToBuffer(InputStream stream, long sizeHint) throws IOException
+	{
+		int initialSize = (sizeHint < 0 || sizeHint > MAX_ARRAY_SIZE) ? DEFAULT_INITIAL_SIZE : (int) sizeHint;
+		ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream(initialSize);
+		output.readFrom(stream);
+		return output;
 	}
 
 	/**
@@ -264,4 +426,52 @@ public class IOUtils
 		}
 		return sb.toString();
 	}
+
+	/**
+	 * Tells if the file is a symbolic link. Code that walks folders must not
+	 * follow links, or it would act on files outside the walked folder.
+	 * <br><br>
+	 * Only the last name of the path is checked, links in its parent folders
+	 * are resolved.
+	 * 
+	 * @param file
+	 *            the file or folder to check
+	 * @return true if it is a symbolic link, also a broken one
+	 * @see #isSymlink(File, File)
+	 */
+	public static boolean isSymlink(File file)
+	{
+		try
+		{
+			File parent = file.getParentFile();
+			return isSymlink(parent == null ? null : parent.getCanonicalFile(), file);
+		} catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Tells if a file of an already resolved folder is a symbolic link. When
+	 * walking a folder, resolve it once and check each of its files with this,
+	 * only the last name of each file is resolved then.
+	 * 
+	 * @param canonicalFolder
+	 *            the canonical parent folder of the file, see
+	 *            {@link File#getCanonicalFile()}. Null if it has no parent.
+	 * @param file
+	 *            the file or folder to check
+	 * @return true if it is a symbolic link, also a broken one
+	 */
+	public static boolean isSymlink(File canonicalFolder, File file)
+	{
+		try
+		{
+			File canonical = canonicalFolder == null ? file.getAbsoluteFile() : new File(canonicalFolder, file.getName());
+			return !canonical.getCanonicalFile().equals(canonical);
+		} catch (IOException e)
+		{
+			return false;
+		}
+	}
 }
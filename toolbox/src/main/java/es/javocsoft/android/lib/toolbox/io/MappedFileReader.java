@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import android.content.res.AssetFileDescriptor;
+
+/**
+ * Memory mapped, read-only, access to files.
+ * <br><br>
+ * Mapping a file is an O(1) operation, the data is paged in by the
+ * operating system when accessed and it does not consume Java heap, so
+ * it is suited for large data files that are scanned or randomly accessed.
+ * For small files a plain read is usually faster, see
+ * {@link IOUtils#readBytes(File)}.
+ * <br><br>
+ * The mapping stays valid until the returned buffer is garbage collected,
+ * even after the file is closed.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class MappedFileReader {
+
+	private MappedFileReader() {}
+
+
+	/**
+	 * Maps the whole file in memory.
+	 *
+	 * @param file	The file to map. Its size must be lower than 2GB.
+	 * @return A read-only {@link ByteBuffer} view of the file content.
+	 * @throws IOException
+	 */
+	public static ByteBuffer map(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return map(channel, 0, channel.size());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps an asset in memory.
+	 * <br><br>
+	 * Only assets stored without compression in the APK can be opened
+	 * as a file descriptor, see {@link android.content.res.AssetManager#openFd(String)}.
+	 * The descriptor is closed once mapped.
+	 *
+	 * @param afd	The asset file descriptor.
+	 * @return A read-only {@link ByteBuffer} view of the asset content.
+	 * @throws IOException
+	 */
+	public static ByteBuffer map(AssetFileDescriptor afd) throws IOException {
+		FileInputStream in = new FileInputStream(afd.getFileDescriptor());
+		try {
+			FileChannel channel = in.getChannel();
+			long length = afd.getLength();
+			if (length == AssetFileDescriptor.UNKNOWN_LENGTH)
+				length = channel.size() - afd.getStartOffset();
+			return map(channel, afd.getStartOffset(), length);
+		} finally {
+			//The stream shares the descriptor, closing the asset descriptor releases both.
+			afd.close();
+		}
+	}
+
+	/**
+	 * Maps a text file in memory and returns its content as a {@link CharSequence}.
+	 * <br><br>
+	 * For single byte encodings (US-ASCII and ISO-8859-1) the sequence is a
+	 * view over the mapped bytes, so no copy is done at all. As when decoding,
+	 * bytes greater than 0x7F in a US-ASCII file are read as U+FFFD. For any
+	 * other encoding the mapped bytes are decoded at once into a single char
+	 * buffer, line endings are kept as they are in the file.
+	 *
+	 * @param file		The file to map.
+	 * @param encoding	The file encoding, for example "UTF-8".
+	 * @return
+	 * @throws IOException
+	 */
+	public static CharSequence mapAsCharSequence(File file, String encoding) throws IOException {
+		ByteBuffer data = map(file);
+		Charset charset = Charset.forName(encoding);
+		if (isSingleByteCharset(charset))
+			return new ByteBufferCharSequence(data, 0, data.limit(), charset.name().equals("US-ASCII"));
+
+		return charset.decode(data);
+	}
+
+
+	//AUXILIAR
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("File too large to be mapped (" + size + " bytes).");
+		if (size == 0)
+			return ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	private static boolean isSingleByteCharset(Charset charset) {
+		String name = charset.name();
+		return name.equals("US-ASCII") || name.equals("ISO-8859-1");
+	}
+
+
+	/**
+	 * A {@link CharSequence} view over a buffer of single byte characters.
+	 */
+	private static class ByteBufferCharSequence implements CharSequence {
+
+		private static final char REPLACEMENT = '\uFFFD';
+
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int end;
+		/* US-ASCII, bytes greater than 0x7F are replaced. Otherwise ISO-8859-1. */
+		private final boolean ascii;
+
+		ByteBufferCharSequence(ByteBuffer buffer, int start, int end, boolean ascii) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			this.ascii = ascii;
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length())
+				throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length());
+			return toChar(buffer.get(start + index));
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			if (from < 0 || to > length() || from > to)
+				throw new IndexOutOfBoundsException("From: " + from + ", to: " + to + ", length: " + length());
+			return new ByteBufferCharSequence(buffer, start + from, start + to, ascii);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length()];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = toChar(buffer.get(start + i));
+			}
+			return new String(chars);
+		}
+
+		private char toChar(byte b) {
+			if (ascii && b < 0)
+				return REPLACEMENT;
+			return (char) (b & 0xFF);
+		}
+	}
+}
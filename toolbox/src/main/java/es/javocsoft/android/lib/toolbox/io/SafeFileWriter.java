@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import es.javocsoft.android.lib.toolbox.io.exception.BatchCommitException;
+
+/**
+ * Crash safe file writer.
+ * <br><br>
+ * Data is written to a temporal file in the same folder, flushed to disk
+ * (fsync) and then renamed over the destination file. The rename is atomic,
+ * so after a crash the file has either the old or the new content, never a
+ * truncated one.
+ * <br><br>
+ * Writes of the same file are serialized, while writes of unrelated files
+ * run concurrently: each file is guarded by one of a fixed set of locks
+ * (lock striping) chosen by its path.
+ * <br><br>
+ * After the rename, the folder is flushed too, so the new name survives a
+ * power loss. This needs API 21 or higher, before it only the file data is
+ * flushed.
+ * <br><br>
+ * To write many small files, use a {@link Batch}. It defers all the fsyncs
+ * to a single commit, where they are issued concurrently from a few threads
+ * so the storage can serve them together, and flushes each folder only once.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class SafeFileWriter {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int LOCK_STRIPES = 32;
+	/** Max threads issuing the fsyncs of a batch at the same time. */
+	private static final int SYNC_THREADS = 4;
+
+	private static final Object[] locks = new Object[LOCK_STRIPES];
+	static {
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/** android.system.Os calls to flush a folder, null before API 21. */
+	private static Method osOpen;
+	private static Method osFsync;
+	private static Method osClose;
+	private static int O_RDONLY;
+	static {
+		try {
+			Class<?> os = Class.forName("android.system.Os");
+			O_RDONLY = Class.forName("android.system.OsConstants").getField("O_RDONLY").getInt(null);
+			osFsync = os.getMethod("fsync", FileDescriptor.class);
+			osClose = os.getMethod("close", FileDescriptor.class);
+			osOpen = os.getMethod("open", String.class, int.class, int.class);
+		} catch (Exception e) {
+			//Before API 21, folders are not flushed.
+			osOpen = null;
+		}
+	}
+
+
+	private SafeFileWriter() {}
+
+
+	/**
+	 * Writes atomically the data in the file.
+	 *
+	 * @param file	The destination file. It is created if does not exist.
+	 * @param data	The data to write.
+	 * @throws IOException
+	 */
+	public static void write(File file, byte[] data) throws IOException {
+		synchronized (lockFor(file)) {
+			File temp = writeTemp(file, data, true);
+			rename(temp, file);
+		}
+		syncFolder(file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Creates a new group commit batch.
+	 *
+	 * @return
+	 */
+	public static Batch newBatch() {
+		return new Batch();
+	}
+
+
+	/**
+	 * A group of writes committed together.
+	 * <br><br>
+	 * Each {@link #write(File, byte[])} goes to a temporal file without
+	 * waiting for the disk. {@link #commit()} then flushes all of them at
+	 * the same time, renames them over their destination files and flushes
+	 * their folders once. Until committed, destination files are not modified
+	 * at all.
+	 * <br><br>
+	 * Each file is replaced atomically, but the batch as a whole is not: if a
+	 * rename fails, the files renamed before keep their new content and the
+	 * rest of the batch is discarded. See {@link BatchCommitException}.
+	 * <br><br>
+	 * A batch is not thread safe, use one per thread.
+	 */
+	public static class Batch {
+
+		private final List<File[]> pending = new ArrayList<File[]>();
+
+		private Batch() {}
+
+		/**
+		 * Adds a write to the batch.
+		 *
+		 * @param file	The destination file.
+		 * @param data	The data to write.
+		 * @throws IOException
+		 */
+		public void write(File file, byte[] data) throws IOException {
+			try {
+				pending.add(new File[] { writeTemp(file, data, false), file });
+			} catch (IOException e) {
+				rollback();
+				throw e;
+			}
+		}
+
+		/**
+		 * Flushes to disk all the written files and replaces
+		 * the destination files with them, in the order of writing.
+		 *
+		 * @throws BatchCommitException	If a destination file could not be replaced.
+		 * 								The ones before it are already replaced, the
+		 * 								ones after it are not modified.
+		 * @throws IOException	If the data could not be flushed. No destination
+		 * 						file is modified.
+		 */
+		public void commit() throws IOException {
+			try {
+				syncAll();
+			} catch (IOException e) {
+				rollback();
+				throw e;
+			}
+
+			List<File> replaced = new ArrayList<File>(pending.size());
+			Set<File> folders = new LinkedHashSet<File>();
+			try {
+				for (File[] write : pending) {
+					try {
+						synchronized (lockFor(write[1])) {
+							rename(write[0], write[1]);
+						}
+						replaced.add(write[1]);
+						folders.add(write[1].getAbsoluteFile().getParentFile());
+					} catch (IOException e) {
+						//We stop here, the not renamed files are discarded.
+						pending.subList(0, replaced.size()).clear();
+						rollback();
+						throw new BatchCommitException(replaced, write[1], e);
+					}
+				}
+				pending.clear();
+			} finally {
+				for (File folder : folders) {
+					syncFolder(folder);
+				}
+			}
+		}
+
+		/**
+		 * Discards all the not committed writes.
+		 */
+		public void rollback() {
+			for (File[] write : pending) {
+				write[0].delete();
+			}
+			pending.clear();
+		}
+
+		/*
+		 * Flushes all the temporal files. With more than one, the fsyncs are
+		 * issued from several threads so they are in flight at the same time.
+		 */
+		private void syncAll() throws IOException {
+			if (pending.size() <= 1) {
+				for (File[] write : pending) {
+					sync(write[0]);
+				}
+				return;
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(SYNC_THREADS, pending.size()));
+			try {
+				List<Future<?>> tasks = new ArrayList<Future<?>>(pending.size());
+				for (final File[] write : pending) {
+					tasks.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							sync(write[0]);
+							return null;
+						}
+					}));
+				}
+				for (Future<?> task : tasks) {
+					task.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Batch commit interrupted.", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException("Error flushing the batch (" + e.getCause() + ").", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static Object lockFor(File file) {
+		int hash = file.getAbsolutePath().hashCode();
+		//Spread the hash bits, paths usually share a long common prefix.
+		hash ^= (hash >>> 16);
+		return locks[(hash & 0x7fffffff) % LOCK_STRIPES];
+	}
+
+	private static File writeTemp(File file, byte[] data, boolean sync) throws IOException {
+		File folder = file.getAbsoluteFile().getParentFile();
+		//Hidden and with a unique name, so concurrent batches never share it.
+		File temp = File.createTempFile("." + file.getName() + ".", TEMP_SUFFIX, folder);
+		FileOutputStream out = null;
+		boolean ok = false;
+		try {
+			out = new FileOutputStream(temp);
+			out.write(data);
+			if (sync)
+				out.getFD().sync();
+			ok = true;
+		} finally {
+			if (out != null)
+				out.close();
+			if (!ok)
+				temp.delete();
+		}
+		return temp;
+	}
+
+	private static void sync(File file) throws IOException {
+		//fsync applies to the file, not to the descriptor used to write it.
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.getFD().sync();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/*
+	 * Flushes the folder entries, so a rename in it is durable. Java can not
+	 * open a folder before java.nio.file, android.system.Os (API 21) can.
+	 * Best effort: some file systems, like vfat on external storage, do not
+	 * support it, and the file data is already on disk anyway.
+	 */
+	private static void syncFolder(File folder) {
+		if (osOpen == null || folder == null)
+			return;
+		try {
+			Object fd = osOpen.invoke(null, folder.getPath(), O_RDONLY, 0);
+			try {
+				osFsync.invoke(null, fd);
+			} finally {
+				osClose.invoke(null, fd);
+			}
+		} catch (IllegalAccessException e) {
+			//Nothing to do.
+		} catch (InvocationTargetException e) {
+			//Not supported by the file system.
+		}
+	}
+
+	private static void rename(File temp, File file) throws IOException {
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Could not replace file '" + file + "'.");
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+/**
+ * Listener to get informed about the progress of a data transfer.
+ * <br><br>
+ * Note: The listener is called from the thread doing the transfer,
+ * so do not perform long operations or touch the UI directly from it.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public interface TransferProgressListener {
+
+	/**
+	 * Called every time a block of data has been transferred.
+	 *
+	 * @param transferred	Total bytes transferred so far.
+	 * @param total			Total bytes to transfer or -1 if unknown.
+	 */
+	void onProgress(long transferred, long total);
+
+}
@@ -23,10 +23,20 @@ package es.javocsoft.android.lib.toolbox.io;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import android.util.Log;
@@ -34,6 +44,9 @@ import android.util.Log;
 
 /**
  * Class to unzip zipped files.
+ * 
+ * Entries whose name would place them outside of the extraction folder,
+ * like "../file" (zip slip), are never written.
  *
  * Example of usage:
  * 
@@ -42,6 +55,9 @@ import android.util.Log;
  *		 
  *		Unzipper d = new Unzipper(zipFile, unzipLocation, true);
  *		d.unzip();
+ *
+ * 		//Or, for big files, extracting entries in parallel
+ *		d.unzipParallel(null);
  * 
  * @author JavocSoft 2013
  * @version 1.0
@@ -52,10 +68,22 @@ public class Unzipper {
 	private String location;
 	private boolean createFolders;
 	private int bufferSize;
+	/* The canonical extraction folder, resolved the first time it is needed. */
+	private volatile File canonicalLocation;
 	
-	private static final int DEFAULT_BUFFER_SIZE = 1024;
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
 	
+	/**
+	 * Creates an unzipper only to read entries with {@link #openEntry(String)},
+	 * without extracting them to disk.
+	 * 
+	 * @param zipFile
+	 */
+	public Unzipper(String zipFile) {
+		this(zipFile, "", false, DEFAULT_BUFFER_SIZE);
+	}
+	
 	public Unzipper(String zipFile, String location, boolean createFolders) {
 		this(zipFile, location, createFolders, DEFAULT_BUFFER_SIZE);
 	}
@@ -83,14 +111,14 @@ public class Unzipper {
 			FileInputStream fin = new FileInputStream(zipFile);
 			ZipInputStream zin = new ZipInputStream(fin);
 			ZipEntry ze = null;
+			byte[] buffer = new byte[bufferSize];
 			while ((ze = zin.getNextEntry()) != null) {
 				Log.v("Unzipper", "Unzipping " + ze.getName());
 
 				if (ze.isDirectory()) {
 					dirChecker(ze.getName());
 				} else {
-					byte[] buffer = new byte[bufferSize];
-					FileOutputStream fout = new FileOutputStream(location + ze.getName());
+					FileOutputStream fout = new FileOutputStream(target(ze.getName()));
 					
 					int bytesRead = 0;
 			        while ((bytesRead = zin.read(buffer, 0, buffer.length)) >= 0) {
@@ -113,10 +141,340 @@ public class Unzipper {
 	}
 	
 	
+	/**
+	 * Unzips only the entries of the ZIP file accepted by the filter.
+	 * <br><br>
+	 * Entries are located through the ZIP central directory, so not
+	 * accepted entries are neither read nor inflated.
+	 * 
+	 * @param filter	The filter to select the entries to extract. If null, all
+	 * 					entries are extracted as in {@link #unzip()}.
+	 * @return The list of unzziped files.
+	 */
+	public List<String> unzip(EntryFilter filter) {
+		if (filter == null)
+			return unzip();
+		
+		ArrayList<String> res = new ArrayList<String>();
+		
+		try {
+			ZipFile zf = new ZipFile(zipFile);
+			try {
+				byte[] buffer = new byte[bufferSize];
+				Enumeration<? extends ZipEntry> e = zf.entries();
+				while (e.hasMoreElements()) {
+					ZipEntry ze = e.nextElement();
+					if (!filter.accept(ze))
+						continue;
+					
+					Log.v("Unzipper", "Unzipping " + ze.getName());
+					if (ze.isDirectory()) {
+						dirChecker(ze.getName());
+					} else {
+						extractEntry(zf, ze, buffer);
+						res.add(location + ze.getName());
+					}
+				}
+			} finally {
+				zf.close();
+			}
+		} catch (Exception e) {
+			Log.e("Unzipper", "Unzip Error (" + e.getMessage() + ")", e);
+		}
+		
+		return res;
+	}
+	
+	/**
+	 * Opens a single entry of the ZIP file as a stream, without writing
+	 * it to disk. The ZIP file is closed when the returned stream is closed.
+	 * 
+	 * @param entryName	The full name of the entry in the ZIP file.
+	 * @return	The stream with the uncompressed entry content.
+	 * @throws FileNotFoundException	If the entry does not exist.
+	 * @throws IOException
+	 */
+	public InputStream openEntry(String entryName) throws IOException {
+		final ZipFile zf = new ZipFile(zipFile);
+		ZipEntry ze = zf.getEntry(entryName);
+		if (ze == null || ze.isDirectory()) {
+			zf.close();
+			throw new FileNotFoundException("Entry '" + entryName + "' not found in " + zipFile);
+		}
+		
+		return new FilterInputStream(zf.getInputStream(ze)) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					zf.close();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Opens the first entry of the ZIP file accepted by the filter as a stream,
+	 * without writing it to disk. The ZIP file is closed when the returned stream
+	 * is closed.
+	 * 
+	 * @param filter	The filter to select the entry.
+	 * @return	The stream with the uncompressed entry content or null if no
+	 * 			entry is accepted by the filter.
+	 * @throws IOException
+	 */
+	public InputStream openEntry(EntryFilter filter) throws IOException {
+		String entryName = null;
+		ZipFile zf = new ZipFile(zipFile);
+		try {
+			Enumeration<? extends ZipEntry> e = zf.entries();
+			while (e.hasMoreElements()) {
+				ZipEntry ze = e.nextElement();
+				if (!ze.isDirectory() && filter.accept(ze)) {
+					entryName = ze.getName();
+					break;
+				}
+			}
+		} finally {
+			zf.close();
+		}
+		
+		return entryName != null ? openEntry(entryName) : null;
+	}
+	
+	/**
+	 * Gets a filter that accepts the entries with any of the specified file
+	 * names, regardless of the folder where they are in the ZIP file.
+	 * 
+	 * @param fileNames
+	 * @return
+	 */
+	public static EntryFilter filterByFileName(final String... fileNames) {
+		return new EntryFilter() {
+			@Override
+			public boolean accept(ZipEntry entry) {
+				String name = entry.getName();
+				String fileName = name.substring(name.lastIndexOf('/') + 1);
+				for (String n : fileNames) {
+					if (n.equals(fileName))
+						return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Unzips the ZIP file extracting the entries in parallel, using
+	 * as many threads as available cores.
+	 * 
+	 * @param listener	Optional listener to get informed each time an
+	 * 					entry is extracted. Can be null.
+	 * @return The list of unzziped files, in the same order as in the ZIP file.
+	 * @see #unzipParallel(int, OnEntryUnzippedListener)
+	 */
+	public List<String> unzipParallel(OnEntryUnzippedListener listener) {
+		return unzipParallel(Runtime.getRuntime().availableProcessors(), listener);
+	}
+	
+	/**
+	 * Unzips the ZIP file extracting the entries in parallel.
+	 * <br><br>
+	 * Unlike {@link #unzip()}, which walks the archive sequentially, entries are
+	 * accessed randomly through the ZIP central directory. Each worker thread opens
+	 * its own {@link ZipFile}, so reading and inflating of different entries is done
+	 * concurrently, and reuses one buffer of the configured size for all the entries
+	 * it extracts.
+	 * 
+	 * @param threads	Max number of threads to use.
+	 * @param listener	Optional listener to get informed each time an
+	 * 					entry is extracted. Can be null.
+	 * @return The list of unzziped files, in the same order as in the ZIP file.
+	 */
+	public List<String> unzipParallel(int threads, OnEntryUnzippedListener listener) {
+		return unzipParallel(threads, null, listener);
+	}
+	
+	/**
+	 * Unzips in parallel only the entries of the ZIP file accepted by the filter.
+	 * 
+	 * @param threads	Max number of threads to use.
+	 * @param filter	The filter to select the entries to extract. If null, all
+	 * 					entries are extracted.
+	 * @param listener	Optional listener to get informed each time an
+	 * 					entry is extracted. Can be null.
+	 * @return The list of unzziped files, in the same order as in the ZIP file.
+	 * @see #unzipParallel(int, OnEntryUnzippedListener)
+	 */
+	public List<String> unzipParallel(int threads, EntryFilter filter, final OnEntryUnzippedListener listener) {
+		ArrayList<String> res = new ArrayList<String>();
+		
+		final List<String> entries = new ArrayList<String>();
+		try {
+			ZipFile zf = new ZipFile(zipFile);
+			try {
+				Enumeration<? extends ZipEntry> e = zf.entries();
+				while (e.hasMoreElements()) {
+					ZipEntry ze = e.nextElement();
+					if (filter != null && !filter.accept(ze))
+						continue;
+					
+					if (ze.isDirectory()) {
+						//Folders are created before extracting any file.
+						dirChecker(ze.getName());
+					} else {
+						entries.add(ze.getName());
+					}
+				}
+			} finally {
+				zf.close();
+			}
+		} catch (Exception e) {
+			Log.e("Unzipper", "Unzip Error (" + e.getMessage() + ")", e);
+			return res;
+		}
+		
+		final int total = entries.size();
+		final String[] unzipped = new String[total];
+		final AtomicInteger nextEntry = new AtomicInteger();
+		final AtomicInteger done = new AtomicInteger();
+		
+		int workers = Math.max(1, Math.min(threads, total));
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					ZipFile zf = null;
+					byte[] buffer = new byte[bufferSize];
+					try {
+						zf = new ZipFile(zipFile);
+						int index;
+						while ((index = nextEntry.getAndIncrement()) < total) {
+							String name = entries.get(index);
+							Log.v("Unzipper", "Unzipping " + name);
+							try {
+								extractEntry(zf, zf.getEntry(name), buffer);
+								unzipped[index] = location + name;
+								if (listener != null)
+									listener.onEntryUnzipped(location + name, done.incrementAndGet(), total);
+							} catch (Exception e) {
+								Log.e("Unzipper", "Unzip Error in entry " + name + " (" + e.getMessage() + ")", e);
+							}
+						}
+					} catch (Exception e) {
+						Log.e("Unzipper", "Unzip Error (" + e.getMessage() + ")", e);
+					} finally {
+						if (zf != null) {
+							try {
+								zf.close();
+							} catch (IOException e) {}
+						}
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+		
+		for (Future<?> task : tasks) {
+			try {
+				task.get();
+			} catch (Exception e) {
+				Log.e("Unzipper", "Unzip Error (" + e.getMessage() + ")", e);
+			}
+		}
+		
+		for (String file : unzipped) {
+			if (file != null)
+				res.add(file);
+		}
+		
+		return res;
+	}
+	
+	
+	/**
+	 * Filter to select the entries of the ZIP file to extract.
+	 */
+	public interface EntryFilter {
+		
+		/**
+		 * Tells if the entry must be extracted.
+		 * 
+		 * @param entry
+		 * @return
+		 */
+		boolean accept(ZipEntry entry);
+	}
+	
+	/**
+	 * Listener to get informed about the progress of a ZIP extraction.
+	 * <br><br>
+	 * Note: When extracting in parallel it is called from the worker threads.
+	 */
+	public interface OnEntryUnzippedListener {
+		
+		/**
+		 * Called each time an entry of the ZIP file is extracted.
+		 * 
+		 * @param file		The extracted file path.
+		 * @param unzipped	The number of extracted entries so far.
+		 * @param total		The number of entries to extract.
+		 */
+		void onEntryUnzipped(String file, int unzipped, int total);
+	}
+	
+	
 	//AUXILIAR
 	
+	private void extractEntry(ZipFile zf, ZipEntry ze, byte[] buffer) throws IOException {
+		File out = target(ze.getName());
+		if (createFolders && out.getParentFile() != null && !out.getParentFile().isDirectory())
+			out.getParentFile().mkdirs();
+		
+		InputStream in = zf.getInputStream(ze);
+		FileOutputStream fout = null;
+		try {
+			fout = new FileOutputStream(out);
+			int bytesRead = 0;
+			while ((bytesRead = in.read(buffer, 0, buffer.length)) >= 0) {
+				fout.write(buffer, 0, bytesRead);
+			}
+		} finally {
+			in.close();
+			if (fout != null)
+				fout.close();
+		}
+	}
+	
+	/*
+	 * The file of an entry in the extraction folder. Refuses the entries that
+	 * would be outside of it once "..", absolute names and links are resolved.
+	 */
+	private File target(String entryName) throws IOException {
+		File root = canonicalLocation;
+		if (root == null) {
+			root = new File(location).getCanonicalFile();
+			canonicalLocation = root;
+		}
+		
+		File file = new File(location + entryName).getCanonicalFile();
+		String folder = root.getPath().endsWith(File.separator) ? root.getPath() : root.getPath() + File.separator;
+		if (!file.equals(root) && !file.getPath().startsWith(folder))
+			throw new IOException("Entry '" + entryName + "' is outside of the extraction folder " + root);
+		return file;
+	}
+	
 	private void dirChecker(String dir) {
-		File f = new File(location + dir);
+		File f;
+		try {
+			f = target(dir);
+		} catch (IOException e) {
+			Log.e("Unzipper", "Unzip Error (" + e.getMessage() + ")", e);
+			return;
+		}
 
 		if (!f.isDirectory()) {
 			if(createFolders)
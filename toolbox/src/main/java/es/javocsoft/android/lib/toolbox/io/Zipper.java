@@ -0,0 +1,663 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import android.util.Log;
+
+
+/**
+ * Class to create ZIP files from files and folders. It is the counterpart
+ * of {@link Unzipper}.
+ *
+ * Example of usage:
+ *
+ * 		Zipper z = new Zipper(Environment.getExternalStorageDirectory() + "/logs.zip");
+ * 		z.addFolder(new File(context.getFilesDir(), "logs"), null);
+ * 		z.addFile(new File(context.getFilesDir(), "photo.jpg"), "photo.jpg");
+ * 		z.setStoredExtensions("jpg", "png", "mp4");
+ * 		z.zipParallel(null);
+ *
+ * Note: ZIP64 is not supported, so the resulting ZIP file and each of
+ * its entries must be smaller than 4GB, with at most 65535 entries.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class Zipper {
+
+	private String zipFile;
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	private boolean storeOnly = false;
+	private Set<String> storedExtensions = new HashSet<String>();
+	private List<ZipSource> sources = new ArrayList<ZipSource>();
+	private int bufferSize;
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	/** Compressed entries up to this size are kept in memory, bigger ones go to a temporal file. */
+	private static final int IN_MEMORY_LIMIT = 1024 * 1024;
+	/** ZIP format limits without ZIP64 extensions. */
+	private static final long MAX_ZIP_SIZE = 0xFFFFFFFFL;
+	private static final int MAX_ZIP_ENTRIES = 0xFFFF;
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIR_SIGNATURE = 0x06054b50;
+	private static final int ZIP_VERSION = 20;
+	/** General purpose flag, entry names are UTF-8 encoded. */
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int DIRECTORY_ATTRIBUTE = 0x10;
+
+
+	public Zipper(String zipFile) {
+		this(zipFile, DEFAULT_BUFFER_SIZE);
+	}
+
+	public Zipper(String zipFile, int bufferSize) {
+		this.zipFile = zipFile;
+		this.bufferSize = bufferSize;
+	}
+
+
+	/**
+	 * Sets the compression level. See {@link Deflater#BEST_SPEED},
+	 * {@link Deflater#BEST_COMPRESSION} and {@link Deflater#DEFAULT_COMPRESSION}.
+	 *
+	 * @param compressionLevel	A value from 0 to 9 or -1 for the default level.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Set to TRUE to store all the entries without compression.
+	 *
+	 * @param storeOnly
+	 */
+	public void setStoreOnly(boolean storeOnly) {
+		this.storeOnly = storeOnly;
+	}
+
+	/**
+	 * Sets the extensions of the files to store without compression, usually
+	 * already compressed media (jpg, png, mp3, mp4, zip...). Trying to compress
+	 * them again just wastes time.
+	 *
+	 * @param extensions	Extensions without the dot. They are case insensitive.
+	 */
+	public void setStoredExtensions(String... extensions) {
+		storedExtensions.clear();
+		for (String ext : extensions) {
+			storedExtensions.add(ext.toLowerCase(Locale.US));
+		}
+	}
+
+	/**
+	 * Adds a file to the ZIP file.
+	 *
+	 * @param file		The file to add.
+	 * @param entryName	The name of the entry in the ZIP file. If null,
+	 * 					the file name is used.
+	 */
+	public void addFile(File file, String entryName) {
+		sources.add(new ZipSource(file, entryName != null ? entryName : file.getName()));
+	}
+
+	/**
+	 * Adds a folder, and all its content, to the ZIP file.
+	 *
+	 * @param folder	The folder to add.
+	 * @param basePath	The path of the folder in the ZIP file. If null,
+	 * 					the folder name is used. Use an empty string to add
+	 * 					the folder content to the root of the ZIP file.
+	 */
+	public void addFolder(File folder, String basePath) {
+		if (basePath == null)
+			basePath = folder.getName();
+		if (basePath.length() > 0 && !basePath.endsWith("/"))
+			basePath = basePath + "/";
+
+		//Iterative walk, deep folder trees do not risk a stack overflow.
+		Deque<ZipSource> pending = new ArrayDeque<ZipSource>();
+		pending.push(new ZipSource(folder, basePath));
+		while (!pending.isEmpty()) {
+			ZipSource dir = pending.pop();
+			if (dir.entryName.length() > 0)
+				sources.add(dir);
+
+			File[] children = dir.file.listFiles();
+			if (children == null)
+				continue;
+			for (File child : children) {
+				if (child.isDirectory()) {
+					pending.push(new ZipSource(child, dir.entryName + child.getName() + "/"));
+				} else {
+					sources.add(new ZipSource(child, dir.entryName + child.getName()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the ZIP file with all the added files and folders,
+	 * compressing one entry after the other.
+	 *
+	 * @return The list of zipped entry names.
+	 * @throws IOException
+	 */
+	public List<String> zip() throws IOException {
+		ArrayList<String> res = new ArrayList<String>();
+
+		ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile), bufferSize));
+		try {
+			zout.setLevel(compressionLevel);
+			byte[] buffer = new byte[bufferSize];
+			for (ZipSource source : sources) {
+				Log.v("Zipper", "Zipping " + source.entryName);
+
+				ZipEntry ze = new ZipEntry(source.entryName);
+				ze.setTime(source.file.lastModified());
+				if (source.isDirectory()) {
+					ze.setMethod(ZipEntry.STORED);
+					ze.setSize(0);
+					ze.setCrc(0);
+					zout.putNextEntry(ze);
+				} else {
+					if (isStored(source)) {
+						ze.setMethod(ZipEntry.STORED);
+						ze.setSize(source.file.length());
+						ze.setCrc(crc(source.file, buffer));
+					}
+					zout.putNextEntry(ze);
+					InputStream in = new FileInputStream(source.file);
+					try {
+						int bytesRead;
+						while ((bytesRead = in.read(buffer)) != -1) {
+							zout.write(buffer, 0, bytesRead);
+						}
+					} finally {
+						in.close();
+					}
+				}
+				zout.closeEntry();
+				res.add(source.entryName);
+			}
+		} finally {
+			zout.close();
+		}
+
+		return res;
+	}
+
+	/**
+	 * Creates the ZIP file compressing the entries in parallel, using
+	 * as many threads as available cores.
+	 *
+	 * @param listener	Optional listener to get informed each time an entry
+	 * 					is added to the ZIP file. Can be null.
+	 * @return The list of zipped entry names.
+	 * @throws IOException
+	 * @see #zipParallel(int, OnEntryZippedListener)
+	 */
+	public List<String> zipParallel(OnEntryZippedListener listener) throws IOException {
+		return zipParallel(Runtime.getRuntime().availableProcessors(), listener);
+	}
+
+	/**
+	 * Creates the ZIP file compressing the entries in parallel.
+	 * <br><br>
+	 * Entries are deflated concurrently, each worker reusing its {@link Deflater},
+	 * while the calling thread writes them to the ZIP file in the order they were
+	 * added, followed by the central directory. Only a few entries ahead of the
+	 * writer are compressed at a time, so memory usage is bounded.
+	 *
+	 * @param threads	Max number of threads to use.
+	 * @param listener	Optional listener to get informed each time an entry
+	 * 					is added to the ZIP file. Can be null.
+	 * @return The list of zipped entry names.
+	 * @throws IOException
+	 */
+	public List<String> zipParallel(int threads, OnEntryZippedListener listener) throws IOException {
+		ArrayList<String> res = new ArrayList<String>();
+		if (sources.size() > MAX_ZIP_ENTRIES)
+			throw new IOException("Too many entries (" + sources.size() + "), ZIP64 is not supported.");
+
+		final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		int window = Math.max(1, threads) * 2;
+		List<Future<CompressedEntry>> tasks = new ArrayList<Future<CompressedEntry>>(sources.size());
+
+		CountingOutputStream out = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(zipFile), bufferSize));
+		List<CompressedEntry> written = new ArrayList<CompressedEntry>(sources.size());
+		try {
+			int submitted = 0;
+			byte[] buffer = new byte[bufferSize];
+			for (int i = 0; i < sources.size(); i++) {
+				while (submitted < sources.size() && submitted < i + window) {
+					tasks.add(executor.submit(new CompressTask(sources.get(submitted), deflaters)));
+					submitted++;
+				}
+
+				CompressedEntry entry = getResult(tasks.get(i));
+				tasks.set(i, null);
+				try {
+					Log.v("Zipper", "Zipping " + entry.source.entryName);
+					entry.offset = out.getCount();
+					writeLocalHeader(out, entry);
+					writeData(out, entry, buffer);
+				} finally {
+					entry.release();
+				}
+				if (out.getCount() > MAX_ZIP_SIZE)
+					throw new IOException("ZIP file exceeds 4GB, ZIP64 is not supported.");
+
+				written.add(entry);
+				res.add(entry.source.entryName);
+				if (listener != null)
+					listener.onEntryZipped(entry.source.entryName, res.size(), sources.size());
+			}
+
+			writeCentralDirectory(out, written);
+		} finally {
+			executor.shutdownNow();
+			for (Future<CompressedEntry> task : tasks) {
+				if (task != null)
+					releaseQuietly(task);
+			}
+			Deflater deflater;
+			while ((deflater = deflaters.poll()) != null) {
+				deflater.end();
+			}
+			out.close();
+		}
+
+		return res;
+	}
+
+
+	/**
+	 * Listener to get informed about the progress of a ZIP creation.
+	 */
+	public interface OnEntryZippedListener {
+
+		/**
+		 * Called each time an entry is written to the ZIP file.
+		 *
+		 * @param entryName	The entry name.
+		 * @param zipped	The number of zipped entries so far.
+		 * @param total		The number of entries to zip.
+		 */
+		void onEntryZipped(String entryName, int zipped, int total);
+	}
+
+
+	//AUXILIAR
+
+	private boolean isStored(ZipSource source) {
+		if (storeOnly || compressionLevel == Deflater.NO_COMPRESSION)
+			return true;
+		String name = source.file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 && storedExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.US));
+	}
+
+	private static long crc(File file, byte[] buffer) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			int bytesRead;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, bytesRead);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	private static CompressedEntry getResult(Future<CompressedEntry> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while zipping.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Error zipping (" + e.getCause() + ").", e.getCause());
+		}
+	}
+
+	private static void releaseQuietly(Future<CompressedEntry> task) {
+		try {
+			if (task.isDone() && !task.isCancelled())
+				task.get().release();
+			else
+				task.cancel(true);
+		} catch (Exception e) {
+			//Nothing to do.
+		}
+	}
+
+	private void writeLocalHeader(OutputStream out, CompressedEntry entry) throws IOException {
+		byte[] name = encodeName(entry.source.entryName);
+		ByteBuffer header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER_SIGNATURE);
+		header.putShort((short) ZIP_VERSION);
+		header.putShort((short) FLAG_UTF8);
+		header.putShort((short) entry.method);
+		header.putInt(entry.dosTime);
+		header.putInt((int) entry.crc);
+		header.putInt((int) entry.compressedSize);
+		header.putInt((int) entry.size);
+		header.putShort((short) name.length);
+		header.putShort((short) 0);
+		header.put(name);
+		out.write(header.array());
+	}
+
+	private void writeData(OutputStream out, CompressedEntry entry, byte[] buffer) throws IOException {
+		if (entry.data != null) {
+			out.write(entry.data.getBuffer(), 0, entry.data.size());
+		} else if (entry.tempFile != null || entry.size > 0) {
+			//Deflated data in a temporal file or stored entries, copied as they are.
+			InputStream in = new FileInputStream(entry.tempFile != null ? entry.tempFile : entry.source.file);
+			try {
+				long pending = entry.compressedSize;
+				int bytesRead;
+				while (pending > 0 && (bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, pending))) != -1) {
+					out.write(buffer, 0, bytesRead);
+					pending -= bytesRead;
+				}
+				if (pending > 0)
+					throw new IOException("File '" + entry.source.file + "' changed while zipping.");
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	private void writeCentralDirectory(CountingOutputStream out, List<CompressedEntry> entries) throws IOException {
+		long start = out.getCount();
+		for (CompressedEntry entry : entries) {
+			byte[] name = encodeName(entry.source.entryName);
+			ByteBuffer header = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(CENTRAL_HEADER_SIGNATURE);
+			header.putShort((short) ZIP_VERSION);	//Version made by
+			header.putShort((short) ZIP_VERSION);	//Version needed to extract
+			header.putShort((short) FLAG_UTF8);
+			header.putShort((short) entry.method);
+			header.putInt(entry.dosTime);
+			header.putInt((int) entry.crc);
+			header.putInt((int) entry.compressedSize);
+			header.putInt((int) entry.size);
+			header.putShort((short) name.length);
+			header.putShort((short) 0);				//Extra field length
+			header.putShort((short) 0);				//Comment length
+			header.putShort((short) 0);				//Disk number
+			header.putShort((short) 0);				//Internal attributes
+			header.putInt(entry.source.isDirectory() ? DIRECTORY_ATTRIBUTE : 0);
+			header.putInt((int) entry.offset);
+			header.put(name);
+			out.write(header.array());
+		}
+		long size = out.getCount() - start;
+		if (out.getCount() > MAX_ZIP_SIZE)
+			throw new IOException("ZIP file exceeds 4GB, ZIP64 is not supported.");
+
+		ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(END_OF_CENTRAL_DIR_SIGNATURE);
+		end.putShort((short) 0);
+		end.putShort((short) 0);
+		end.putShort((short) entries.size());
+		end.putShort((short) entries.size());
+		end.putInt((int) size);
+		end.putInt((int) start);
+		end.putShort((short) 0);
+		out.write(end.array());
+	}
+
+	private static byte[] encodeName(String name) {
+		try {
+			return name.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * Converts a Java time to the MS-DOS date and time format used in ZIP files.
+	 */
+	private static int toDosTime(long time) {
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(time);
+		int year = c.get(Calendar.YEAR);
+		if (year < 1980)
+			return (1 << 21) | (1 << 16);
+		return (year - 1980) << 25
+				| (c.get(Calendar.MONTH) + 1) << 21
+				| c.get(Calendar.DAY_OF_MONTH) << 16
+				| c.get(Calendar.HOUR_OF_DAY) << 11
+				| c.get(Calendar.MINUTE) << 5
+				| c.get(Calendar.SECOND) >> 1;
+	}
+
+
+	/** A file or folder to add to the ZIP file. */
+	private static class ZipSource {
+		final File file;
+		final String entryName;
+
+		ZipSource(File file, String entryName) {
+			this.file = file;
+			this.entryName = entryName;
+		}
+
+		boolean isDirectory() {
+			return entryName.endsWith("/");
+		}
+	}
+
+	/** An entry ready to be written in the ZIP file. */
+	private static class CompressedEntry {
+		final ZipSource source;
+		int method = ZipEntry.STORED;
+		int dosTime;
+		long crc;
+		long size;
+		long compressedSize;
+		long offset;
+		/** Deflated data, when kept in memory. */
+		ExposedByteArrayOutputStream data;
+		/** Deflated data, when too big to be kept in memory. */
+		File tempFile;
+
+		CompressedEntry(ZipSource source) {
+			this.source = source;
+		}
+
+		void release() {
+			data = null;
+			if (tempFile != null) {
+				tempFile.delete();
+				tempFile = null;
+			}
+		}
+	}
+
+	/** Compresses (or just checksums, for stored entries) one entry. */
+	private class CompressTask implements Callable<CompressedEntry> {
+
+		private final ZipSource source;
+		private final ConcurrentLinkedQueue<Deflater> deflaters;
+
+		CompressTask(ZipSource source, ConcurrentLinkedQueue<Deflater> deflaters) {
+			this.source = source;
+			this.deflaters = deflaters;
+		}
+
+		@Override
+		public CompressedEntry call() throws Exception {
+			CompressedEntry entry = new CompressedEntry(source);
+			entry.dosTime = toDosTime(source.file.lastModified());
+			if (source.isDirectory())
+				return entry;
+
+			byte[] buffer = BufferPool.acquire();
+			try {
+				if (isStored(source)) {
+					entry.crc = crc(source.file, buffer);
+					entry.size = source.file.length();
+					entry.compressedSize = entry.size;
+				} else {
+					deflate(entry, buffer);
+				}
+			} catch (Exception e) {
+				entry.release();
+				throw e;
+			} finally {
+				BufferPool.release(buffer);
+			}
+			if (entry.size > MAX_ZIP_SIZE || entry.compressedSize > MAX_ZIP_SIZE) {
+				entry.release();
+				throw new IOException("Entry '" + source.entryName + "' exceeds 4GB, ZIP64 is not supported.");
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				//The ZIP creation was aborted while compressing.
+				entry.release();
+				throw new InterruptedException();
+			}
+			return entry;
+		}
+
+		private void deflate(CompressedEntry entry, byte[] buffer) throws IOException {
+			entry.method = ZipEntry.DEFLATED;
+
+			OutputStream sink;
+			if (source.file.length() <= IN_MEMORY_LIMIT) {
+				entry.data = new ExposedByteArrayOutputStream((int) Math.max(512, source.file.length() / 2));
+				sink = entry.data;
+			} else {
+				File folder = new File(zipFile).getAbsoluteFile().getParentFile();
+				entry.tempFile = File.createTempFile("zipper", ".tmp", folder);
+				sink = new BufferedOutputStream(new FileOutputStream(entry.tempFile), bufferSize);
+			}
+
+			//Raw deflate data ("nowrap"), as stored in ZIP files.
+			Deflater deflater = deflaters.poll();
+			if (deflater == null)
+				deflater = new Deflater(compressionLevel, true);
+			byte[] output = new byte[bufferSize];
+			CRC32 crc = new CRC32();
+			InputStream in = new FileInputStream(source.file);
+			try {
+				int bytesRead;
+				while ((bytesRead = in.read(buffer)) != -1) {
+					crc.update(buffer, 0, bytesRead);
+					entry.size += bytesRead;
+					deflater.setInput(buffer, 0, bytesRead);
+					while (!deflater.needsInput()) {
+						int count = deflater.deflate(output);
+						sink.write(output, 0, count);
+					}
+				}
+				deflater.finish();
+				while (!deflater.finished()) {
+					int count = deflater.deflate(output);
+					sink.write(output, 0, count);
+				}
+				entry.compressedSize = deflater.getBytesWritten();
+				entry.crc = crc.getValue();
+			} finally {
+				in.close();
+				sink.close();
+				deflater.reset();
+				deflaters.offer(deflater);
+			}
+		}
+	}
+
+	/** Keeps track of the written bytes, to know the offset of each entry. */
+	private static class CountingOutputStream extends OutputStream {
+		private final OutputStream out;
+		private long count;
+
+		CountingOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io.exception;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of files could not be fully committed. Tells which
+ * destination files were already replaced and which one failed.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class BatchCommitException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<File> replacedFiles;
+	private final File failedFile;
+
+	public BatchCommitException(List<File> replacedFiles, File failedFile, Throwable throwable) {
+		super("File '" + failedFile + "' could not be replaced, " + replacedFiles.size()
+				+ " files of the batch were already replaced (" + throwable.getMessage() + ").", throwable);
+		this.replacedFiles = Collections.unmodifiableList(replacedFiles);
+		this.failedFile = failedFile;
+	}
+
+	/** The destination files replaced before the failure, they keep the new content. */
+	public List<File> getReplacedFiles() {
+		return replacedFiles;
+	}
+
+	/** The destination file that could not be replaced, it keeps the old content. */
+	public File getFailedFile() {
+		return failedFile;
+	}
+
+}
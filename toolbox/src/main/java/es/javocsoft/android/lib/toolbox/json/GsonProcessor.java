@@ -22,13 +22,36 @@
 package es.javocsoft.android.lib.toolbox.json;
 
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseMessage;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMMessage;
+import es.javocsoft.android.lib.toolbox.task.TaskExecutor;
 
 /**
  * This singleton is used to get a valid JSON parser.<br><br>
  * 
+ * The JSON beans of the library are converted with hand written type 
+ * adapters instead of reflection, except by the GSONP_ONLY_EXPOSED processor. 
+ * They write the same JSON as reflection. Applications can also register their 
+ * own type adapters for their beans, see {@link #registerTypeAdapter(Type, Object)}, 
+ * that are used by all the GSON processors. Register them when the application
+ * starts, before using the processors, because registering rebuilds them.<br><br>
+ * 
+ * Creating the processors and the adapters of a type the first time is 
+ * slow, see {@link #warmUp(Type...)} to do it out of the main thread.<br><br>
+ * 
  * @author JavocSoft 2015
  * @since  2015 
  */
@@ -36,12 +59,23 @@ public class GsonProcessor {
 
 	private static GsonProcessor gsonProcessor = null;
 	
+	private final static String TAG = "ToolBox->GsonProcessor";
+	
+	/* The type adapters of the library beans. */
+	private static final TypeAdapterFactory toolBoxTypeAdapters = ToolBoxTypeAdapters.allBeans();
+	/* Static fields are not excluded by the transient filter, the beans with them are left to reflection. */
+	private static final TypeAdapterFactory toolBoxTypeAdaptersNonStatic = ToolBoxTypeAdapters.withoutStaticFieldBeans();
+	
 	/* A Gson instance for JSON parsing. */
-	private Gson gson = null;
+	private volatile Gson gson = null;
 	/* A Gson instance for JSON parsing. Allows to avoid fields with 'transient' attribute. */
-	private Gson gsonTransientFilter = null;
+	private volatile Gson gsonTransientFilter = null;
 	/* A Gson instance for JSON parsing. Allows to avoid fields without '@Exposed' annotation. */
-	private Gson gsonExposedFilter = null;
+	private volatile Gson gsonExposedFilter = null;
+	
+	/* Type adapters registered by the application. */
+	private final Map<Type, Object> typeAdapters = new LinkedHashMap<Type, Object>();
+	private final List<TypeAdapterFactory> typeAdapterFactories = new ArrayList<TypeAdapterFactory>();
 
 	/**
 	 * The desired GSON processor type:<br>
@@ -53,7 +87,7 @@ public class GsonProcessor {
 	 */
 	public enum GSON_PROCESSOR_TYPE {GSONP, GSONP_NON_TRANSIENT, GSONP_ONLY_EXPOSED};
 	
-	public static GsonProcessor getInstance() {
+	public static synchronized GsonProcessor getInstance() {
 		if (gsonProcessor == null) {
 			gsonProcessor = new GsonProcessor();
 		}
@@ -62,16 +96,59 @@ public class GsonProcessor {
 	}
 	
 	private GsonProcessor(){
-		GsonBuilder gsonBuilder = new GsonBuilder();
-		
-		//A normal JSON processor
-		gson = gsonBuilder.create();
-		
-		//This allows to avoid fields with the transient attribute
-		gsonTransientFilter = gsonBuilder.excludeFieldsWithModifiers(Modifier.TRANSIENT).create();
-		
-		//This allows to avoid fields without the @Exposed annotation
-		gsonExposedFilter = gsonBuilder.excludeFieldsWithoutExposeAnnotation().create();
+		createProcessors();
+	}
+	
+	/**
+	 * Registers a type adapter for the JSON processors, see 
+	 * {@link GsonBuilder#registerTypeAdapter(Type, Object)}. Adapters for 
+	 * the application beans avoid the cost of reflection.
+	 * 
+	 * @param type			The type to convert.
+	 * @param typeAdapter	A TypeAdapter, JsonSerializer, JsonDeserializer 
+	 * 						or InstanceCreator for the type.
+	 */
+	public synchronized void registerTypeAdapter(Type type, Object typeAdapter) {
+		typeAdapters.put(type, typeAdapter);
+		createProcessors();
+	}
+	
+	/**
+	 * Registers a type adapter factory for the JSON processors, see 
+	 * {@link GsonBuilder#registerTypeAdapterFactory(TypeAdapterFactory)}.
+	 * 
+	 * @param factory
+	 */
+	public synchronized void registerTypeAdapterFactory(TypeAdapterFactory factory) {
+		typeAdapterFactories.add(factory);
+		createProcessors();
+	}
+	
+	/**
+	 * Creates the JSON processors and the adapters of the library beans and 
+	 * of the specified types, in background. Call it when the application 
+	 * starts, after registering the type adapters, so the first JSON 
+	 * conversions in the main thread are not slowed down.
+	 * 
+	 * @param types	The types that will be converted.
+	 */
+	public static void warmUp(final Type... types) {
+		TaskExecutor.addTask(new TaskExecutor.ExecutorRunnable() {
+			@Override
+			protected void doJobTask() {
+				GsonProcessor processor = getInstance();
+				for(GSON_PROCESSOR_TYPE processorType:GSON_PROCESSOR_TYPE.values()){
+					Gson g = processor.getGson(processorType);
+					g.getAdapter(FirebaseMessage.class);
+					g.getAdapter(FirebaseDeliveryResponse.class);
+					g.getAdapter(GCMMessage.class);
+					g.getAdapter(GCMDeliveryResponse.class);
+					for(Type type:types){
+						g.getAdapter(TypeToken.get(type));
+					}
+				}
+			}
+		}, TAG);
 	}
 
 	/**
@@ -127,4 +204,38 @@ public class GsonProcessor {
 		return gsonExposedFilter;
 	}
 	
+	
+	//AUXILIAR
+	
+	private void createProcessors() {
+		//A normal JSON processor
+		gson = newGsonBuilder(toolBoxTypeAdapters).create();
+		
+		//This allows to avoid fields with the transient attribute. It replaces the default
+		//exclusions, so static fields are not excluded.
+		gsonTransientFilter = newGsonBuilder(toolBoxTypeAdaptersNonStatic).excludeFieldsWithModifiers(Modifier.TRANSIENT).create();
+		
+		//This allows to avoid fields without the @Exposed annotation. The library
+		//beans are not annotated, so they are left to the reflective conversion.
+		gsonExposedFilter = newGsonBuilder(null).excludeFieldsWithoutExposeAnnotation().create();
+	}
+	
+	/*
+	 * Each processor has its own builder, so the settings of one processor
+	 * are not applied to the others. The adapters registered by the 
+	 * application go last, so they take precedence over the library ones.
+	 */
+	private GsonBuilder newGsonBuilder(TypeAdapterFactory toolBoxAdapters) {
+		GsonBuilder gsonBuilder = new GsonBuilder();
+		if(toolBoxAdapters!=null)
+			gsonBuilder.registerTypeAdapterFactory(toolBoxAdapters);
+		for(Map.Entry<Type, Object> entry:typeAdapters.entrySet()){
+			gsonBuilder.registerTypeAdapter(entry.getKey(), entry.getValue());
+		}
+		for(TypeAdapterFactory factory:typeAdapterFactories){
+			gsonBuilder.registerTypeAdapterFactory(factory);
+		}
+		return gsonBuilder;
+	}
+	
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Reads the items of a JSON array one by one, so arrays of any size are
+ * processed with constant memory instead of loading them in a list.
+ * <br><br>
+ * The items are converted with a Gson processor of {@link GsonProcessor}
+ * and only the current item is in memory. Use it as an iterator, or as
+ * the iterable of a for-each loop, and close it when done:
+ * <pre>
+ * JsonArrayReader&lt;Item&gt; reader = new JsonArrayReader&lt;Item&gt;(in, Item.class);
+ * try {
+ *     for (Item item : reader) {
+ *         ...
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ * Reading or parsing errors are thrown while iterating as a
+ * {@link JsonIOException} or a {@link JsonSyntaxException}.
+ *
+ * @author JavocSoft 2018
+ * @since  2018
+ */
+public class JsonArrayReader<T> implements Iterator<T>, Iterable<T>, Closeable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final JsonReader jsonReader;
+	private final TypeAdapter<T> itemAdapter;
+	private boolean started = false;
+	private boolean finished = false;
+
+
+	/**
+	 * Creates a reader of the items of the JSON array, using the normal
+	 * Gson processor.
+	 *
+	 * @param in	The JSON data, in UTF-8.
+	 * @param itemClass	The class of the items.
+	 */
+	public JsonArrayReader(InputStream in, Class<T> itemClass) {
+		this(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP, new InputStreamReader(in, UTF8), itemClass);
+	}
+
+	/**
+	 * Creates a reader of the items of the JSON array, using the normal
+	 * Gson processor.
+	 *
+	 * @param in	The JSON data.
+	 * @param itemClass	The class of the items.
+	 */
+	public JsonArrayReader(Reader in, Class<T> itemClass) {
+		this(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP, in, itemClass);
+	}
+
+	/**
+	 * Creates a reader of the items of the JSON array.
+	 *
+	 * @param gsonprocessorType	See {@link GsonProcessor.GSON_PROCESSOR_TYPE}
+	 * @param in	The JSON data.
+	 * @param itemType	The type of the items, a class or a generic type
+	 * 					from a {@link TypeToken}.
+	 */
+	public JsonArrayReader(GsonProcessor.GSON_PROCESSOR_TYPE gsonprocessorType, Reader in, Type itemType) {
+		this(GsonProcessor.getInstance().getGson(gsonprocessorType), in, itemType);
+	}
+
+	/**
+	 * Creates a reader of the items of the JSON array.
+	 *
+	 * @param gsonProcessor	A valid instance of {@link com.google.gson.Gson}
+	 * @param in	The JSON data.
+	 * @param itemType	The type of the items, a class or a generic type
+	 * 					from a {@link TypeToken}.
+	 */
+	@SuppressWarnings("unchecked")
+	public JsonArrayReader(Gson gsonProcessor, Reader in, Type itemType) {
+		this.jsonReader = new JsonReader(in);
+		this.itemAdapter = (TypeAdapter<T>) gsonProcessor.getAdapter(TypeToken.get(itemType));
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		if (finished)
+			return false;
+		try {
+			if (!started) {
+				jsonReader.beginArray();
+				started = true;
+			}
+			if (jsonReader.hasNext())
+				return true;
+			jsonReader.endArray();
+			finished = true;
+			return false;
+		} catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IllegalStateException e) {
+			//Not an array
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		try {
+			return itemAdapter.read(jsonReader);
+		} catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IllegalStateException e) {
+			//Item not of the expected type
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns this reader, the items can only be iterated once.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return this;
+	}
+
+	/**
+	 * Closes the reader and the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		jsonReader.close();
+	}
+}
@@ -1,9 +1,16 @@
 package es.javocsoft.android.lib.toolbox.json;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -15,7 +22,9 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
 import es.javocsoft.android.lib.toolbox.ToolBox;
 import es.javocsoft.android.lib.toolbox.json.exception.JsonDataException;
@@ -23,6 +32,15 @@ import es.javocsoft.android.lib.toolbox.json.exception.JsonDataException;
 /**
  * A class that loads and process the JSON information. 
  * Allows to get easily a property of the JSON.
+ * <br><br>
+ * The properties are indexed once when loaded, both by name and by their
+ * full path, so looking for a property does not go through the whole JSON.
+ * <br><br>
+ * For large JSON data of which only some properties are needed, the reader
+ * can be created in streaming mode, declaring the paths of the wanted
+ * properties. The JSON is then read with a {@link JsonReader}, everything 
+ * else is skipped without being parsed into objects and the reading stops
+ * as soon as all the wanted properties are found.
  * 
  * @author JavocSoft
  * @since  2016
@@ -31,8 +49,16 @@ public class JsonDataReader {
 	
 	private JsonObject jsonObject = null;
 	private List<Entry<String, JsonElement>> jsonObjectProperties = new ArrayList<Entry<String, JsonElement>>();
+	/** Values of the properties by name, in document order. */
+	private Map<String, List<JsonElement>> propertiesByName = new HashMap<String, List<JsonElement>>();
+	/** Elements by full path, like "data.items[3].id". */
+	private Map<String, JsonElement> elementsByPath = new HashMap<String, JsonElement>();
 	private Gson gsonProcessor = null;
 	private String json = null;
+	/** Streaming mode, the wanted paths not found yet. */
+	private Set<String> pendingPaths = null;
+	/** Streaming mode, the wanted paths and the paths of the elements that contain them. */
+	private Set<String> pathPrefixes = null;
 	private final static String TAG = "ToolBox->JsonDataReader";
 	
 	
@@ -77,6 +103,51 @@ public class JsonDataReader {
 		this.gsonProcessor = gsonProcessor;
 		loadAndProcessJSON();
 	}
+	
+	/**
+	 * Creates a JsonDataReader object in streaming mode, that only loads the 
+	 * properties at the specified paths, see {@link #get(String)}. 
+	 * It will create an instance of Gson processor, see {@link com.google.gson.Gson}.
+	 * <br><br>
+	 * A wanted property is loaded with all its content, so it can also be
+	 * got by the paths of its children. The reader is not closed.
+	 * 
+	 * @param json	The reader of the JSON to load.
+	 * @param paths	The paths of the wanted properties, like <code>data.items[3].id</code>.
+	 * @throws JsonDataException
+	 */
+	public JsonDataReader(Reader json, String... paths) throws JsonDataException {
+		this(new Gson(), json, paths);
+	}
+	
+	/**
+	 * Creates a JsonDataReader object in streaming mode, that only loads the 
+	 * properties at the specified paths. See {@link #JsonDataReader(Reader, String...)}.
+	 * It gets a JSON GSON processor, {@link GsonProcessor}, of the desired type.
+	 * 
+	 * @param gsonprocessorType	See {@link GsonProcessor.GSON_PROCESSOR_TYPE}
+	 * @param json	The reader of the JSON to load.
+	 * @param paths	The paths of the wanted properties, like <code>data.items[3].id</code>.
+	 * @throws JsonDataException
+	 */
+	public JsonDataReader(GsonProcessor.GSON_PROCESSOR_TYPE gsonprocessorType, Reader json, String... paths) throws JsonDataException {
+		this(GsonProcessor.getInstance().getGson(gsonprocessorType), json, paths);
+	}
+	
+	/**
+	 * Creates a JsonDataReader object in streaming mode, that only loads the 
+	 * properties at the specified paths. See {@link #JsonDataReader(Reader, String...)}.
+	 * It will use to process the data the specified JSON Gson processor, see {@link com.google.gson.Gson}.
+	 * 
+	 * @param gsonProcessor A valid instance of {@link com.google.gson.Gson}
+	 * @param json	The reader of the JSON to load.
+	 * @param paths	The paths of the wanted properties, like <code>data.items[3].id</code>.
+	 * @throws JsonDataException
+	 */
+	public JsonDataReader(Gson gsonProcessor, Reader json, String... paths) throws JsonDataException {
+		this.gsonProcessor = gsonProcessor;
+		streamJSON(json, paths);
+	}
 
 	/**
 	 * Gets the JsonObject for the specified element name. The desired object
@@ -88,29 +159,28 @@ public class JsonDataReader {
 	 * @throws JsonDataException
 	 */
 	public JsonObject getJsonObject(String name) throws JsonDataException {
-		if(!isNull(name)){			
+		List<JsonElement> values = propertiesByName.get(name);
+		if(!isNull(values)){			
 			try{
-				for(Entry<String, JsonElement> entry:jsonObjectProperties){
-					if(entry.getKey().equals(name)){ //Found the element name in the list
-						if(entry.getValue() instanceof JsonObject) {
-							//is an object
-							return entry.getValue().getAsJsonObject();					
-						}else{
-							//not an object
-							if (entry.getValue().isJsonPrimitive()) {
-								//The object data could be in a string encoded format
-								if (entry.getValue().getAsJsonPrimitive().isString()){
-									//We try to get the object data
-									String jsonStrE = entry.getValue().getAsString();
-									JsonElement e = new Gson().fromJson (jsonStrE, JsonElement.class);
-									if(e instanceof JsonObject){
-										//Is an object in a string format
-										return e.getAsJsonObject();
-									}
+				for(JsonElement value:values){
+					if(value instanceof JsonObject) {
+						//is an object
+						return value.getAsJsonObject();					
+					}else{
+						//not an object
+						if (value.isJsonPrimitive()) {
+							//The object data could be in a string encoded format
+							if (value.getAsJsonPrimitive().isString()){
+								//We try to get the object data
+								String jsonStrE = value.getAsString();
+								JsonElement e = gsonProcessor.fromJson (jsonStrE, JsonElement.class);
+								if(e instanceof JsonObject){
+									//Is an object in a string format
+									return e.getAsJsonObject();
 								}
 							}
-						}					
-					}
+						}
+					}					
 				}				
 			}catch(Exception e){
 				if(ToolBox.LOG_ENABLE)
@@ -130,28 +200,68 @@ public class JsonDataReader {
 	 * @throws JsonDataException
 	 */
 	public JsonElement getJsonElement(String name) throws JsonDataException {
-		if(!isNull(name)){
-			try{
-				for(Entry<String, JsonElement> entry:jsonObjectProperties){
-					if(entry.getKey().equals(name)){ //Found the element name in the list
-						return entry.getValue();
-					}
-				}
-			}catch(Exception e){
-				if(ToolBox.LOG_ENABLE)
-					Log.e(TAG, "Json Element data could not be get for property: '" + name + "' (" + e.getMessage() + ")",e);
-				throw new JsonDataException("JsonElement data could not be get for property: '" + name + "' (" + e.getMessage() + ")", e);
-			}
+		List<JsonElement> values = propertiesByName.get(name);
+		if(!isNull(values)){
+			//The first one with that name
+			return values.get(0);
 		}
 		
 		return null;						
 	}	
 	
+	/**
+	 * Gets all the values of the properties with the specified name, in
+	 * the order they are in the JSON.
+	 * 
+	 * @param name The element name.
+	 * @return	The values, an empty list if there is no property with
+	 * 			that name.
+	 */
+	public List<JsonElement> getJsonElements(String name) {
+		List<JsonElement> values = propertiesByName.get(name);
+		if(values==null)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(values);
+	}
+	
+	/**
+	 * Gets the JsonElement at the specified path. Unlike {@link #getJsonElement(String)},
+	 * a path addresses exactly one element even when several properties have
+	 * the same name.
+	 * <br><br>
+	 * The path is made of the property names separated by dots, with the 
+	 * index of the array items between brackets, for example 
+	 * <code>data.items[3].id</code>.
+	 * 
+	 * @param path The element path.
+	 * @return	The element, {@link JsonNull} if its value is null, or null if 
+	 * 			there is no element at that path.
+	 */
+	public JsonElement get(String path) {
+		return elementsByPath.get(path);
+	}
+	
+	/**
+	 * Checks if there is a not null element at the specified path, 
+	 * see {@link #get(String)}.
+	 * 
+	 * @param path The element path.
+	 * @return
+	 */
+	public boolean has(String path) {
+		JsonElement element = elementsByPath.get(path);
+		return element!=null && !element.isJsonNull();
+	}
+	
 	/**
 	 * * Get the JsonArray from the JSON data and converts to List.
+	 * <br><br>
+	 * The whole array is loaded in the list, to process large arrays item
+	 * by item see {@link JsonArrayReader}.
 	 *
 	 * @param name	The name of the JsonElement that contains the JsonArray.
-	 * @param itemClass The object type (class) of the list.
+	 * @param itemClass The object type (class) of the list, a {@link Type}. 
+	 * 					If it is not, the items are loaded as Gson does by default.
 	 * @return A list of item objects.
 	 * @throws JsonDataException
 	 */
@@ -160,15 +270,27 @@ public class JsonDataReader {
 		
 		JsonElement e = getJsonElement(name);
 		if(e!=null){
-			Type listType = new TypeToken<List<?>>() {}.getType();
-			res = new Gson().fromJson(e, listType);
+			Type listType;
+			if(itemClass instanceof Type){
+				listType = TypeToken.getParameterized(List.class, (Type)itemClass).getType();
+			}else{
+				listType = new TypeToken<List<?>>() {}.getType();
+			}
+			try{
+				res = gsonProcessor.fromJson(e, listType);
+			}catch(JsonSyntaxException ex){
+				if(ToolBox.LOG_ENABLE)
+					Log.e(TAG, "List could not be get for property: '" + name + "' (" + ex.getMessage() + ")",ex);
+				throw new JsonDataException("List could not be get for property: '" + name + "' (" + ex.getMessage() + ")", ex);
+			}
 		}
 		
 		return res;
 	}
 	
 	/**
-	 * Gets the list of all properties of the JSON.
+	 * Gets the list of all properties of the JSON. In streaming mode,
+	 * only the loaded properties.
 	 * 
 	 * @return
 	 */
@@ -197,8 +319,124 @@ public class JsonDataReader {
 		}
 	}
 	
+	private void streamJSON(Reader reader, String... paths) throws JsonDataException {
+		pendingPaths = new HashSet<String>();
+		pathPrefixes = new HashSet<String>();
+		for(String path:paths){
+			pendingPaths.add(path);
+			//The root and every object or array on the way to the path
+			pathPrefixes.add("");
+			for(int i=0;i<path.length();i++){
+				char c = path.charAt(i);
+				if(c=='.' || c=='[')
+					pathPrefixes.add(path.substring(0, i));
+			}
+			pathPrefixes.add(path);
+		}
+		
+		try{
+			JsonReader in = new JsonReader(reader);
+			in.beginObject();
+			streamObject(in, null, gsonProcessor.getAdapter(JsonElement.class));
+		}catch(IOException e){
+			if(ToolBox.LOG_ENABLE)
+				Log.e(TAG, "Error reading JSON data (" + e.getMessage() + ")", e);
+			throw new JsonDataException("Error reading JSON data (" + e.getMessage() + ")", e);
+		}catch(Exception e){
+			//Malformed JSON or not the expected structure
+			if(ToolBox.LOG_ENABLE)
+				Log.e(TAG, "Error parsing JSON data (" + e.getMessage() + ")", e);
+			throw new JsonDataException("Error parsing JSON data (" + e.getMessage() + ")", e);
+		}
+	}
+	
 	/**
-	 * Gets the list of properties of the JSON object in a list format.
+	 * Reads the properties of an object, from its beginning, loading the wanted
+	 * ones. The reading stops once there are no more wanted properties.
+	 * 
+	 * @param in	The JSON reader.
+	 * @param path	The path of the object, null for the root object.
+	 * @param elementAdapter	Loads a JSON value as a JsonElement.
+	 */
+	private void streamObject(JsonReader in, String path, TypeAdapter<JsonElement> elementAdapter) throws Exception {
+		while(!pendingPaths.isEmpty() && in.hasNext()){
+			String name = in.nextName();
+			String childPath = (path==null ? name : path + "." + name);
+			if(pendingPaths.remove(childPath)){
+				//Found, load it and index it with its content
+				lookIntoEntry(new AbstractMap.SimpleImmutableEntry<String, JsonElement>(name, elementAdapter.read(in)), path);
+				removeLoadedPaths(childPath);
+			}else{
+				streamValue(in, childPath, elementAdapter);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the items of an array, from its beginning, loading the wanted
+	 * ones. The reading stops once there are no more wanted properties.
+	 * 
+	 * @param in	The JSON reader.
+	 * @param path	The path of the array.
+	 * @param elementAdapter	Loads a JSON value as a JsonElement.
+	 */
+	private void streamArray(JsonReader in, String path, TypeAdapter<JsonElement> elementAdapter) throws Exception {
+		for(int i=0; !pendingPaths.isEmpty() && in.hasNext(); i++){
+			String itemPath = path + "[" + i + "]";
+			if(pendingPaths.remove(itemPath)){
+				lookIntoEntry(elementAdapter.read(in), itemPath);
+				removeLoadedPaths(itemPath);
+			}else{
+				streamValue(in, itemPath, elementAdapter);
+			}
+		}
+	}
+	
+	/**
+	 * Goes into a value not wanted, only if it contains wanted properties. 
+	 * Otherwise, it is skipped without loading it.
+	 */
+	private void streamValue(JsonReader in, String path, TypeAdapter<JsonElement> elementAdapter) throws Exception {
+		if(!pathPrefixes.contains(path)){
+			in.skipValue();
+			return;
+		}
+		
+		switch(in.peek()){
+			case BEGIN_OBJECT:
+				in.beginObject();
+				streamObject(in, path, elementAdapter);
+				if(!pendingPaths.isEmpty())
+					in.endObject();
+				break;
+			case BEGIN_ARRAY:
+				in.beginArray();
+				streamArray(in, path, elementAdapter);
+				if(!pendingPaths.isEmpty())
+					in.endArray();
+				break;
+			default:
+				in.skipValue();
+		}
+	}
+	
+	/**
+	 * Wanted paths inside a loaded element are already loaded with it.
+	 */
+	private void removeLoadedPaths(String path) {
+		Iterator<String> it = pendingPaths.iterator();
+		while(it.hasNext()){
+			String pending = it.next();
+			if(pending.startsWith(path) && pending.length()>path.length() && 
+				(pending.charAt(path.length())=='.' || pending.charAt(path.length())=='[')){
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the list of properties of the JSON object in a list format and
+	 * indexes them by name and path.
 	 * 
 	 */
 	private void listProperties() throws Exception {
@@ -207,7 +445,7 @@ public class JsonDataReader {
 			Set<Entry<String, JsonElement>> properties = jsonObject.entrySet();
 			Iterator<Entry<String, JsonElement>> it = properties.iterator();
 			while( it.hasNext() ){
-	        	lookIntoEntry(it.next(), jsonObjectProperties);        	
+	        	lookIntoEntry(it.next(), null);        	
 	        }
 		}catch(Exception e){
 			throw new Exception("Error getting JSON object properties list (" + e.getMessage() + "). JSON String: " + json, e);
@@ -216,68 +454,65 @@ public class JsonDataReader {
 	
 	/**
 	 * This is a recursive function that looks into a entry JsonElement adding it to the
-	 * list of entries and looking in it for any JsonElement child that is a JsonObject.
+	 * list of entries and indexes, and looking in it for any JsonElement child that is 
+	 * a JsonObject.
 	 *  
 	 * @param entry	An entry of the JSON.
-	 * @param entries	The list of entries that the JSON has.
+	 * @param parentPath	The path of the object that has the entry, null for the root.
 	 */
-	private void lookIntoEntry(Entry<String, JsonElement> entry, List<Entry<String, JsonElement>> entries) throws Exception {
+	private void lookIntoEntry(Entry<String, JsonElement> entry, String parentPath) throws Exception {
 		//Add the entry
-		entries.add(entry);
-		
-		//Recursive
-		if(entry.getValue() instanceof JsonObject) {
-			Set<Entry<String, JsonElement>> properties = entry.getValue().getAsJsonObject().entrySet();
-			Iterator<Entry<String, JsonElement>> it = properties.iterator();
-			while( it.hasNext() ){
-				lookIntoEntry(it.next(), entries);
-			}
-		}else if(entry.getValue() instanceof JsonArray){
-			JsonArray jsonArray = entry.getValue().getAsJsonArray();
-			Iterator<JsonElement> it = jsonArray.iterator();
-			while( it.hasNext() ){
-				lookIntoEntry(it.next(), entries);
-			}
-			
+		jsonObjectProperties.add(entry);
+		List<JsonElement> values = propertiesByName.get(entry.getKey());
+		if(values==null){
+			values = new ArrayList<JsonElement>(1);
+			propertiesByName.put(entry.getKey(), values);
 		}
+		values.add(entry.getValue());
+		
+		String path = (parentPath==null ? entry.getKey() : parentPath + "." + entry.getKey());
+		lookIntoEntry(entry.getValue(), path);
 	}
 	
 	/**
-	 * This is a recursive function that looks into an entry JsonElement looking in 
-	 * it for any JsonElement child that is a JsonObject.
+	 * This is a recursive function that indexes a JsonElement by its path and looks
+	 * in it for any JsonElement child that is a JsonObject.
 	 *  
-	 * @param entry	An entry of the JSON.
-	 * @param entries	The list of entries that the JSON has.
+	 * @param entry	An element of the JSON.
+	 * @param path	The path of the element.
 	 */
-	private void lookIntoEntry(JsonElement entry, List<Entry<String, JsonElement>> entries) throws Exception {
+	private void lookIntoEntry(JsonElement entry, String path) throws Exception {
+		elementsByPath.put(path, entry);
+		
 		//Recursive
 		if(entry instanceof JsonObject) {
 			Set<Entry<String, JsonElement>> properties = entry.getAsJsonObject().entrySet();
 			Iterator<Entry<String, JsonElement>> it = properties.iterator();
 			while( it.hasNext() ){
-				lookIntoEntry(it.next(), entries);
+				lookIntoEntry(it.next(), path);
 			}
 		}else if(entry instanceof JsonArray){
 			JsonArray jsonArray = entry.getAsJsonArray();
-			Iterator<JsonElement> it = jsonArray.iterator();
-			while( it.hasNext() ){
-				lookIntoEntry(it.next(), entries);
+			for(int i=0;i<jsonArray.size();i++){
+				lookIntoEntry(jsonArray.get(i), path + "[" + i + "]");
 			}
 		}
 	}
 	
 	/**
-	 * Checks if the element name exists or not in the property list
-	 * of the JSON.
+	 * Checks if there is not any property with a not null value in the 
+	 * values of a property name.
 	 * 
-	 * @param elementName
+	 * @param values	The values of the property name, from the index.
 	 * @return
 	 */
-	private boolean isNull(String elementName) {
+	private boolean isNull(List<JsonElement> values) {
 		
-		for(Entry<String, JsonElement> entry:jsonObjectProperties){
-			if(entry.getKey().equals(elementName) && !(entry.getValue() instanceof JsonNull)){ //Found the element name in the list
-				return false;
+		if(values!=null){
+			for(JsonElement value:values){
+				if(!(value instanceof JsonNull)){
+					return false;
+				}
 			}
 		}
 		
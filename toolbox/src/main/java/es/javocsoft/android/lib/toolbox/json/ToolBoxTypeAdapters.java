@@ -0,0 +1,520 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResultItem;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseMessage;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResultItem;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMMessage;
+
+/**
+ * Hand written type adapters for the JSON beans of the library, so they
+ * are converted without reflection. The Firebase and GCM beans have the same
+ * fields, so there is one adapter for each kind of bean: messages, delivery
+ * responses and their result items.
+ * <br><br>
+ * They write the same JSON that Gson writes by reflection with its default
+ * exclusions, which skip the static and transient fields: the fields in
+ * declaration order and, unless the writer is set to serialize nulls, without
+ * the null fields. The delivery result items have static constants, written
+ * by reflection when the default exclusions are replaced, see 
+ * {@link #withoutStaticFieldBeans()}.
+ * <br><br>
+ * Registered by {@link GsonProcessor}.
+ *
+ * @author JavocSoft 2018
+ * @since  2018
+ */
+final class ToolBoxTypeAdapters implements TypeAdapterFactory {
+
+	private static final TypeAdapter<FirebaseMessage> FIREBASE_MESSAGE = new MessageAdapter<FirebaseMessage>() {
+		@Override
+		protected void writeFields(JsonWriter out, FirebaseMessage msg) throws IOException {
+			writeMessage(out, msg.collapse_key, msg.time_to_live, msg.delay_while_idle, msg.data, msg.registration_ids);
+		}
+
+		@Override
+		protected FirebaseMessage create(String collapseKey, Long timeToLive, Boolean delayWhileIdle,
+				Map<String, String> data, List<String> registrationIds) {
+			FirebaseMessage msg = new FirebaseMessage();
+			msg.collapse_key = collapseKey;
+			msg.time_to_live = timeToLive;
+			msg.delay_while_idle = delayWhileIdle;
+			msg.data = data;
+			msg.registration_ids = registrationIds;
+			return msg;
+		}
+	};
+
+	private static final TypeAdapter<GCMMessage> GCM_MESSAGE = new MessageAdapter<GCMMessage>() {
+		@Override
+		protected void writeFields(JsonWriter out, GCMMessage msg) throws IOException {
+			writeMessage(out, msg.collapse_key, msg.time_to_live, msg.delay_while_idle, msg.data, msg.registration_ids);
+		}
+
+		@Override
+		protected GCMMessage create(String collapseKey, Long timeToLive, Boolean delayWhileIdle,
+				Map<String, String> data, List<String> registrationIds) {
+			GCMMessage msg = new GCMMessage();
+			msg.collapse_key = collapseKey;
+			msg.time_to_live = timeToLive;
+			msg.delay_while_idle = delayWhileIdle;
+			msg.data = data;
+			msg.registration_ids = registrationIds;
+			return msg;
+		}
+	};
+
+	private static final TypeAdapter<FirebaseDeliveryResultItem> FIREBASE_RESULT_ITEM = new ResultItemAdapter<FirebaseDeliveryResultItem>() {
+		@Override
+		protected void writeFields(JsonWriter out, FirebaseDeliveryResultItem item) throws IOException {
+			writeResultItem(out, item.message_id, item.registration_id, item.error);
+		}
+
+		@Override
+		protected FirebaseDeliveryResultItem create(String messageId, String registrationId, String error) {
+			FirebaseDeliveryResultItem item = new FirebaseDeliveryResultItem();
+			item.message_id = messageId;
+			item.registration_id = registrationId;
+			item.error = error;
+			return item;
+		}
+	};
+
+	private static final TypeAdapter<GCMDeliveryResultItem> GCM_RESULT_ITEM = new ResultItemAdapter<GCMDeliveryResultItem>() {
+		@Override
+		protected void writeFields(JsonWriter out, GCMDeliveryResultItem item) throws IOException {
+			writeResultItem(out, item.message_id, item.registration_id, item.error);
+		}
+
+		@Override
+		protected GCMDeliveryResultItem create(String messageId, String registrationId, String error) {
+			GCMDeliveryResultItem item = new GCMDeliveryResultItem();
+			item.message_id = messageId;
+			item.registration_id = registrationId;
+			item.error = error;
+			return item;
+		}
+	};
+
+	private final boolean resultItems;
+
+
+	private ToolBoxTypeAdapters(boolean resultItems) {
+		this.resultItems = resultItems;
+	}
+
+	/**
+	 * The adapters of all the library beans.
+	 */
+	static ToolBoxTypeAdapters allBeans() {
+		return new ToolBoxTypeAdapters(true);
+	}
+
+	/**
+	 * The adapters of the beans without static fields, for the processors that
+	 * do not exclude them. The delivery result items are left to reflection, and
+	 * the delivery responses convert them with the adapter of the processor, so
+	 * the JSON is the same that reflection writes.
+	 */
+	static ToolBoxTypeAdapters withoutStaticFieldBeans() {
+		return new ToolBoxTypeAdapters(false);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> rawType = type.getRawType();
+		if (rawType == FirebaseMessage.class)
+			return (TypeAdapter<T>) FIREBASE_MESSAGE;
+		if (rawType == GCMMessage.class)
+			return (TypeAdapter<T>) GCM_MESSAGE;
+		if (rawType == FirebaseDeliveryResponse.class)
+			return (TypeAdapter<T>) new DeliveryResponseAdapter<FirebaseDeliveryResponse, FirebaseDeliveryResultItem>(
+					gson.getAdapter(FirebaseDeliveryResultItem.class)) {
+				@Override
+				protected void writeFields(JsonWriter out, FirebaseDeliveryResponse response) throws IOException {
+					writeResponse(out, response.multicast_id, response.success, response.failure,
+							response.canonical_ids, response.results);
+				}
+
+				@Override
+				protected FirebaseDeliveryResponse create(String multicastId, int success, int failure,
+						int canonicalIds, List<FirebaseDeliveryResultItem> results) {
+					FirebaseDeliveryResponse response = new FirebaseDeliveryResponse();
+					response.multicast_id = multicastId;
+					response.success = success;
+					response.failure = failure;
+					response.canonical_ids = canonicalIds;
+					response.results = results;
+					return response;
+				}
+			};
+		if (rawType == GCMDeliveryResponse.class)
+			return (TypeAdapter<T>) new DeliveryResponseAdapter<GCMDeliveryResponse, GCMDeliveryResultItem>(
+					gson.getAdapter(GCMDeliveryResultItem.class)) {
+				@Override
+				protected void writeFields(JsonWriter out, GCMDeliveryResponse response) throws IOException {
+					writeResponse(out, response.multicast_id, response.success, response.failure,
+							response.canonical_ids, response.results);
+				}
+
+				@Override
+				protected GCMDeliveryResponse create(String multicastId, int success, int failure,
+						int canonicalIds, List<GCMDeliveryResultItem> results) {
+					GCMDeliveryResponse response = new GCMDeliveryResponse();
+					response.multicast_id = multicastId;
+					response.success = success;
+					response.failure = failure;
+					response.canonical_ids = canonicalIds;
+					response.results = results;
+					return response;
+				}
+			};
+		if (resultItems && rawType == FirebaseDeliveryResultItem.class)
+			return (TypeAdapter<T>) FIREBASE_RESULT_ITEM;
+		if (resultItems && rawType == GCMDeliveryResultItem.class)
+			return (TypeAdapter<T>) GCM_RESULT_ITEM;
+		return null;
+	}
+
+
+	/**
+	 * The JSON of a message bean. Each bean only passes its fields
+	 * to {@link #writeMessage} and creates itself from the read values.
+	 */
+	private static abstract class MessageAdapter<T> extends TypeAdapter<T> {
+
+		protected abstract void writeFields(JsonWriter out, T msg) throws IOException;
+
+		protected abstract T create(String collapseKey, Long timeToLive, Boolean delayWhileIdle,
+				Map<String, String> data, List<String> registrationIds);
+
+		@Override
+		public void write(JsonWriter out, T msg) throws IOException {
+			if (msg == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeFields(out, msg);
+			out.endObject();
+		}
+
+		protected void writeMessage(JsonWriter out, String collapseKey, Long timeToLive, Boolean delayWhileIdle,
+				Map<String, String> data, List<String> registrationIds) throws IOException {
+			out.name("collapse_key").value(collapseKey);
+			out.name("time_to_live").value(timeToLive);
+			out.name("delay_while_idle").value(delayWhileIdle);
+			out.name("data");
+			writeStringMap(out, data);
+			out.name("registration_ids");
+			writeStringList(out, registrationIds);
+		}
+
+		@Override
+		public T read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			String collapseKey = null;
+			Long timeToLive = null;
+			Boolean delayWhileIdle = null;
+			Map<String, String> data = null;
+			List<String> registrationIds = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("collapse_key")) {
+					collapseKey = readString(in);
+				} else if (name.equals("time_to_live")) {
+					timeToLive = readLong(in);
+				} else if (name.equals("delay_while_idle")) {
+					delayWhileIdle = readBoolean(in);
+				} else if (name.equals("data")) {
+					data = readStringMap(in);
+				} else if (name.equals("registration_ids")) {
+					registrationIds = readStringList(in);
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return create(collapseKey, timeToLive, delayWhileIdle, data, registrationIds);
+		}
+	}
+
+	/**
+	 * The JSON of a delivery response bean. Its result items are converted
+	 * by the given adapter.
+	 */
+	private static abstract class DeliveryResponseAdapter<T, I> extends TypeAdapter<T> {
+
+		private final TypeAdapter<I> itemAdapter;
+
+		DeliveryResponseAdapter(TypeAdapter<I> itemAdapter) {
+			this.itemAdapter = itemAdapter;
+		}
+
+		protected abstract void writeFields(JsonWriter out, T response) throws IOException;
+
+		protected abstract T create(String multicastId, int success, int failure, int canonicalIds, List<I> results);
+
+		@Override
+		public void write(JsonWriter out, T response) throws IOException {
+			if (response == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeFields(out, response);
+			out.endObject();
+		}
+
+		protected void writeResponse(JsonWriter out, String multicastId, int success, int failure,
+				int canonicalIds, List<I> results) throws IOException {
+			out.name("multicast_id").value(multicastId);
+			out.name("success").value(success);
+			out.name("failure").value(failure);
+			out.name("canonical_ids").value(canonicalIds);
+			out.name("results");
+			if (results == null) {
+				out.nullValue();
+			} else {
+				out.beginArray();
+				for (I item : results) {
+					itemAdapter.write(out, item);
+				}
+				out.endArray();
+			}
+		}
+
+		@Override
+		public T read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			String multicastId = null;
+			int success = 0;
+			int failure = 0;
+			int canonicalIds = 0;
+			List<I> results = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("multicast_id")) {
+					multicastId = readString(in);
+				} else if (name.equals("success")) {
+					success = readInt(in, success);
+				} else if (name.equals("failure")) {
+					failure = readInt(in, failure);
+				} else if (name.equals("canonical_ids")) {
+					canonicalIds = readInt(in, canonicalIds);
+				} else if (name.equals("results")) {
+					if (in.peek() == JsonToken.NULL) {
+						in.nextNull();
+						results = null;
+					} else {
+						results = new ArrayList<I>();
+						in.beginArray();
+						while (in.hasNext()) {
+							results.add(itemAdapter.read(in));
+						}
+						in.endArray();
+					}
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return create(multicastId, success, failure, canonicalIds, results);
+		}
+	}
+
+	/**
+	 * The JSON of a delivery result item bean.
+	 */
+	private static abstract class ResultItemAdapter<T> extends TypeAdapter<T> {
+
+		protected abstract void writeFields(JsonWriter out, T item) throws IOException;
+
+		protected abstract T create(String messageId, String registrationId, String error);
+
+		@Override
+		public void write(JsonWriter out, T item) throws IOException {
+			if (item == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeFields(out, item);
+			out.endObject();
+		}
+
+		protected void writeResultItem(JsonWriter out, String messageId, String registrationId, String error)
+				throws IOException {
+			out.name("message_id").value(messageId);
+			out.name("registration_id").value(registrationId);
+			out.name("error").value(error);
+		}
+
+		@Override
+		public T read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			String messageId = null;
+			String registrationId = null;
+			String error = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("message_id")) {
+					messageId = readString(in);
+				} else if (name.equals("registration_id")) {
+					registrationId = readString(in);
+				} else if (name.equals("error")) {
+					error = readString(in);
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return create(messageId, registrationId, error);
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static void writeStringMap(JsonWriter out, Map<String, String> map) throws IOException {
+		if (map == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+		}
+		out.endObject();
+	}
+
+	private static void writeStringList(JsonWriter out, List<String> list) throws IOException {
+		if (list == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (String value : list) {
+			out.value(value);
+		}
+		out.endArray();
+	}
+
+	private static Map<String, String> readStringMap(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		in.beginObject();
+		while (in.hasNext()) {
+			String key = in.nextName();
+			map.put(key, readString(in));
+		}
+		in.endObject();
+		return map;
+	}
+
+	private static List<String> readStringList(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		List<String> list = new ArrayList<String>();
+		in.beginArray();
+		while (in.hasNext()) {
+			list.add(readString(in));
+		}
+		in.endArray();
+		return list;
+	}
+
+	private static String readString(JsonReader in) throws IOException {
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.BOOLEAN)
+			return Boolean.toString(in.nextBoolean());
+		//Numbers are also read as text, like Gson does
+		return in.nextString();
+	}
+
+	private static Long readLong(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextLong();
+	}
+
+	private static Boolean readBoolean(JsonReader in) throws IOException {
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.STRING)
+			return Boolean.parseBoolean(in.nextString());
+		return in.nextBoolean();
+	}
+
+	/** A null keeps the default value of the primitive field, like Gson does. */
+	private static int readInt(JsonReader in, int defaultValue) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return defaultValue;
+		}
+		return in.nextInt();
+	}
+}
@@ -0,0 +1,663 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+import es.javocsoft.android.lib.toolbox.ToolBox;
+import es.javocsoft.android.lib.toolbox.io.BufferPool;
+import es.javocsoft.android.lib.toolbox.io.TransferProgressListener;
+
+/**
+ * Downloads a remote resource into a file, resuming it when interrupted.
+ * <br><br>
+ * Data is streamed into a temporal ".part" file next to the destination file,
+ * never kept in memory. The resource validators (length, ETag and Last-Modified)
+ * are saved in a ".part.meta" file, so when a download fails, or the application
+ * process dies, the next attempt continues from the already downloaded bytes
+ * using an HTTP "Range" request. If the resource changed in the server meanwhile,
+ * the download starts again from the beginning. A download is only resumed when
+ * the server sent an ETag or a Last-Modified date, without them a change can not
+ * be detected and it always starts from the beginning.
+ * <br><br>
+ * Once complete, the length is verified and the temporal file is renamed
+ * to the destination file, so the destination never contains partial data.
+ * <br><br>
+ * Example of usage:
+ * <pre>
+ * 		FileDownloader downloader = new FileDownloader(url, new File(folder, "pack.zip"));
+ * 		downloader.setMaxRetries(5);
+ * 		File file = downloader.download();
+ * </pre>
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FileDownloader {
+
+	private static final String TAG = "FileDownloader";
+
+	private static final String PART_SUFFIX = ".part";
+	private static final String META_SUFFIX = ".part.meta";
+
+	private static final String META_URL = "url";
+	private static final String META_ETAG = "etag";
+	private static final String META_LAST_MODIFIED = "lastModified";
+	private static final String META_LENGTH = "length";
+	private static final String META_SEGMENTS = "segments";
+	private static final String META_SEGMENT = "segment.";
+
+	private static final int DEFAULT_MAX_RETRIES = 3;
+	private static final int DEFAULT_CONNECTION_TIMEOUT = 15000;
+	private static final int DEFAULT_READ_TIMEOUT = 30000;
+	private static final long RETRY_DELAY = 1000;
+	/** Resources smaller than this are never split in segments. */
+	private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+	/** How often, in bytes, each segment saves its progress. */
+	private static final long SEGMENT_SAVE_INTERVAL = 512 * 1024;
+
+	private final String url;
+	private final File destination;
+	private final File partFile;
+	private final File metaFile;
+
+	private int maxRetries = DEFAULT_MAX_RETRIES;
+	private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+	private int segments = 1;
+	private TransferProgressListener listener;
+	private volatile boolean cancelled = false;
+
+
+	/**
+	 * Creates a downloader.
+	 *
+	 * @param url			The resource to download.
+	 * @param destination	The destination file. Its folder must exist.
+	 */
+	public FileDownloader(String url, File destination) {
+		this.url = url;
+		this.destination = destination;
+		this.partFile = new File(destination.getPath() + PART_SUFFIX);
+		this.metaFile = new File(destination.getPath() + META_SUFFIX);
+	}
+
+
+	/**
+	 * Sets how many times a failed download is resumed before giving up.
+	 *
+	 * @param maxRetries
+	 */
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Sets the connection timeout, in milliseconds.
+	 *
+	 * @param connectionTimeout
+	 */
+	public void setConnectionTimeout(int connectionTimeout) {
+		this.connectionTimeout = connectionTimeout;
+	}
+
+	/**
+	 * Sets the read timeout, in milliseconds.
+	 *
+	 * @param readTimeout
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Sets the max number of concurrent connections to use.
+	 * <br><br>
+	 * When greater than 1 and the server advertises support of byte ranges
+	 * ("Accept-Ranges"), the resource is split in byte ranges downloaded
+	 * concurrently, each one written in place in the temporal file. Otherwise,
+	 * the resource is downloaded as a single stream.
+	 *
+	 * @param segments	Number of segments, 1 by default.
+	 */
+	public void setSegments(int segments) {
+		this.segments = Math.max(1, segments);
+	}
+
+	/**
+	 * Sets a listener to get informed about the download progress. Can be null.
+	 * <br><br>
+	 * Note: In segmented downloads it is called from several threads.
+	 *
+	 * @param listener
+	 */
+	public void setProgressListener(TransferProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Cancels a running download. Downloaded data is kept, so
+	 * it can be resumed later.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Deletes any partially downloaded data of this download.
+	 */
+	public void discard() {
+		partFile.delete();
+		metaFile.delete();
+	}
+
+	/**
+	 * Downloads the resource, resuming any previous partial download.
+	 * <br><br>
+	 * Note: This is a blocking operation, do not call it from the main thread.
+	 *
+	 * @return	The downloaded file.
+	 * @throws IOException	If the download could not be completed. Downloaded data
+	 * 						is kept to be resumed on the next call.
+	 */
+	public File download() throws IOException {
+		cancelled = false;
+
+		if (segments > 1 && downloadSegmented()) {
+			complete();
+			return destination;
+		}
+
+		int attempt = 0;
+		while (true) {
+			try {
+				downloadAttempt();
+				break;
+			} catch (IOException e) {
+				if (cancelled || ++attempt > maxRetries)
+					throw e;
+				if (ToolBox.LOG_ENABLE)
+					Log.w(TAG, "Download of '" + url + "' interrupted (" + e.getMessage() + "), resuming [" + attempt + "/" + maxRetries + "].");
+				sleep(RETRY_DELAY * attempt);
+			}
+		}
+
+		complete();
+		return destination;
+	}
+
+
+	//AUXILIAR
+
+	private void downloadAttempt() throws IOException {
+		Properties meta = loadMeta();
+		if (meta != null && meta.getProperty(META_SEGMENTS) != null) {
+			//Left by a segmented download, its length is not the downloaded data.
+			discard();
+			meta = null;
+		}
+		//Without a validator we can not know if the resource changed, we start again.
+		String validator = validator(meta);
+		long downloaded = validator != null && partFile.exists() ? partFile.length() : 0;
+
+		HttpURLConnection connection = openConnection();
+		try {
+			if (downloaded > 0) {
+				connection.setRequestProperty("Range", "bytes=" + downloaded + "-");
+				//The range is only applied if the resource did not change.
+				connection.setRequestProperty("If-Range", validator);
+			}
+
+			int code = connection.getResponseCode();
+			long total;
+			boolean append;
+			if (code == HttpURLConnection.HTTP_PARTIAL && downloaded > 0) {
+				long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+				if (range == null || range[0] != downloaded)
+					throw new IOException("Unexpected Content-Range '" + connection.getHeaderField("Content-Range") + "'.");
+				if (range[2] != parseLong(meta.getProperty(META_LENGTH))) {
+					//Not the resource we have a part of, the next attempt starts again.
+					discard();
+					throw new IOException("Resource length changed from " + meta.getProperty(META_LENGTH) + " to " + range[2] + " bytes.");
+				}
+				total = range[2];
+				append = true;
+			} else if (code == HttpURLConnection.HTTP_OK) {
+				//A new download or the resource changed, we start from the beginning.
+				total = parseLong(connection.getHeaderField("Content-Length"));
+				append = false;
+				saveMeta(connection, total);
+			} else if (code == 416 && downloaded > 0 && downloaded == parseLong(meta.getProperty(META_LENGTH))) {
+				//Range not satisfiable because we already have the whole resource.
+				return;
+			} else {
+				if (code == 416)
+					discard();
+				throw new IOException("Unexpected HTTP response " + code + " for '" + url + "'.");
+			}
+
+			if (!append)
+				downloaded = 0;
+			transfer(connection.getInputStream(), append, downloaded, total);
+
+			if (total >= 0 && partFile.length() != total)
+				throw new IOException("Incomplete download, " + partFile.length() + " of " + total + " bytes.");
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private HttpURLConnection openConnection() throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(connectionTimeout);
+		connection.setReadTimeout(readTimeout);
+		//No transparent compression, ranges and lengths must refer to the real bytes.
+		connection.setRequestProperty("Accept-Encoding", "identity");
+		return connection;
+	}
+
+	private void transfer(InputStream in, boolean append, long downloaded, long total) throws IOException {
+		FileOutputStream out = new FileOutputStream(partFile, append);
+		byte[] buffer = BufferPool.acquire();
+		try {
+			int bytesRead;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				if (cancelled)
+					throw new IOException("Download of '" + url + "' cancelled.");
+				out.write(buffer, 0, bytesRead);
+				downloaded += bytesRead;
+				if (listener != null)
+					listener.onProgress(downloaded, total);
+			}
+			//Data must be on disk before we rely on the part file length.
+			out.getFD().sync();
+		} finally {
+			BufferPool.release(buffer);
+			in.close();
+			out.close();
+		}
+	}
+
+	private void complete() throws IOException {
+		Properties meta = loadMeta();
+		long expected = meta != null ? parseLong(meta.getProperty(META_LENGTH)) : -1;
+		if (expected >= 0 && partFile.length() != expected)
+			throw new IOException("Downloaded length " + partFile.length() + " does not match the expected " + expected + ".");
+
+		if (destination.exists() && !destination.delete())
+			throw new IOException("Destination file '" + destination + "' could not be replaced.");
+		if (!partFile.renameTo(destination))
+			throw new IOException("Downloaded file could not be renamed to '" + destination + "'.");
+		metaFile.delete();
+	}
+
+	/*
+	 * Loads the saved validators of a previous partial download of this same url.
+	 */
+	private Properties loadMeta() {
+		if (!metaFile.exists())
+			return null;
+
+		Properties meta = new Properties();
+		try {
+			FileInputStream in = new FileInputStream(metaFile);
+			try {
+				meta.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return url.equals(meta.getProperty(META_URL)) ? meta : null;
+	}
+
+	private void saveMeta(HttpURLConnection connection, long total) throws IOException {
+		storeMeta(newMeta(connection, total));
+	}
+
+	private Properties newMeta(HttpURLConnection connection, long total) {
+		Properties meta = new Properties();
+		meta.setProperty(META_URL, url);
+		meta.setProperty(META_LENGTH, String.valueOf(total));
+		String etag = connection.getHeaderField("ETag");
+		//Weak ETags can not be used with If-Range.
+		if (etag != null && !etag.startsWith("W/"))
+			meta.setProperty(META_ETAG, etag);
+		String lastModified = connection.getHeaderField("Last-Modified");
+		if (lastModified != null)
+			meta.setProperty(META_LAST_MODIFIED, lastModified);
+		return meta;
+	}
+
+	private synchronized void storeMeta(Properties meta) throws IOException {
+		FileOutputStream out = new FileOutputStream(metaFile);
+		try {
+			meta.store(out, null);
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * Downloads the resource in concurrent byte range segments. Returns false
+	 * when the server does not allow it, so a single stream must be used.
+	 */
+	private boolean downloadSegmented() throws IOException {
+		//We ask for the first byte to know if ranges are supported and the total length.
+		HttpURLConnection probe = openConnection();
+		Properties meta;
+		try {
+			probe.setRequestProperty("Range", "bytes=0-0");
+			if (probe.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+				return false;
+			long[] range = parseContentRange(probe.getHeaderField("Content-Range"));
+			if (range == null || range[2] < MIN_SEGMENT_SIZE)
+				return false;
+			meta = newMeta(probe, range[2]);
+		} finally {
+			probe.disconnect();
+		}
+		final long total = parseLong(meta.getProperty(META_LENGTH));
+
+		//We continue a previous segmented download if the resource did not change.
+		final Segment[] parts;
+		Properties previous = loadMeta();
+		if (previous != null && previous.getProperty(META_SEGMENTS) != null && partFile.length() == total
+				&& validator(previous) != null && sameResource(previous, meta)) {
+			parts = loadSegments(previous);
+		} else {
+			discard();
+			parts = createSegments(total);
+		}
+		final Properties state = meta;
+		saveSegments(state, parts, null);
+
+		RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+		ExecutorService executor = Executors.newFixedThreadPool(parts.length);
+		try {
+			file.setLength(total);
+			final FileChannel channel = file.getChannel();
+			final String validator = validator(meta);
+			final AtomicLong downloaded = new AtomicLong();
+			for (Segment part : parts) {
+				downloaded.addAndGet(part.done);
+			}
+
+			List<Future<?>> tasks = new ArrayList<Future<?>>();
+			for (final Segment part : parts) {
+				tasks.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						downloadSegment(part, channel, validator, state, parts, downloaded, total);
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<?> task : tasks) {
+					task.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Download interrupted.", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException("Error downloading '" + url + "' (" + e.getCause() + ").", e.getCause());
+			} finally {
+				//Stop the other segments if one failed. Progress is kept to resume.
+				executor.shutdownNow();
+				awaitTermination(executor);
+				try {
+					saveSegments(state, parts, channel);
+				} catch (IOException e) {
+					//An interrupted write closes the channel, the last saved progress is kept.
+					if (ToolBox.LOG_ENABLE)
+						Log.w(TAG, "Progress of '" + url + "' could not be saved (" + e.getMessage() + ").");
+				}
+			}
+
+			channel.force(false);
+		} finally {
+			executor.shutdownNow();
+			file.close();
+		}
+
+		return true;
+	}
+
+	/*
+	 * Downloads the pending bytes of a segment, retrying it on failure.
+	 */
+	private void downloadSegment(Segment part, FileChannel channel, String validator, Properties state,
+								 Segment[] parts, AtomicLong downloaded, long total) throws IOException {
+		int attempt = 0;
+		byte[] buffer = BufferPool.acquire();
+		try {
+			while (part.done < part.length()) {
+				HttpURLConnection connection = openConnection();
+				try {
+					long from = part.start + part.done;
+					connection.setRequestProperty("Range", "bytes=" + from + "-" + part.end);
+					if (validator != null)
+						connection.setRequestProperty("If-Range", validator);
+					if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+						throw new IOException("Server did not return the range, HTTP " + connection.getResponseCode() + ".");
+					//Bytes of another range would be written in the wrong place.
+					long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+					if (range == null || range[0] != from || range[1] > part.end || (range[2] != -1 && range[2] != total))
+						throw new IOException("Unexpected Content-Range '" + connection.getHeaderField("Content-Range") + "'.");
+
+					InputStream in = connection.getInputStream();
+					try {
+						long unsaved = 0;
+						int bytesRead;
+						while (part.done < part.length() && (bytesRead = in.read(buffer, 0,
+								(int) Math.min(buffer.length, part.length() - part.done))) != -1) {
+							if (cancelled || Thread.currentThread().isInterrupted())
+								throw new IOException("Download of '" + url + "' cancelled.");
+							ByteBuffer data = ByteBuffer.wrap(buffer, 0, bytesRead);
+							long position = part.start + part.done;
+							while (data.hasRemaining()) {
+								position += channel.write(data, position);
+							}
+							part.done += bytesRead;
+							unsaved += bytesRead;
+							long progress = downloaded.addAndGet(bytesRead);
+							if (listener != null)
+								listener.onProgress(progress, total);
+							if (unsaved >= SEGMENT_SAVE_INTERVAL) {
+								saveSegments(state, parts, channel);
+								unsaved = 0;
+							}
+						}
+					} finally {
+						in.close();
+					}
+					if (part.done < part.length())
+						throw new IOException("Segment " + part.start + "-" + part.end + " incomplete.");
+				} catch (IOException e) {
+					if (cancelled || Thread.currentThread().isInterrupted() || ++attempt > maxRetries)
+						throw e;
+					if (ToolBox.LOG_ENABLE)
+						Log.w(TAG, "Segment " + part.start + "-" + part.end + " of '" + url + "' interrupted (" + e.getMessage() + "), resuming [" + attempt + "/" + maxRetries + "].");
+					sleep(RETRY_DELAY * attempt);
+				} finally {
+					connection.disconnect();
+				}
+			}
+		} finally {
+			BufferPool.release(buffer);
+		}
+	}
+
+	private Segment[] createSegments(long total) {
+		int count = (int) Math.max(1, Math.min(segments, total / MIN_SEGMENT_SIZE));
+		Segment[] parts = new Segment[count];
+		long size = total / count;
+		for (int i = 0; i < count; i++) {
+			long start = i * size;
+			long end = (i == count - 1) ? total - 1 : start + size - 1;
+			parts[i] = new Segment(start, end, 0);
+		}
+		return parts;
+	}
+
+	private Segment[] loadSegments(Properties meta) {
+		int count = Integer.parseInt(meta.getProperty(META_SEGMENTS));
+		Segment[] parts = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			String[] values = meta.getProperty(META_SEGMENT + i).split(",");
+			parts[i] = new Segment(Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2]));
+		}
+		return parts;
+	}
+
+	/*
+	 * Saves the progress of the segments. The progress is read before forcing the
+	 * channel, so all the saved bytes are on disk even if other segments keep writing.
+	 */
+	private void saveSegments(Properties meta, Segment[] parts, FileChannel channel) throws IOException {
+		synchronized (meta) {
+			long[] done = new long[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				done[i] = parts[i].done;
+			}
+			if (channel != null)
+				channel.force(false);
+
+			meta.setProperty(META_SEGMENTS, String.valueOf(parts.length));
+			for (int i = 0; i < parts.length; i++) {
+				meta.setProperty(META_SEGMENT + i, parts[i].start + "," + parts[i].end + "," + done[i]);
+			}
+			storeMeta(meta);
+		}
+	}
+
+	/*
+	 * Waits for the stopped segments, at most the time of a blocked read.
+	 */
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			executor.awaitTermination(connectionTimeout + readTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * The saved ETag or, if there is none, the Last-Modified date. Null if
+	 * there is no meta or none of them was sent.
+	 */
+	private static String validator(Properties meta) {
+		return meta != null ? meta.getProperty(META_ETAG, meta.getProperty(META_LAST_MODIFIED)) : null;
+	}
+
+	private static boolean sameResource(Properties a, Properties b) {
+		return equals(a.getProperty(META_LENGTH), b.getProperty(META_LENGTH))
+				&& equals(a.getProperty(META_ETAG), b.getProperty(META_ETAG))
+				&& equals(a.getProperty(META_LAST_MODIFIED), b.getProperty(META_LAST_MODIFIED));
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/*
+	 * Parses a "bytes start-end/total" header. Total is -1 if unknown.
+	 */
+	static long[] parseContentRange(String contentRange) {
+		if (contentRange == null || !contentRange.startsWith("bytes "))
+			return null;
+		try {
+			String value = contentRange.substring(6).trim();
+			int dash = value.indexOf('-');
+			int slash = value.indexOf('/');
+			long start = Long.parseLong(value.substring(0, dash).trim());
+			long end = Long.parseLong(value.substring(dash + 1, slash).trim());
+			String totalValue = value.substring(slash + 1).trim();
+			long total = totalValue.equals("*") ? -1 : Long.parseLong(totalValue);
+			return new long[] { start, end, total };
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	static long parseLong(String value) {
+		if (value == null)
+			return -1;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static void sleep(long millis) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Download interrupted.", e);
+		}
+	}
+
+	/** A byte range of the resource, both ends included. */
+	private static class Segment {
+		final long start;
+		final long end;
+		/** Bytes of this segment already downloaded. Only its worker writes it, volatile so others never read a torn value. */
+		volatile long done;
+
+		Segment(long start, long end, long done) {
+			this.start = start;
+			this.end = end;
+			this.done = done;
+		}
+
+		long length() {
+			return end - start + 1;
+		}
+	}
+}
@@ -312,7 +312,8 @@ class CMTInfoDownloader extends AsyncTask < String, Void, String >{
 				String zippedFile = ToolBox.storage_getAppInternalStorageFilePath(context, null).getAbsolutePath() +"/"+ savedFileName;
 				String unzipTo = ToolBox.storage_getAppInternalStorageFilePath(context, null).getAbsolutePath() + "/";
 				Unzipper unzipper = new Unzipper(zippedFile, unzipTo, false);
-				List<String> files = unzipper.unzip();
+				//We only need the short numbers information file.
+				List<String> files = unzipper.unzip(Unzipper.filterByFileName(INFO_FILE_NAME));
 				
 				//Look for specific short numbers information file
 				for(String file:files){
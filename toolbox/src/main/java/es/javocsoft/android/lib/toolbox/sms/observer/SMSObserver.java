@@ -99,12 +99,18 @@ public class SMSObserver extends ContentObserver {
     public synchronized int getLastMsgId() {
     	int lastMsgId = -1;
     	
-        Cursor cur = context.getContentResolver().query(uriSMS, null, null, null, null);
-        if(cur.getCount()>0){
-	        cur.moveToFirst();
-	        lastMsgId = cur.getInt(cur.getColumnIndex("_id"));
-	        if(LOG_ENABLE)
-	        	Log.i(TAG, "Last sent message id: " + String.valueOf(lastMsgId));
+        //Only the id column, and the cursor is closed to not leak it on every change
+        Cursor cur = context.getContentResolver().query(uriSMS, new String[]{"_id"}, null, null, null);
+        if(cur==null)
+        	return lastMsgId;
+        try {
+	        if(cur.moveToFirst()){
+		        lastMsgId = cur.getInt(0);
+		        if(LOG_ENABLE)
+		        	Log.i(TAG, "Last sent message id: " + String.valueOf(lastMsgId));
+	        }
+        } finally {
+        	cur.close();
         }
         
         return lastMsgId;
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+import org.junit.Assume;
+
+/**
+ * A small timing and allocation harness for the JVM unit tests.
+ * <br><br>
+ * Each operation is run for a warm-up period, so the JIT compiles it, and
+ * then for a measured period. It reports the operations per second and,
+ * when the JVM can measure it (HotSpot), the bytes allocated per operation
+ * by the benchmark thread.
+ * <br><br>
+ * Benchmarks are skipped unless enabled, so they do not slow down the normal
+ * test runs:
+ * <pre>
+ * 		./gradlew :toolbox:testDebugUnitTest -Dtoolbox.benchmark=true [-Dtoolbox.benchmark.millis=2000]
+ * </pre>
+ * The numbers are for comparing runs on the same machine, to spot regressions,
+ * not absolute device figures.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public final class Benchmark {
+
+	/** Enables the benchmarks. */
+	public static final String ENABLED_PROPERTY = "toolbox.benchmark";
+	/** Measured time of each benchmark, in milliseconds. */
+	public static final String MILLIS_PROPERTY = "toolbox.benchmark.millis";
+	/** Warm-up time of each benchmark, in milliseconds. */
+	public static final String WARMUP_PROPERTY = "toolbox.benchmark.warmup";
+
+	private static final long DEFAULT_MILLIS = 1000;
+	private static final long DEFAULT_WARMUP = 500;
+
+	/* Keeps the results alive, so the JIT can not remove the measured work. */
+	private static volatile int sink;
+
+	/**
+	 * The benchmarked operation.
+	 */
+	public interface Operation {
+		/**
+		 * @return	The result of the operation, it is consumed so
+		 * 			the work can not be optimized away.
+		 */
+		Object run() throws Exception;
+	}
+
+
+	private Benchmark() {}
+
+
+	/**
+	 * Skips the calling test unless benchmarks are enabled.
+	 */
+	public static void assumeEnabled() {
+		Assume.assumeTrue("Benchmarks disabled, run with -D" + ENABLED_PROPERTY + "=true",
+				Boolean.getBoolean(ENABLED_PROPERTY));
+	}
+
+	/**
+	 * Runs the operation and prints its result.
+	 *
+	 * @param name	The benchmark name, printed with the result.
+	 * @param operation
+	 * @return The result.
+	 * @throws Exception	If the operation fails.
+	 */
+	public static Result run(String name, Operation operation) throws Exception {
+		long warmup = Long.getLong(WARMUP_PROPERTY, DEFAULT_WARMUP);
+		long millis = Long.getLong(MILLIS_PROPERTY, DEFAULT_MILLIS);
+
+		loop(operation, warmup * 1000000L);
+
+		long bytesBefore = allocatedBytes();
+		long start = System.nanoTime();
+		long ops = loop(operation, millis * 1000000L);
+		long elapsed = System.nanoTime() - start;
+		long bytesAfter = allocatedBytes();
+
+		Result result = new Result(name, ops, elapsed,
+				bytesBefore < 0 || bytesAfter < 0 ? -1 : (bytesAfter - bytesBefore) / ops);
+		System.out.println(result);
+		return result;
+	}
+
+	/**
+	 * The result of a benchmark.
+	 */
+	public static class Result {
+
+		private final String name;
+		private final long ops;
+		private final long elapsedNanos;
+		private final long bytesPerOp;
+
+		private Result(String name, long ops, long elapsedNanos, long bytesPerOp) {
+			this.name = name;
+			this.ops = ops;
+			this.elapsedNanos = elapsedNanos;
+			this.bytesPerOp = bytesPerOp;
+		}
+
+		/** Number of measured operations. */
+		public long getOps() {
+			return ops;
+		}
+
+		/** Operations per second. */
+		public double getOpsPerSecond() {
+			return ops * 1e9d / Math.max(1, elapsedNanos);
+		}
+
+		/** Average time of an operation, in microseconds. */
+		public double getMicrosPerOp() {
+			return elapsedNanos / 1000d / Math.max(1, ops);
+		}
+
+		/** Bytes allocated per operation, -1 if the JVM can not tell. */
+		public long getBytesPerOp() {
+			return bytesPerOp;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%-64s %14.1f ops/s %12.2f us/op %14s B/op", name,
+					getOpsPerSecond(), getMicrosPerOp(), bytesPerOp < 0 ? "n/a" : String.valueOf(bytesPerOp));
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static long loop(Operation operation, long nanos) throws Exception {
+		long ops = 0;
+		int hash = 0;
+		long end = System.nanoTime() + nanos;
+		do {
+			//Batches, so reading the clock does not dominate fast operations.
+			for (int i = 0; i < 16; i++) {
+				Object result = operation.run();
+				hash += (result == null ? 0 : System.identityHashCode(result));
+			}
+			ops += 16;
+		} while (System.nanoTime() < end);
+		sink += hash;
+		return ops;
+	}
+
+	/*
+	 * Bytes allocated by the current thread, through the HotSpot ThreadMXBean
+	 * extension. Accessed by reflection, it is not in the Android boot classpath
+	 * the tests are compiled against.
+	 */
+	private static long allocatedBytes() {
+		try {
+			Object bean = Class.forName("java.lang.management.ManagementFactory")
+					.getMethod("getThreadMXBean").invoke(null);
+			Method method = Class.forName("com.sun.management.ThreadMXBean")
+					.getMethod("getThreadAllocatedBytes", long.class);
+			return (Long) method.invoke(bean, Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
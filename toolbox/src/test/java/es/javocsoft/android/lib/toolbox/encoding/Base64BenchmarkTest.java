@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.encoding;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import es.javocsoft.android.lib.toolbox.benchmark.Benchmark;
+
+/**
+ * Compares the block based {@link Base64} codec with the byte at a time
+ * stream implementation it replaced, kept below as the reference, and with
+ * <code>java.util.Base64</code>.
+ * <br><br>
+ * Run with <code>-Dtoolbox.benchmark=true</code>, see {@link Benchmark}.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class Base64BenchmarkTest {
+
+	private static final int[] SIZES = { 64, 16 * 1024, 4 * 1024 * 1024 };
+
+	private byte[][] data;
+	private byte[][] encoded;
+
+
+	@Before
+	public void setUp() throws IOException {
+		Benchmark.assumeEnabled();
+
+		data = new byte[SIZES.length][];
+		encoded = new byte[SIZES.length][];
+		for (int s = 0; s < SIZES.length; s++) {
+			data[s] = Base64Test.random(SIZES[s], s);
+			encoded[s] = Base64.encode(data[s], true);
+			//Same output as the replaced implementation.
+			assertArrayEquals(encoded[s], streamEncode(data[s]));
+			assertArrayEquals(data[s], streamDecode(encoded[s]));
+		}
+	}
+
+	@Test
+	public void encode() throws Exception {
+		for (int s = 0; s < SIZES.length; s++) {
+			final byte[] bytes = data[s];
+			final byte[] dst = new byte[Base64.encodedLength(bytes.length, 0)];
+			final ByteBuffer directSrc = direct(bytes);
+			final ByteBuffer directDst = ByteBuffer.allocateDirect(dst.length);
+
+			Benchmark.run("Base64 stream based encode " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return streamEncode(bytes);
+				}
+			});
+			Benchmark.run("Base64.encode(byte[], true) " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return Base64.encode(bytes, true);
+				}
+			});
+			Benchmark.run("Base64.encode into array " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return Base64.encode(bytes, 0, bytes.length, dst, 0, 0);
+				}
+			});
+			Benchmark.run("Base64.encode direct ByteBuffer " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					directSrc.clear();
+					directDst.clear();
+					return Base64.encode(directSrc, directDst, 0);
+				}
+			});
+			Benchmark.run("java.util.Base64 MIME encode " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return java.util.Base64.getMimeEncoder().encode(bytes);
+				}
+			});
+		}
+	}
+
+	@Test
+	public void decode() throws Exception {
+		for (int s = 0; s < SIZES.length; s++) {
+			final byte[] bytes = encoded[s];
+			final byte[] dst = new byte[data[s].length];
+			final ByteBuffer directSrc = direct(bytes);
+			final ByteBuffer directDst = ByteBuffer.allocateDirect(dst.length);
+
+			Benchmark.run("Base64 stream based decode " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return streamDecode(bytes);
+				}
+			});
+			Benchmark.run("Base64.decode(byte[]) " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return Base64.decode(bytes);
+				}
+			});
+			Benchmark.run("Base64.decode into array " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return Base64.decode(bytes, 0, bytes.length, dst, 0, 0);
+				}
+			});
+			Benchmark.run("Base64.decode direct ByteBuffer " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					directSrc.clear();
+					directDst.clear();
+					return Base64.decode(directSrc, directDst, 0);
+				}
+			});
+			Benchmark.run("java.util.Base64 MIME decode " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return java.util.Base64.getMimeDecoder().decode(bytes);
+				}
+			});
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static String name(int size) {
+		return "(" + SIZES[size] + " bytes)";
+	}
+
+	private static ByteBuffer direct(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes).flip();
+		return buffer;
+	}
+
+	/*
+	 * The replaced encode(byte[], true): the data was copied through a byte
+	 * array stream, one byte at a time, with a line break every 76 characters.
+	 */
+	private static byte[] streamEncode(byte[] bytes) throws IOException {
+		InputStream in = new ByteArrayInputStream(bytes);
+		ByteArrayOutputStream out = new ByteArrayOutputStream((bytes.length + 2) / 3 * 4);
+		int[] inBuffer = new int[3];
+		int lineCount = 0;
+		boolean done = false;
+		while (!done && (inBuffer[0] = in.read()) != -1) {
+			inBuffer[1] = in.read();
+			inBuffer[2] = in.read();
+			out.write(Base64.base64Chars[inBuffer[0] >> 2]);
+			if (inBuffer[1] != -1) {
+				out.write(Base64.base64Chars[((inBuffer[0] << 4) & 0x30) | (inBuffer[1] >> 4)]);
+				if (inBuffer[2] != -1) {
+					out.write(Base64.base64Chars[((inBuffer[1] << 2) & 0x3c) | (inBuffer[2] >> 6)]);
+					out.write(Base64.base64Chars[inBuffer[2] & 0x3F]);
+				} else {
+					out.write(Base64.base64Chars[((inBuffer[1] << 2) & 0x3c)]);
+					out.write('=');
+					done = true;
+				}
+			} else {
+				out.write(Base64.base64Chars[((inBuffer[0] << 4) & 0x30)]);
+				out.write('=');
+				out.write('=');
+				done = true;
+			}
+			lineCount += 4;
+			if (lineCount >= 76) {
+				out.write('\n');
+				lineCount = 0;
+			}
+		}
+		if (lineCount >= 1)
+			out.write('\n');
+		return out.toByteArray();
+	}
+
+	/*
+	 * The replaced decode(byte[]): one character at a time through a byte
+	 * array stream, skipping the characters out of the alphabet.
+	 */
+	private static byte[] streamDecode(byte[] bytes) throws IOException {
+		InputStream in = new ByteArrayInputStream(bytes);
+		ByteArrayOutputStream out = new ByteArrayOutputStream((bytes.length + 3) / 4 * 3);
+		int[] inBuffer = new int[4];
+		boolean done = false;
+		while (!done && (inBuffer[0] = readBase64(in)) != -1 && (inBuffer[1] = readBase64(in)) != -1) {
+			inBuffer[2] = readBase64(in);
+			inBuffer[3] = readBase64(in);
+			out.write(inBuffer[0] << 2 | inBuffer[1] >> 4);
+			if (inBuffer[2] != -1) {
+				out.write(inBuffer[1] << 4 | inBuffer[2] >> 2);
+				if (inBuffer[3] != -1) {
+					out.write(inBuffer[2] << 6 | inBuffer[3]);
+				} else {
+					done = true;
+				}
+			} else {
+				done = true;
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static int readBase64(InputStream in) throws IOException {
+		int read;
+		do {
+			read = in.read();
+			if (read == -1)
+				return -1;
+			read = Base64.reverseBase64Chars[read];
+		} while (read <= Base64.NON_BASE_64);
+		return read;
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.encoding;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link Base64} against the JDK <code>java.util.Base64</code>
+ * encoders and decoders.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class Base64Test {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/* Lengths around the block and line sizes, and bigger than the pooled buffers. */
+	private static final int[] LENGTHS = { 0, 1, 2, 3, 4, 5, 56, 57, 58, 113, 114, 115, 1000, 4096, 200003 };
+
+
+	@Test
+	public void encodeAndDecode() throws IOException {
+		for (int length : LENGTHS) {
+			byte[] data = random(length, length);
+			String expected = java.util.Base64.getEncoder().encodeToString(data);
+
+			assertEquals(expected, new String(Base64.encode(data), ASCII));
+			assertEquals(expected, Base64.encodeToString(data));
+			assertEquals(expected.length(), Base64.encodedLength(length, 0));
+
+			byte[] encoded = expected.getBytes(ASCII);
+			assertArrayEquals(data, Base64.decode(encoded));
+			assertArrayEquals(data, Base64.decodeToBytes(expected));
+			assertEquals(length, Base64.decodedLength(encoded, 0, encoded.length, 0));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Base64.encode(new ByteArrayInputStream(data), out, false);
+			assertEquals(expected, new String(out.toByteArray(), ASCII));
+		}
+	}
+
+	@Test
+	public void lineBreaks() throws IOException {
+		for (int length : LENGTHS) {
+			byte[] data = random(length, length);
+			//The JDK MIME encoder uses CRLF and no line break after the last line.
+			String mime = java.util.Base64.getMimeEncoder().encodeToString(data);
+			String expected = length == 0 ? "" : mime.replace("\r\n", "\n") + "\n";
+
+			assertEquals(expected, new String(Base64.encode(data, true), ASCII));
+			assertEquals(expected, Base64.encodeToString(data, true));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Base64.encode(new ByteArrayInputStream(data), out, true);
+			assertEquals(expected, new String(out.toByteArray(), ASCII));
+
+			//Line breaks are skipped when decoding, in both flavours.
+			assertArrayEquals(data, Base64.decode(expected.getBytes(ASCII)));
+			assertArrayEquals(data, Base64.decode(mime.getBytes(ASCII)));
+			byte[] crlf = mime.getBytes(ASCII);
+			assertEquals(length, Base64.decodedLength(crlf, 0, crlf.length, 0));
+		}
+	}
+
+	@Test
+	public void urlSafeWithoutPadding() {
+		int flags = Base64.URL_SAFE | Base64.NO_PADDING;
+		for (int length : LENGTHS) {
+			byte[] data = random(length, length);
+			byte[] expected = java.util.Base64.getUrlEncoder().withoutPadding().encode(data);
+
+			byte[] encoded = new byte[Base64.encodedLength(length, flags)];
+			assertEquals(expected.length, encoded.length);
+			assertEquals(encoded.length, Base64.encode(data, 0, length, encoded, 0, flags));
+			assertArrayEquals(expected, encoded);
+
+			byte[] padded = java.util.Base64.getUrlEncoder().encode(data);
+			encoded = new byte[Base64.encodedLength(length, Base64.URL_SAFE)];
+			Base64.encode(data, 0, length, encoded, 0, Base64.URL_SAFE);
+			assertArrayEquals(padded, encoded);
+
+			assertArrayEquals(data, decode(expected, Base64.URL_SAFE));
+			assertArrayEquals(data, decode(padded, Base64.URL_SAFE));
+		}
+
+		//Characters of the other alphabet are not decoded.
+		byte[] standard = java.util.Base64.getEncoder().encode(new byte[] { (byte) 0xfb, (byte) 0xff });
+		assertEquals("+/8=", new String(standard, ASCII));
+		assertEquals(0, Base64.decodedLength(standard, 0, standard.length, Base64.URL_SAFE));
+		assertEquals(2, Base64.decodedLength(standard, 0, standard.length, 0));
+	}
+
+	@Test
+	public void callerBuffersWithOffsets() {
+		byte[] data = random(1000, 7);
+		String expected = java.util.Base64.getEncoder().encodeToString(Arrays.copyOfRange(data, 13, 13 + 500));
+
+		//Encodes from the middle of the source to the middle of the destination.
+		byte[] dst = new byte[expected.length() + 20];
+		Arrays.fill(dst, (byte) '#');
+		assertEquals(expected.length(), Base64.encode(data, 13, 500, dst, 9, 0));
+		assertEquals(expected, new String(dst, 9, expected.length(), ASCII));
+		assertUntouched(dst, 0, 9);
+		assertUntouched(dst, 9 + expected.length(), dst.length);
+
+		//And back.
+		byte[] decoded = new byte[500 + 20];
+		Arrays.fill(decoded, (byte) '#');
+		assertEquals(500, Base64.decode(dst, 9, expected.length(), decoded, 3, 0));
+		assertArrayEquals(Arrays.copyOfRange(data, 13, 13 + 500), Arrays.copyOfRange(decoded, 3, 3 + 500));
+		assertUntouched(decoded, 0, 3);
+		assertUntouched(decoded, 3 + 500, decoded.length);
+
+		try {
+			Base64.encode(data, 0, 3, new byte[6], 3, 0);
+			fail("Encoded into a too small array");
+		} catch (IllegalArgumentException e) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void byteBuffers() {
+		for (int length : LENGTHS) {
+			byte[] data = random(length, length);
+			byte[] expected = java.util.Base64.getEncoder().encode(data);
+
+			for (boolean direct : new boolean[] { false, true }) {
+				ByteBuffer src = buffer(data, direct);
+				ByteBuffer dst = allocate(expected.length + 8, direct);
+				dst.position(3);
+				assertEquals(expected.length, Base64.encode(src, dst, 0));
+				assertFalse(src.hasRemaining());
+				assertEquals(3 + expected.length, dst.position());
+				assertArrayEquals(expected, contents(dst, 3));
+
+				//The line breaks of the MIME data split the blocks between the pooled chunks.
+				byte[] mime = java.util.Base64.getMimeEncoder().encode(data);
+				src = buffer(mime, direct);
+				dst = allocate(length + 5, direct);
+				dst.position(5);
+				assertEquals(length, Base64.decode(src, dst, 0));
+				assertFalse(src.hasRemaining());
+				assertEquals(5 + length, dst.position());
+				assertArrayEquals(data, contents(dst, 5));
+			}
+		}
+
+		//Heap buffers that do not start at the beginning of their array.
+		byte[] data = random(300, 1);
+		ByteBuffer src = ByteBuffer.wrap(new byte[310], 10, 300).slice();
+		src.put(data).flip();
+		ByteBuffer dst = ByteBuffer.wrap(new byte[420], 20, 400).slice();
+		assertEquals(400, Base64.encode(src, dst, Base64.URL_SAFE));
+		assertArrayEquals(java.util.Base64.getUrlEncoder().encode(data), contents(dst, 0));
+	}
+
+	@Test
+	public void strictDecoding() throws IOException {
+		byte[] data = random(100, 3);
+		String encoded = java.util.Base64.getMimeEncoder().encodeToString(data);
+
+		//White space and final padding are accepted.
+		assertArrayEquals(data, strictDecode(encoded));
+		assertArrayEquals(data, strictDecode(" " + encoded + "\t\n"));
+		assertTrue(Base64.isBase64(encoded));
+
+		assertRejected(encoded.substring(0, 20) + "*" + encoded.substring(20), '*');
+		assertRejected("QUJD" + "-_", '-');
+		assertRejected("QQ==" + "QUJD", 'Q');
+		assertFalse(Base64.isBase64("QQ==QUJD"));
+
+		//The lenient decoding ignores them.
+		assertArrayEquals("ABC".getBytes(ASCII), Base64.decode("QU*JD".getBytes(ASCII)));
+		assertArrayEquals("ABC".getBytes(ASCII), Base64.decodeToBytes(new ByteArrayInputStream("Q!U?JD".getBytes(ASCII))));
+	}
+
+
+	//AUXILIAR
+
+	private static byte[] decode(byte[] encoded, int flags) {
+		byte[] decoded = new byte[Base64.decodedLength(encoded, 0, encoded.length, flags)];
+		assertEquals(decoded.length, Base64.decode(encoded, 0, encoded.length, decoded, 0, flags));
+		return decoded;
+	}
+
+	private static byte[] strictDecode(String encoded) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Base64.decode(new ByteArrayInputStream(encoded.getBytes(ASCII)), out, true);
+
+		//The same through the stream.
+		InputStream in = new Base64InputStream(new ByteArrayInputStream(encoded.getBytes(ASCII)), 0, true);
+		try {
+			ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+			int read;
+			while ((read = in.read()) != -1) {
+				streamed.write(read);
+			}
+			assertArrayEquals(out.toByteArray(), streamed.toByteArray());
+		} finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+
+	private static void assertRejected(String encoded, char c) throws IOException {
+		try {
+			Base64.decode(new ByteArrayInputStream(encoded.getBytes(ASCII)), new ByteArrayOutputStream(), true);
+			fail("Accepted " + encoded);
+		} catch (Base64DecodingException e) {
+			assertEquals(c, e.getChar());
+		}
+	}
+
+	private static void assertUntouched(byte[] array, int from, int to) {
+		for (int i = from; i < to; i++) {
+			assertEquals("Written at " + i, '#', array[i]);
+		}
+	}
+
+	private static ByteBuffer allocate(int capacity, boolean direct) {
+		return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+
+	private static ByteBuffer buffer(byte[] data, boolean direct) {
+		ByteBuffer buffer = allocate(data.length, direct);
+		buffer.put(data).flip();
+		return buffer;
+	}
+
+	/* The bytes written to the buffer, from the given position to the current one. */
+	private static byte[] contents(ByteBuffer buffer, int from) {
+		byte[] bytes = new byte[buffer.position() - from];
+		ByteBuffer view = buffer.duplicate();
+		view.position(from);
+		view.get(bytes);
+		return bytes;
+	}
+
+	static byte[] random(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks which files {@link CachePruner} deletes, by size budget and by
+ * age, and that links are not followed.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class CachePrunerTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File cache;
+	private File journal;
+	private File[] entries;
+
+
+	@Before
+	public void setUp() throws IOException {
+		cache = temp.newFolder("cache");
+		File images = new File(cache, "images");
+		assertTrue(images.mkdirs());
+		journal = write(new File(images, "journal"), 100, 0);
+		//Modified one minute apart, the first one the oldest.
+		entries = new File[4];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = write(new File(i % 2 == 0 ? cache : images, "entry" + i), 1000, i + 1);
+		}
+	}
+
+	@Test
+	public void pruneToBudget() {
+		CachePruner pruner = new CachePruner(cache);
+		pruner.setMaxBytes(2500);
+		CachePruner.Result result = pruner.prune();
+
+		assertEquals(4, result.getFilesScanned());
+		assertEquals(2, result.getFilesDeleted());
+		assertEquals(2000, result.getBytesFreed());
+		assertFalse(entries[0].exists());
+		assertFalse(entries[1].exists());
+		assertTrue(entries[2].exists());
+		assertTrue(entries[3].exists());
+		//The cache in use would not recover from a missing journal.
+		assertTrue(journal.exists());
+	}
+
+	@Test
+	public void clearAll() {
+		CachePruner pruner = new CachePruner(cache);
+		pruner.setMaxAge(0);
+		CachePruner.Result result = pruner.prune();
+
+		assertEquals(5, result.getFilesDeleted());
+		assertFalse(journal.exists());
+		for (File entry : entries) {
+			assertFalse(entry.exists());
+		}
+		assertTrue(new File(cache, "images").isDirectory());
+	}
+
+	@Test
+	public void linksNotFollowed() throws IOException {
+		File outside = temp.newFolder("outside");
+		File kept = write(new File(outside, "kept"), 1000, 0);
+		Files.createSymbolicLink(new File(cache, "link").toPath(), outside.toPath());
+
+		CachePruner pruner = new CachePruner(cache);
+		pruner.setMaxAge(0);
+		assertEquals(5, pruner.prune().getFilesDeleted());
+		assertTrue(kept.exists());
+	}
+
+
+	//AUXILIAR
+
+	private static File write(File file, int length, int minutes) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[length]);
+		} finally {
+			out.close();
+		}
+		assertTrue(file.setLastModified(System.currentTimeMillis() - (10 - minutes) * 60 * 1000L));
+		return file;
+	}
+}
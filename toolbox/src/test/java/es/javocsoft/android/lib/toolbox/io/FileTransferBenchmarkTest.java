@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import es.javocsoft.android.lib.toolbox.benchmark.Benchmark;
+
+/**
+ * Compares the {@link FileTransfer} copies with the 1 KB buffer loop the
+ * library used before, for a small and a big file.
+ * <br><br>
+ * Run with <code>-Dtoolbox.benchmark=true</code>, see {@link Benchmark}.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FileTransferBenchmarkTest {
+
+	private static final int[] SIZES = { 1024 * 1024, 32 * 1024 * 1024 };
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File[] sources;
+	private File target;
+
+
+	@Before
+	public void setUp() throws IOException {
+		Benchmark.assumeEnabled();
+
+		sources = new File[SIZES.length];
+		for (int s = 0; s < SIZES.length; s++) {
+			sources[s] = new File(temp.getRoot(), "source" + s + ".bin");
+			OutputStream out = new FileOutputStream(sources[s]);
+			try {
+				out.write(ZipperTest.random(SIZES[s], s));
+			} finally {
+				out.close();
+			}
+		}
+		target = new File(temp.getRoot(), "target.bin");
+	}
+
+	@Test
+	public void copy() throws Exception {
+		for (int s = 0; s < SIZES.length; s++) {
+			final File source = sources[s];
+			String size = " (" + (SIZES[s] / (1024 * 1024)) + " MB)";
+
+			Benchmark.run("1 KB buffer loop" + size, new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return loopCopy(source, target);
+				}
+			});
+			assertArrayEquals(FileTransferTest.read(source), FileTransferTest.read(target));
+
+			Benchmark.run("FileTransfer.copy(File, File)" + size, new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return FileTransfer.copy(source, target, null);
+				}
+			});
+			assertArrayEquals(FileTransferTest.read(source), FileTransferTest.read(target));
+
+			Benchmark.run("FileTransfer.copy(FileInputStream, File)" + size, new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					InputStream in = new FileInputStream(source);
+					try {
+						return FileTransfer.copy(in, target, -1, null);
+					} finally {
+						in.close();
+					}
+				}
+			});
+			assertArrayEquals(FileTransferTest.read(source), FileTransferTest.read(target));
+
+			Benchmark.run("FileTransfer.copy(InputStream, File)" + size, new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					//Not a FileInputStream, copied through the direct buffer.
+					InputStream in = new FilterInputStream(new FileInputStream(source)) {};
+					try {
+						return FileTransfer.copy(in, target, -1, null);
+					} finally {
+						in.close();
+					}
+				}
+			});
+			assertArrayEquals(FileTransferTest.read(source), FileTransferTest.read(target));
+
+			Benchmark.run("FileTransfer.copy(InputStream, OutputStream)" + size, new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					InputStream in = new FileInputStream(source);
+					OutputStream out = new FileOutputStream(target);
+					try {
+						return FileTransfer.copy(in, out, -1, null);
+					} finally {
+						in.close();
+						out.close();
+					}
+				}
+			});
+			assertArrayEquals(FileTransferTest.read(source), FileTransferTest.read(target));
+		}
+	}
+
+
+	//AUXILIAR
+
+	/*
+	 * The copy used before FileTransfer, through a 1 KB heap buffer.
+	 */
+	private static long loopCopy(File from, File to) throws IOException {
+		InputStream in = new FileInputStream(from);
+		OutputStream out = new FileOutputStream(to);
+		try {
+			byte[] buffer = new byte[1024];
+			long copied = 0;
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+				copied += read;
+			}
+			return copied;
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+}
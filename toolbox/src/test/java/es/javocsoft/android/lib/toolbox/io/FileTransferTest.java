@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the {@link FileTransfer} copies and moves, including the buffered
+ * copy used when the kernel transfer stops early.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FileTransferTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+
+	@Test
+	public void copyFile() throws IOException {
+		byte[] data = ZipperTest.random(3 * 1024 * 1024 + 17, 1);
+		File from = write("from.bin", data);
+		File to = temp.newFile("to.bin");
+
+		assertEquals(data.length, FileTransfer.copy(from, to, null));
+		assertArrayEquals(data, read(to));
+	}
+
+	@Test
+	public void copyStreamToFile() throws IOException {
+		byte[] data = ZipperTest.random(600 * 1024, 2);
+		File from = write("from.bin", data);
+		File to = temp.newFile("to.bin");
+
+		InputStream in = new FileInputStream(from);
+		try {
+			//Starts from the current position of the stream.
+			assertEquals(100, in.skip(100));
+			assertEquals(data.length - 100, FileTransfer.copy(in, to, -1, null));
+		} finally {
+			in.close();
+		}
+		assertArrayEquals(Arrays.copyOfRange(data, 100, data.length), read(to));
+
+		assertEquals(data.length, FileTransfer.copy(new ByteArrayInputStream(data), to, data.length, null));
+		assertArrayEquals(data, read(to));
+	}
+
+	@Test
+	public void copyStreamToFileWhenTheTransferStopsEarly() throws IOException {
+		byte[] data = ZipperTest.random(500 * 1024, 3);
+		File from = write("from.bin", data);
+		File to = temp.newFile("to.bin");
+
+		final FileInputStream file = new FileInputStream(from);
+		final FileChannel stuttering = new StutteringChannel(file.getChannel());
+		InputStream in = new FileInputStream(from) {
+			@Override
+			public FileChannel getChannel() {
+				return stuttering;
+			}
+		};
+		try {
+			assertEquals(data.length, FileTransfer.copy(in, to, -1, null));
+		} finally {
+			in.close();
+			file.close();
+		}
+		assertArrayEquals(data, read(to));
+	}
+
+	@Test
+	public void copyStreamToStream() throws IOException {
+		byte[] data = ZipperTest.random(300 * 1024, 4);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(data.length, FileTransfer.copy(new ByteArrayInputStream(data), out, data.length, null));
+		assertArrayEquals(data, out.toByteArray());
+	}
+
+	@Test
+	public void move() throws IOException {
+		byte[] data = ZipperTest.random(1024, 5);
+		File from = write("from.bin", data);
+		File to = write("to.bin", new byte[10]);
+
+		FileTransfer.move(from, to, true, null);
+		assertFalse(from.exists());
+		assertArrayEquals(data, read(to));
+	}
+
+	@Test(expected = IOException.class)
+	public void moveWithoutOverwriting() throws IOException {
+		FileTransfer.move(write("from.bin", new byte[1]), write("to.bin", new byte[1]), false, null);
+	}
+
+
+	//AUXILIAR
+
+	private File write(String name, byte[] data) throws IOException {
+		File file = new File(temp.getRoot(), name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	static byte[] read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return IOUtils.readFully(in, -1);
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * A file channel that reads 1000 bytes and then has no data for two reads,
+	 * like a pipe. FileChannel.transferFrom stops at a read without data, so the
+	 * second transfer copies nothing and the buffered copy goes on.
+	 */
+	private static class StutteringChannel extends FileChannel {
+
+		private final FileChannel channel;
+		private int reads;
+
+		StutteringChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			reads++;
+			if (reads == 2 || reads == 3)
+				return 0;
+			if (reads == 1 && dst.remaining() > 1000) {
+				ByteBuffer limited = dst.duplicate();
+				limited.limit(limited.position() + 1000);
+				int read = channel.read(limited);
+				dst.position(limited.position());
+				return read;
+			}
+			return channel.read(dst);
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long position() throws IOException {
+			return channel.position();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			channel.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+		}
+	}
+}
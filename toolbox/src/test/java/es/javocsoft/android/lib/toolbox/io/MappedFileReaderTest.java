@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link MappedFileReader#mapAsCharSequence(File, String)} reads
+ * the same text as decoding the file with its charset.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class MappedFileReaderTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+
+	@Test
+	public void singleByteCharsets() throws IOException {
+		//Every byte value, the ones over 0x7F are not valid US-ASCII.
+		byte[] data = new byte[512];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		File file = write(data);
+
+		for (String encoding : new String[] { "US-ASCII", "ISO-8859-1", "UTF-8" }) {
+			String expected = Charset.forName(encoding).decode(ByteBuffer.wrap(data)).toString();
+			CharSequence text = MappedFileReader.mapAsCharSequence(file, encoding);
+
+			assertEquals(encoding, expected, text.toString());
+			assertEquals(encoding, expected.length(), text.length());
+			for (int i = 0; i < text.length(); i++) {
+				assertEquals(encoding + " " + i, expected.charAt(i), text.charAt(i));
+			}
+			assertEquals(encoding, expected.substring(100, 300), text.subSequence(100, 300).toString());
+		}
+	}
+
+	@Test
+	public void emptyFile() throws IOException {
+		assertEquals("", MappedFileReader.mapAsCharSequence(write(new byte[0]), "US-ASCII").toString());
+	}
+
+
+	//AUXILIAR
+
+	private File write(byte[] data) throws IOException {
+		File file = temp.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
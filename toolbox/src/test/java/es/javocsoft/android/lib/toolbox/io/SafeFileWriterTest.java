@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import es.javocsoft.android.lib.toolbox.io.exception.BatchCommitException;
+
+/**
+ * Checks the {@link SafeFileWriter} writes and batches, and that no
+ * temporal file is left behind.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class SafeFileWriterTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+
+	@Test
+	public void write() throws IOException {
+		File file = new File(temp.getRoot(), "file.bin");
+		SafeFileWriter.write(file, new byte[] { 1, 2, 3 });
+		SafeFileWriter.write(file, new byte[] { 4 });
+
+		assertArrayEquals(new byte[] { 4 }, FileTransferTest.read(file));
+		assertEquals(Arrays.asList("file.bin"), Arrays.asList(temp.getRoot().list()));
+	}
+
+	@Test
+	public void commit() throws IOException {
+		File folder = temp.newFolder("other");
+		SafeFileWriter.Batch batch = SafeFileWriter.newBatch();
+		File[] files = new File[10];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = new File(i % 2 == 0 ? temp.getRoot() : folder, "file" + i + ".bin");
+			batch.write(files[i], ZipperTest.random(1000 + i, i));
+			assertFalse(files[i].exists());
+		}
+		batch.commit();
+
+		for (int i = 0; i < files.length; i++) {
+			assertArrayEquals(ZipperTest.random(1000 + i, i), FileTransferTest.read(files[i]));
+		}
+		assertEquals(5, folder.list().length);
+		assertEquals(6, temp.getRoot().list().length);
+	}
+
+	@Test
+	public void commitStopsAtTheFailedFile() throws IOException {
+		File first = new File(temp.getRoot(), "first.bin");
+		//A folder with content can not be replaced by a file.
+		File failed = temp.newFolder("failed");
+		new File(failed, "content").createNewFile();
+		File last = new File(temp.getRoot(), "last.bin");
+
+		SafeFileWriter.Batch batch = SafeFileWriter.newBatch();
+		batch.write(first, new byte[] { 1 });
+		batch.write(failed, new byte[] { 2 });
+		batch.write(last, new byte[] { 3 });
+		try {
+			batch.commit();
+			fail();
+		} catch (BatchCommitException e) {
+			assertEquals(Arrays.asList(first), e.getReplacedFiles());
+			assertEquals(failed, e.getFailedFile());
+		}
+
+		assertArrayEquals(new byte[] { 1 }, FileTransferTest.read(first));
+		assertFalse(last.exists());
+		assertEquals(2, temp.getRoot().list().length);
+	}
+
+	@Test
+	public void rollback() throws IOException {
+		File file = new File(temp.getRoot(), "file.bin");
+		SafeFileWriter.Batch batch = SafeFileWriter.newBatch();
+		batch.write(file, new byte[] { 1 });
+		batch.rollback();
+		batch.commit();
+
+		assertFalse(file.exists());
+		assertEquals(0, temp.getRoot().list().length);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import es.javocsoft.android.lib.toolbox.benchmark.Benchmark;
+
+/**
+ * Compares the sequential {@link Unzipper#unzip()} with the parallel
+ * extraction, over a ZIP file of compressible text files and some not
+ * compressible media files.
+ * <br><br>
+ * Run with <code>-Dtoolbox.benchmark=true</code>, see {@link Benchmark}.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class UnzipperBenchmarkTest {
+
+	private static final int TEXT_FILES = 200;
+	private static final int TEXT_SIZE = 32 * 1024;
+	private static final int MEDIA_FILES = 8;
+	private static final int MEDIA_SIZE = 512 * 1024;
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File zip;
+	private String location;
+
+
+	@Before
+	public void setUp() throws IOException {
+		Benchmark.assumeEnabled();
+
+		zip = new File(temp.getRoot(), "bench.zip");
+		location = new File(temp.getRoot(), "out").getPath() + File.separator;
+
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			out.putNextEntry(new ZipEntry("text/"));
+			out.putNextEntry(new ZipEntry("media/"));
+			for (int i = 0; i < TEXT_FILES; i++) {
+				out.putNextEntry(new ZipEntry("text/file" + i + ".txt"));
+				out.write(ZipperTest.text(TEXT_SIZE, i));
+			}
+			for (int i = 0; i < MEDIA_FILES; i++) {
+				out.putNextEntry(new ZipEntry("media/photo" + i + ".jpg"));
+				out.write(ZipperTest.random(MEDIA_SIZE, i));
+			}
+			out.closeEntry();
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void unzip() throws Exception {
+		String data = "(" + TEXT_FILES + " x " + (TEXT_SIZE / 1024) + "KB text, "
+				+ MEDIA_FILES + " x " + (MEDIA_SIZE / 1024) + "KB media)";
+		final Unzipper unzipper = new Unzipper(zip.getPath(), location, true);
+
+		Benchmark.run("Unzipper.unzip " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return assertFiles(unzipper.unzip());
+			}
+		});
+
+		Benchmark.run("Unzipper.unzipParallel 1 thread " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return assertFiles(unzipper.unzipParallel(1, null));
+			}
+		});
+
+		Benchmark.run("Unzipper.unzipParallel " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return assertFiles(unzipper.unzipParallel(null));
+			}
+		});
+
+		Benchmark.run("Unzipper.unzipParallel 4 threads " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return assertFiles(unzipper.unzipParallel(4, null));
+			}
+		});
+	}
+
+
+	//AUXILIAR
+
+	private static List<String> assertFiles(List<String> files) {
+		assertEquals(TEXT_FILES + MEDIA_FILES, files.size());
+		return files;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the {@link Unzipper} extractions, and that entries with names
+ * outside of the extraction folder (zip slip) are never written.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class UnzipperTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File zip;
+	private File out;
+	private String location;
+
+
+	@Before
+	public void setUp() throws IOException {
+		zip = new File(temp.getRoot(), "files.zip");
+		out = new File(temp.getRoot(), "out");
+		location = out.getPath() + File.separator;
+	}
+
+	@Test
+	public void unzip() throws IOException {
+		zip("docs/", "docs/a.txt", "b.txt");
+
+		assertEquals(Arrays.asList(location + "docs/a.txt", location + "b.txt"),
+				new Unzipper(zip.getPath(), location, true).unzip());
+		assertExtracted();
+	}
+
+	@Test
+	public void unzipFiltered() throws IOException {
+		zip("docs/", "docs/a.txt", "b.txt");
+
+		assertEquals(Arrays.asList(location + "docs/a.txt"),
+				new Unzipper(zip.getPath(), location, true).unzip(Unzipper.filterByFileName("a.txt")));
+		assertFalse(new File(out, "b.txt").exists());
+	}
+
+	@Test
+	public void unzipParallel() throws IOException {
+		zip("docs/", "docs/a.txt", "b.txt");
+
+		assertEquals(Arrays.asList(location + "docs/a.txt", location + "b.txt"),
+				new Unzipper(zip.getPath(), location, true).unzipParallel(2, null));
+		assertExtracted();
+	}
+
+	@Test
+	public void zipSlip() throws IOException {
+		zip("../evil.txt", "docs/../../evil.txt", "../evil/", "b.txt");
+		File evil = new File(temp.getRoot(), "evil.txt");
+
+		new Unzipper(zip.getPath(), location, true).unzip();
+		assertFalse(evil.exists());
+
+		List<String> res = new Unzipper(zip.getPath(), location, true).unzip(new Unzipper.EntryFilter() {
+			@Override
+			public boolean accept(ZipEntry entry) {
+				return true;
+			}
+		});
+		assertTrue(res.isEmpty());
+		assertFalse(evil.exists());
+
+		res = new Unzipper(zip.getPath(), location, true).unzipParallel(2, null);
+		assertEquals(Arrays.asList(location + "b.txt"), res);
+		assertFalse(evil.exists());
+		assertFalse(new File(temp.getRoot(), "evil").exists());
+	}
+
+
+	//AUXILIAR
+
+	private void assertExtracted() throws IOException {
+		assertArrayEquals(content("docs/a.txt"), FileTransferTest.read(new File(out, "docs/a.txt")));
+		assertArrayEquals(content("b.txt"), FileTransferTest.read(new File(out, "b.txt")));
+	}
+
+	/* Entries ending with "/" are folders. */
+	private void zip(String... names) throws IOException {
+		ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			for (String name : names) {
+				zout.putNextEntry(new ZipEntry(name));
+				if (!name.endsWith("/"))
+					zout.write(content(name));
+				zout.closeEntry();
+			}
+		} finally {
+			zout.close();
+		}
+	}
+
+	private static byte[] content(String name) {
+		return ZipperTest.text(1000 + name.length(), name.hashCode());
+	}
+}
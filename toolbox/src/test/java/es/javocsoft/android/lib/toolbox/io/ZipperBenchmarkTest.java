@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import es.javocsoft.android.lib.toolbox.benchmark.Benchmark;
+
+/**
+ * Compares {@link Zipper} with a plain single threaded {@link ZipOutputStream},
+ * the way folders were zipped before, over a folder of compressible text
+ * files and some not compressible media files.
+ * <br><br>
+ * Run with <code>-Dtoolbox.benchmark=true</code>, see {@link Benchmark}.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class ZipperBenchmarkTest {
+
+	private static final int TEXT_FILES = 200;
+	private static final int TEXT_SIZE = 32 * 1024;
+	private static final int MEDIA_FILES = 8;
+	private static final int MEDIA_SIZE = 512 * 1024;
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File root;
+	private File zip;
+	/* Files of the data set, in the order they are zipped. */
+	private List<File> sources;
+
+
+	@Before
+	public void setUp() throws IOException {
+		Benchmark.assumeEnabled();
+
+		root = temp.newFolder("data");
+		zip = new File(temp.getRoot(), "bench.zip");
+		sources = new ArrayList<File>();
+		for (int i = 0; i < TEXT_FILES; i++) {
+			sources.add(write("text/file" + i + ".txt", ZipperTest.text(TEXT_SIZE, i)));
+		}
+		for (int i = 0; i < MEDIA_FILES; i++) {
+			sources.add(write("media/photo" + i + ".jpg", ZipperTest.random(MEDIA_SIZE, i)));
+		}
+	}
+
+	@Test
+	public void zipFolder() throws Exception {
+		String data = "(" + TEXT_FILES + " x " + (TEXT_SIZE / 1024) + "KB text, "
+				+ MEDIA_FILES + " x " + (MEDIA_SIZE / 1024) + "KB media)";
+
+		Benchmark.run("ZipOutputStream " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				zipOutputStream(sources, zip);
+				return zip;
+			}
+		});
+		assertEntries(zip);
+
+		Benchmark.run("Zipper.zip " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return zipper(false).zip();
+			}
+		});
+		assertEntries(zip);
+
+		Benchmark.run("Zipper.zip stored jpg " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return zipper(true).zip();
+			}
+		});
+		assertEntries(zip);
+
+		Benchmark.run("Zipper.zipParallel " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return zipper(false).zipParallel(null);
+			}
+		});
+		assertEntries(zip);
+
+		Benchmark.run("Zipper.zipParallel stored jpg " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return zipper(true).zipParallel(null);
+			}
+		});
+		assertEntries(zip);
+
+		Benchmark.run("Zipper.zipParallel 1 thread " + data, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return zipper(false).zipParallel(1, null);
+			}
+		});
+		assertEntries(zip);
+	}
+
+
+	//AUXILIAR
+
+	private Zipper zipper(boolean storeMedia) {
+		Zipper zipper = new Zipper(zip.getPath());
+		if (storeMedia)
+			zipper.setStoredExtensions("jpg");
+		zipper.addFolder(root, "");
+		return zipper;
+	}
+
+	/*
+	 * The baseline, one deflated entry after the other through a single stream.
+	 */
+	private void zipOutputStream(List<File> files, File target) throws IOException {
+		byte[] buffer = new byte[8192];
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target));
+		try {
+			for (File file : files) {
+				String name = file.getPath().substring(root.getPath().length() + 1).replace(File.separatorChar, '/');
+				out.putNextEntry(new ZipEntry(name));
+				InputStream in = new FileInputStream(file);
+				try {
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						out.write(buffer, 0, read);
+					}
+				} finally {
+					in.close();
+				}
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/* Every source file is in the ZIP file, folder entries are not counted. */
+	private void assertEntries(File target) throws IOException {
+		ZipFile zipFile = new ZipFile(target);
+		try {
+			int count = 0;
+			for (ZipEntry entry : Collections.list(zipFile.entries())) {
+				if (!entry.isDirectory())
+					count++;
+			}
+			assertEquals(sources.size(), count);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private File write(String name, byte[] content) throws IOException {
+		File file = new File(root, name);
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
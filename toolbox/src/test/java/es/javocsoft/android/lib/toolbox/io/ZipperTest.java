@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the ZIP files created by {@link Zipper} are read back
+ * by {@link ZipFile} with the same entries and content.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class ZipperTest {
+
+	/** Not ASCII entry name, stored UTF-8 encoded. */
+	private static final String UNICODE_NAME = "año/ñandú € 日本.txt";
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/* The expected content of each file entry, by entry name. */
+	private Map<String, byte[]> files;
+	/* The expected folder entries. */
+	private Set<String> folders;
+	private File root;
+	/* Added with the not ASCII entry name, file names on disk depend on the platform encoding. */
+	private File unicodeFile;
+
+
+	@Before
+	public void setUp() throws IOException {
+		files = new LinkedHashMap<String, byte[]>();
+		folders = new HashSet<String>();
+		root = temp.newFolder("data");
+
+		//Base path "" adds the folder content to the root of the ZIP file.
+		addFile("readme.txt", text(10 * 1024, 1));
+		addFile("empty.txt", new byte[0]);
+		addFile("docs/report.txt", text(200 * 1024, 2));
+		addFile("docs/nested/deep.log", text(5 * 1024, 3));
+		//Bigger than the in-memory limit, deflated through a temporal file.
+		addFile("docs/big.log", text(3 * 1024 * 1024, 4));
+		addFile("media/photo.jpg", random(300 * 1024, 5));
+		assertTrue(new File(root, "empty-folder").mkdirs());
+		folders.add("docs/");
+		folders.add("docs/nested/");
+		folders.add("media/");
+		folders.add("empty-folder/");
+
+		byte[] content = text(1024, 6);
+		unicodeFile = temp.newFile("unicode.txt");
+		write(unicodeFile, content);
+		files.put(UNICODE_NAME, content);
+	}
+
+	@Test
+	public void zipParallelDeflated() throws IOException {
+		File zip = new File(temp.getRoot(), "parallel.zip");
+		Zipper zipper = new Zipper(zip.getPath());
+		addAll(zipper);
+		final List<String> notified = new ArrayList<String>();
+		List<String> entries = zipper.zipParallel(4, new Zipper.OnEntryZippedListener() {
+			@Override
+			public void onEntryZipped(String entryName, int zipped, int total) {
+				notified.add(entryName);
+			}
+		});
+
+		assertEquals(entries, notified);
+		assertZip(zip, entries, ZipEntry.DEFLATED);
+	}
+
+	@Test
+	public void zipParallelStoreOnly() throws IOException {
+		File zip = new File(temp.getRoot(), "stored.zip");
+		Zipper zipper = new Zipper(zip.getPath());
+		zipper.setStoreOnly(true);
+		addAll(zipper);
+		List<String> entries = zipper.zipParallel(null);
+
+		assertZip(zip, entries, ZipEntry.STORED);
+	}
+
+	@Test
+	public void zipParallelStoredExtensions() throws IOException {
+		File zip = new File(temp.getRoot(), "mixed.zip");
+		Zipper zipper = new Zipper(zip.getPath());
+		zipper.setCompressionLevel(9);
+		zipper.setStoredExtensions("JPG", "png");
+		addAll(zipper);
+		List<String> entries = zipper.zipParallel(2, null);
+
+		assertZip(zip, entries, -1);
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertEquals(ZipEntry.STORED, zipFile.getEntry("media/photo.jpg").getMethod());
+			assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("docs/report.txt").getMethod());
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void zipParallelSingleThreadWithBasePath() throws IOException {
+		File zip = new File(temp.getRoot(), "based.zip");
+		Zipper zipper = new Zipper(zip.getPath(), 1024);
+		zipper.addFolder(new File(root, "docs"), null);
+		zipper.addFile(new File(root, "readme.txt"), "info/readme.txt");
+		List<String> entries = zipper.zipParallel(1, null);
+
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertEquals(entries.size(), zipFile.size());
+			assertTrue(zipFile.getEntry("docs/").isDirectory());
+			assertArrayEquals(files.get("docs/nested/deep.log"), read(zipFile, "docs/nested/deep.log"));
+			assertArrayEquals(files.get("docs/big.log"), read(zipFile, "docs/big.log"));
+			assertArrayEquals(files.get("readme.txt"), read(zipFile, "info/readme.txt"));
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void zipSequential() throws IOException {
+		File zip = new File(temp.getRoot(), "sequential.zip");
+		Zipper zipper = new Zipper(zip.getPath());
+		zipper.setStoredExtensions("jpg");
+		addAll(zipper);
+		List<String> entries = zipper.zip();
+
+		assertZip(zip, entries, -1);
+	}
+
+	@Test
+	public void zipNothing() throws IOException {
+		File zip = new File(temp.getRoot(), "nothing.zip");
+		List<String> entries = new Zipper(zip.getPath()).zipParallel(null);
+
+		assertTrue(entries.isEmpty());
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertEquals(0, zipFile.size());
+		} finally {
+			zipFile.close();
+		}
+	}
+
+
+	//AUXILIAR
+
+	/*
+	 * Checks all the entries, their order and content. Method -1 does not check it.
+	 */
+	private void assertZip(File zip, List<String> entries, int method) throws IOException {
+		assertEquals(files.size() + folders.size(), entries.size());
+
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			//Central directory in the order the entries were added.
+			List<String> names = new ArrayList<String>();
+			Enumeration<? extends ZipEntry> e = zipFile.entries();
+			while (e.hasMoreElements()) {
+				names.add(e.nextElement().getName());
+			}
+			assertEquals(entries, names);
+
+			for (String folder : folders) {
+				ZipEntry entry = zipFile.getEntry(folder);
+				assertNotNull(folder, entry);
+				assertTrue(folder, entry.isDirectory());
+				assertEquals(0, entry.getSize());
+			}
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				ZipEntry entry = zipFile.getEntry(file.getKey());
+				assertNotNull(file.getKey(), entry);
+				assertFalse(entry.isDirectory());
+				assertEquals(file.getKey(), file.getValue().length, entry.getSize());
+				if (method != -1)
+					assertEquals(file.getKey(), method, entry.getMethod());
+				assertArrayEquals(file.getKey(), file.getValue(), read(zipFile, file.getKey()));
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private void addAll(Zipper zipper) {
+		zipper.addFolder(root, "");
+		zipper.addFile(unicodeFile, UNICODE_NAME);
+	}
+
+	private void addFile(String name, byte[] content) throws IOException {
+		File file = new File(root, name);
+		file.getParentFile().mkdirs();
+		write(file, content);
+		files.put(name, content);
+	}
+
+	private static void write(File file, byte[] content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] read(ZipFile zipFile, String name) throws IOException {
+		InputStream in = zipFile.getInputStream(zipFile.getEntry(name));
+		try {
+			return IOUtils.readFully(in, -1);
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Compressible text, made of repeated words. */
+	static byte[] text(int length, long seed) {
+		String[] words = { "zip ", "entry ", "central ", "directory ", "deflate ", "android ", "toolbox ", "\n" };
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(length + 16);
+		while (sb.length() < length) {
+			sb.append(words[random.nextInt(words.length)]);
+		}
+		return Arrays.copyOf(sb.toString().getBytes(), length);
+	}
+
+	/** Not compressible data, like media files. */
+	static byte[] random(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.Expose;
+import com.google.gson.reflect.TypeToken;
+
+import es.javocsoft.android.lib.toolbox.ToolBox;
+import es.javocsoft.android.lib.toolbox.benchmark.Benchmark;
+
+/**
+ * Benchmarks of the json package: {@link JsonDataReader} construction and
+ * lookups, the three {@link GsonProcessor} modes and the conversion of JSON
+ * arrays to lists, over small, medium and large payloads.
+ * <br><br>
+ * Run with <code>-Dtoolbox.benchmark=true</code>, see {@link Benchmark}.
+ *
+ * @author JavocSoft 2018
+ * @since  2018
+ */
+public class JsonBenchmarkTest {
+
+	/** Number of items of each payload size. */
+	private static final int[] SIZES = { 10, 1000, 20000 };
+	private static final String[] SIZE_NAMES = { "small", "medium", "large" };
+
+	private static final Type ITEM_LIST = new TypeToken<List<Item>>() {}.getType();
+
+	/** A representative bean, with transient and not exposed fields. */
+	static class Item {
+		@Expose int id;
+		@Expose String name;
+		@Expose double price;
+		boolean active;
+		List<String> tags;
+		transient String cache;
+	}
+
+	/* By size: the full document, {"data":{"total":n,"items":[...]}}, and the items array. */
+	private String[] documents;
+	private String[] arrays;
+
+
+	@Before
+	public void setUp() {
+		Benchmark.assumeEnabled();
+
+		Gson gson = new Gson();
+		documents = new String[SIZES.length];
+		arrays = new String[SIZES.length];
+		for (int s = 0; s < SIZES.length; s++) {
+			List<Item> items = items(SIZES[s]);
+			arrays[s] = gson.toJson(items);
+			documents[s] = "{\"data\":{\"total\":" + items.size() + ",\"items\":" + arrays[s] + "}}";
+		}
+	}
+
+	@Test
+	public void jsonDataReader() throws Exception {
+		for (int s = 0; s < SIZES.length; s++) {
+			final String document = documents[s];
+			final String lastPath = "data.items[" + (SIZES[s] - 1) + "].name";
+
+			Benchmark.run("JsonDataReader.new " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return new JsonDataReader(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP, document);
+				}
+			});
+			Benchmark.run("JsonDataReader.new streaming 1 path " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return new JsonDataReader(new StringReader(document), "data.total");
+				}
+			});
+
+			final JsonDataReader reader = new JsonDataReader(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP, document);
+			assertEquals(SIZES[s], reader.getJsonElement("total").getAsInt());
+			assertTrue(reader.has(lastPath));
+			Benchmark.run("JsonDataReader.getJsonElement " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return reader.getJsonElement("total");
+				}
+			});
+			Benchmark.run("JsonDataReader.get(path) " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return reader.get(lastPath);
+				}
+			});
+			Benchmark.run("JsonDataReader.getListFromJsonArrayElement " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return reader.getListFromJsonArrayElement("items", Item.class);
+				}
+			});
+		}
+	}
+
+	@Test
+	public void gsonProcessorModes() throws Exception {
+		for (GsonProcessor.GSON_PROCESSOR_TYPE type : GsonProcessor.GSON_PROCESSOR_TYPE.values()) {
+			final Gson gson = GsonProcessor.getInstance().getGson(type);
+			for (int s = 0; s < SIZES.length; s++) {
+				final String array = arrays[s];
+				final List<Item> items = gson.fromJson(array, ITEM_LIST);
+				assertEquals(SIZES[s], items.size());
+
+				Benchmark.run(type + ".toJson " + name(s), new Benchmark.Operation() {
+					@Override
+					public Object run() throws Exception {
+						return gson.toJson(items, ITEM_LIST);
+					}
+				});
+				Benchmark.run(type + ".fromJson " + name(s), new Benchmark.Operation() {
+					@Override
+					public Object run() throws Exception {
+						return gson.fromJson(array, ITEM_LIST);
+					}
+				});
+			}
+		}
+	}
+
+	@Test
+	public void arrayListConversion() throws Exception {
+		for (int s = 0; s < SIZES.length; s++) {
+			final String array = arrays[s];
+			assertEquals(SIZES[s], ToolBox.<Item>gson_linkedMapAsList(array, ITEM_LIST).size());
+
+			Benchmark.run("ToolBox.gson_linkedMapAsList " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					return ToolBox.gson_linkedMapAsList(array, ITEM_LIST);
+				}
+			});
+			Benchmark.run("JsonArrayReader iteration " + name(s), new Benchmark.Operation() {
+				@Override
+				public Object run() throws Exception {
+					int count = 0;
+					JsonArrayReader<Item> reader = new JsonArrayReader<Item>(new StringReader(array), Item.class);
+					try {
+						for (Item item : reader) {
+							count += item.id;
+						}
+					} finally {
+						reader.close();
+					}
+					return count;
+				}
+			});
+		}
+	}
+
+
+	//AUXILIAR
+
+	private static String name(int size) {
+		return "(" + SIZE_NAMES[size] + ", " + SIZES[size] + " items)";
+	}
+
+	private static List<Item> items(int count) {
+		List<Item> items = new ArrayList<Item>(count);
+		for (int i = 0; i < count; i++) {
+			Item item = new Item();
+			item.id = i;
+			item.name = "Item number " + i;
+			item.price = i * 1.25d;
+			item.active = (i % 2 == 0);
+			item.tags = Arrays.asList("tag" + (i % 7), "group" + (i % 3));
+			item.cache = "not serialized";
+			items.add(item);
+		}
+		return items;
+	}
+}
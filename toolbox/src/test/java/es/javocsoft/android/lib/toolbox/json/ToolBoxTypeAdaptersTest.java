@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResultItem;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseMessage;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMDeliveryResultItem;
+import es.javocsoft.android.lib.toolbox.gcm.core.beans.GCMMessage;
+
+/**
+ * Checks that the {@link GsonProcessor} processors write and read the library
+ * beans like Gson does by reflection with the same settings.
+ *
+ * @author JavocSoft 2018
+ * @since  2018
+ */
+public class ToolBoxTypeAdaptersTest {
+
+	private static final GsonProcessor.GSON_PROCESSOR_TYPE[] TYPES = GsonProcessor.GSON_PROCESSOR_TYPE.values();
+
+
+	@Test
+	public void sameJsonAsReflection() {
+		for (GsonProcessor.GSON_PROCESSOR_TYPE type : TYPES) {
+			Gson processor = GsonProcessor.getInstance().getGson(type);
+			Gson reflective = reflective(type).create();
+			Gson processorNulls = processor.newBuilder().serializeNulls().create();
+			Gson reflectiveNulls = reflective(type).serializeNulls().create();
+
+			for (Object bean : beans()) {
+				String expected = reflective.toJson(bean);
+				assertEquals(type + " " + bean.getClass().getSimpleName(), expected, processor.toJson(bean));
+				assertEquals(type + " " + bean.getClass().getSimpleName() + " with nulls",
+						reflectiveNulls.toJson(bean), processorNulls.toJson(bean));
+
+				//Read like reflection, with and without the null fields. The input has no static
+				//fields, reflection can not set them.
+				for (String json : new String[] { new Gson().toJson(bean), new GsonBuilder().serializeNulls().create().toJson(bean) }) {
+					assertEquals(type + " " + bean.getClass().getSimpleName() + " read " + json,
+							reflective.toJson(reflective.fromJson(json, bean.getClass())),
+							reflective.toJson(processor.fromJson(json, bean.getClass())));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void adaptersUsedWhereTheJsonIsTheSame() {
+		Gson gson = GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP);
+		for (Object bean : beans()) {
+			assertFalse(bean.getClass().getSimpleName(), isReflective(gson, bean.getClass()));
+		}
+
+		//The transient filter does not exclude static fields, the result items
+		//keep reflection, which writes their constants.
+		Gson nonTransient = GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP_NON_TRANSIENT);
+		assertFalse(isReflective(nonTransient, FirebaseMessage.class));
+		assertFalse(isReflective(nonTransient, FirebaseDeliveryResponse.class));
+		assertTrue(isReflective(nonTransient, FirebaseDeliveryResultItem.class));
+		assertTrue(isReflective(nonTransient, GCMDeliveryResultItem.class));
+		assertTrue(nonTransient.toJson(firebaseResponse()).contains("ERROR_STRING_NOT_REGISTERED"));
+
+		Gson exposed = GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP_ONLY_EXPOSED);
+		assertTrue(isReflective(exposed, FirebaseMessage.class));
+	}
+
+	@Test
+	public void lenientValues() {
+		Gson gson = GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP);
+		String json = "{\"collapse_key\":12,\"time_to_live\":\"3600\",\"delay_while_idle\":\"true\","
+				+ "\"unknown\":{\"a\":[1,2]},\"data\":{\"n\":1,\"b\":false,\"s\":null},\"registration_ids\":[\"r1\",2]}";
+		Gson reflective = new Gson();
+
+		assertEquals(reflective.toJson(reflective.fromJson(json, FirebaseMessage.class)),
+				reflective.toJson(gson.fromJson(json, FirebaseMessage.class)));
+		assertEquals(reflective.toJson(reflective.fromJson(json, GCMMessage.class)),
+				reflective.toJson(gson.fromJson(json, GCMMessage.class)));
+	}
+
+
+	//AUXILIAR
+
+	/* A Gson with the settings of the processor, without the library adapters. */
+	private static GsonBuilder reflective(GsonProcessor.GSON_PROCESSOR_TYPE type) {
+		switch (type) {
+			case GSONP_NON_TRANSIENT:
+				return new GsonBuilder().excludeFieldsWithModifiers(Modifier.TRANSIENT);
+			case GSONP_ONLY_EXPOSED:
+				return new GsonBuilder().excludeFieldsWithoutExposeAnnotation();
+			default:
+				return new GsonBuilder();
+		}
+	}
+
+	private static boolean isReflective(Gson gson, Class<?> type) {
+		return gson.getAdapter(type).getClass().getName().contains("Reflective");
+	}
+
+	/* Each bean, with all its fields and with only some of them. */
+	private static List<Object> beans() {
+		List<Object> beans = new ArrayList<Object>();
+		beans.add(firebaseMessage());
+		beans.add(new FirebaseMessage());
+		beans.add(gcmMessage());
+		beans.add(new GCMMessage());
+		beans.add(firebaseResponse());
+		beans.add(new FirebaseDeliveryResponse());
+		beans.add(gcmResponse());
+		beans.add(new GCMDeliveryResponse());
+		beans.add(firebaseResponse().results.get(0));
+		beans.add(gcmResponse().results.get(1));
+		return beans;
+	}
+
+	static FirebaseMessage firebaseMessage() {
+		FirebaseMessage msg = new FirebaseMessage();
+		msg.collapse_key = "news";
+		msg.time_to_live = 3600L;
+		msg.delay_while_idle = Boolean.TRUE;
+		msg.data = data();
+		msg.registration_ids = Arrays.asList("reg-1", "reg-2", "reg-3");
+		return msg;
+	}
+
+	private static GCMMessage gcmMessage() {
+		GCMMessage msg = new GCMMessage();
+		msg.time_to_live = 60L;
+		msg.data = data();
+		msg.registration_ids = Arrays.asList("reg-1");
+		return msg;
+	}
+
+	static FirebaseDeliveryResponse firebaseResponse() {
+		FirebaseDeliveryResponse response = new FirebaseDeliveryResponse();
+		response.multicast_id = "5476287398402946";
+		response.success = 1;
+		response.failure = 1;
+		response.canonical_ids = 0;
+		response.results = new ArrayList<FirebaseDeliveryResultItem>();
+		FirebaseDeliveryResultItem ok = new FirebaseDeliveryResultItem();
+		ok.message_id = "0:1234";
+		response.results.add(ok);
+		FirebaseDeliveryResultItem failed = new FirebaseDeliveryResultItem();
+		failed.error = FirebaseDeliveryResultItem.ERROR_STRING_NOT_REGISTERED;
+		response.results.add(failed);
+		return response;
+	}
+
+	private static GCMDeliveryResponse gcmResponse() {
+		GCMDeliveryResponse response = new GCMDeliveryResponse();
+		response.multicast_id = "1";
+		response.success = 2;
+		response.canonical_ids = 1;
+		response.results = new ArrayList<GCMDeliveryResultItem>();
+		GCMDeliveryResultItem ok = new GCMDeliveryResultItem();
+		ok.message_id = "0:1";
+		response.results.add(ok);
+		GCMDeliveryResultItem canonical = new GCMDeliveryResultItem();
+		canonical.message_id = "0:2";
+		canonical.registration_id = "new-reg";
+		response.results.add(canonical);
+		return response;
+	}
+
+	private static Map<String, String> data() {
+		Map<String, String> data = new LinkedHashMap<String, String>();
+		data.put("title", "Hello");
+		data.put("body", "Ñandú \"quoted\"  ");
+		data.put("empty", null);
+		return data;
+	}
+}
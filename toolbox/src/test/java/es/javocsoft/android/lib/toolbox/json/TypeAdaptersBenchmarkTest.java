@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import es.javocsoft.android.lib.toolbox.benchmark.Benchmark;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResponse;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseDeliveryResultItem;
+import es.javocsoft.android.lib.toolbox.firebase.core.beans.FirebaseMessage;
+
+/**
+ * Throughput and allocation of the hand written type adapters of
+ * {@link GsonProcessor} compared with the reflective conversion of a plain
+ * Gson, for a message and for delivery responses of several sizes.
+ * <br><br>
+ * Run with <code>-Dtoolbox.benchmark=true</code>, see {@link Benchmark}.
+ *
+ * @author JavocSoft 2018
+ * @since  2018
+ */
+public class TypeAdaptersBenchmarkTest {
+
+	/** Registration ids of the messages and results of the responses. */
+	private static final int[] SIZES = { 1, 100, 1000 };
+
+	private Gson adapters;
+	private Gson reflective;
+
+
+	@Before
+	public void setUp() {
+		Benchmark.assumeEnabled();
+
+		adapters = GsonProcessor.getInstance().getGson(GsonProcessor.GSON_PROCESSOR_TYPE.GSONP);
+		reflective = new Gson();
+	}
+
+	@Test
+	public void message() throws Exception {
+		for (int size : SIZES) {
+			FirebaseMessage msg = ToolBoxTypeAdaptersTest.firebaseMessage();
+			msg.registration_ids = new ArrayList<String>();
+			for (int i = 0; i < size; i++) {
+				msg.registration_ids.add("registration-id-" + i);
+			}
+			compare("FirebaseMessage", size, msg);
+		}
+	}
+
+	@Test
+	public void deliveryResponse() throws Exception {
+		for (int size : SIZES) {
+			FirebaseDeliveryResponse response = ToolBoxTypeAdaptersTest.firebaseResponse();
+			List<FirebaseDeliveryResultItem> results = new ArrayList<FirebaseDeliveryResultItem>();
+			for (int i = 0; i < size; i++) {
+				results.add(response.results.get(i % response.results.size()));
+			}
+			response.results = results;
+			compare("FirebaseDeliveryResponse", size, response);
+		}
+	}
+
+
+	//AUXILIAR
+
+	private void compare(String name, int size, final Object bean) throws Exception {
+		final String json = reflective.toJson(bean);
+		final Class<?> type = bean.getClass();
+		assertEquals(json, adapters.toJson(bean));
+		String suffix = " (" + size + (size == 1 ? " item, " : " items, ") + json.length() + " chars)";
+
+		Benchmark.run(name + " toJson reflection" + suffix, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return reflective.toJson(bean);
+			}
+		});
+		Benchmark.run(name + " toJson adapter" + suffix, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return adapters.toJson(bean);
+			}
+		});
+		Benchmark.run(name + " fromJson reflection" + suffix, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return reflective.fromJson(json, type);
+			}
+		});
+		Benchmark.run(name + " fromJson adapter" + suffix, new Benchmark.Operation() {
+			@Override
+			public Object run() throws Exception {
+				return adapters.fromJson(json, type);
+			}
+		});
+	}
+}
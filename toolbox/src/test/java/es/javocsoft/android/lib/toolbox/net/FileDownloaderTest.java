@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2010-2018 - JavocSoft - Javier Gonzalez Serrano
+ * http://javocsoft.es/proyectos/code-libs/android/javocsoft-toolbox-android-library
+ *
+ * This file is part of JavocSoft Android Toolbox library.
+ *
+ * JavocSoft Android Toolbox library is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * JavocSoft Android Toolbox library is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JavocSoft Android Toolbox library.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ */
+package es.javocsoft.android.lib.toolbox.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import es.javocsoft.android.lib.toolbox.io.IOUtils;
+
+/**
+ * Checks when {@link FileDownloader} resumes a partial download and when
+ * it starts again, against a local HTTP server.
+ *
+ * @author JavocSoft 2018
+ * @version 1.0
+ */
+public class FileDownloaderTest {
+
+	private static final String ETAG = "\"v1\"";
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private HttpServer server;
+	private String url;
+	private File destination;
+
+	/* What the server sends. A null ETag is not sent. */
+	private volatile byte[] content;
+	private volatile String etag;
+	/* The Range header of each request, "-" when there is none. */
+	private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/file", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+		destination = new File(temp.getRoot(), "file.bin");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void download() throws IOException {
+		content = data(100 * 1024, 1);
+		etag = ETAG;
+
+		assertArrayEquals(content, read(new FileDownloader(url, destination).download()));
+		assertEquals(Arrays.asList("-"), ranges);
+		assertFalse(new File(destination.getPath() + ".part").exists());
+		assertFalse(new File(destination.getPath() + ".part.meta").exists());
+	}
+
+	@Test
+	public void resumeWithValidator() throws IOException {
+		content = data(100 * 1024, 2);
+		etag = ETAG;
+		partial(Arrays.copyOf(content, 1000), ETAG, content.length);
+
+		assertArrayEquals(content, read(new FileDownloader(url, destination).download()));
+		assertEquals(Arrays.asList("bytes=1000-"), ranges);
+	}
+
+	@Test
+	public void restartWithoutValidator() throws IOException {
+		//The part is of an older version, without a validator the change can not be seen.
+		content = data(100 * 1024, 3);
+		etag = null;
+		partial(data(1000, 4), null, content.length);
+
+		assertArrayEquals(content, read(new FileDownloader(url, destination).download()));
+		assertEquals(Arrays.asList("-"), ranges);
+	}
+
+	@Test
+	public void restartWhenTheLengthChanged() throws IOException {
+		//Same ETag, but the part is of a resource of another length.
+		content = data(100 * 1024, 5);
+		etag = ETAG;
+		partial(Arrays.copyOf(data(50 * 1024, 6), 1000), ETAG, 50 * 1024);
+
+		assertArrayEquals(content, read(new FileDownloader(url, destination).download()));
+		assertEquals(Arrays.asList("bytes=1000-", "-"), ranges);
+	}
+
+
+	//AUXILIAR
+
+	/*
+	 * Sends the content, or the requested range of it when there is no
+	 * If-Range or it matches the ETag.
+	 */
+	private void serve(HttpExchange exchange) throws IOException {
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+		ranges.add(range != null ? range : "-");
+
+		byte[] body = content;
+		if (etag != null)
+			exchange.getResponseHeaders().set("ETag", etag);
+		if (range != null && (ifRange == null || ifRange.equals(etag))) {
+			String[] bounds = range.substring("bytes=".length()).split("-", -1);
+			int start = Integer.parseInt(bounds[0]);
+			int end = bounds[1].isEmpty() ? content.length - 1 : Integer.parseInt(bounds[1]);
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+			body = Arrays.copyOfRange(content, start, end + 1);
+			exchange.sendResponseHeaders(206, body.length);
+		} else {
+			exchange.sendResponseHeaders(200, body.length);
+		}
+
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/* A part file and its meta, as left by an interrupted download. */
+	private void partial(byte[] part, String etag, long length) throws IOException {
+		write(new File(destination.getPath() + ".part"), part);
+
+		Properties meta = new Properties();
+		meta.setProperty("url", url);
+		meta.setProperty("length", String.valueOf(length));
+		if (etag != null)
+			meta.setProperty("etag", etag);
+		OutputStream out = new FileOutputStream(destination.getPath() + ".part.meta");
+		try {
+			meta.store(out, null);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void write(File file, byte[] data) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return IOUtils.readFully(in, -1);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] data(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+}